@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares JMH results (CSV, "-rf csv") with the checked-in baseline.
+ * Average times and allocated bytes per operation (gc profiler,
+ * gc.alloc.rate.norm) that are worse than the baseline by more than the
+ * tolerance are reported as regressions; the exit code is 1 in that case.
+ * <p>
+ * Usage: CompareResults baseline.csv results.csv [time tolerance] [allocation tolerance]
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class CompareResults {
+
+    // <editor-fold desc="Properties">
+    
+    private static final double DEFAULT_TIME_TOLERANCE = 0.25;
+    
+    private static final double DEFAULT_ALLOCATION_TOLERANCE = 0.10;
+    
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private CompareResults() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Compares two result files
+     * @param args Baseline file, result file, optional tolerances (0.25 = 25 %)
+     * @throws IOException If a file could not be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CompareResults baseline.csv results.csv [time tolerance] [allocation tolerance]");
+            System.exit(2);
+        }
+        var timeTolerance = (args.length > 2)? Double.parseDouble(args[2]) : DEFAULT_TIME_TOLERANCE;
+        var allocationTolerance = (args.length > 3)? Double.parseDouble(args[3]) : DEFAULT_ALLOCATION_TOLERANCE;
+        var baseline = read(Path.of(args[0]));
+        var results = read(Path.of(args[1]));
+        
+        var regressions = 0;
+        for (var entry : results.entrySet()) {
+            var key = entry.getKey();
+            var isAllocation = key.contains(":" + ALLOCATION_METRIC);
+            var isTime = entry.getValue().unit.endsWith("s/op") && !key.contains(":");
+            if (!isAllocation && !isTime) continue;
+            
+            var before = baseline.get(key);
+            if (before == null) {
+                System.out.printf("NEW         %-90s %14.3f %s%n", key, entry.getValue().score, entry.getValue().unit);
+                continue;
+            }
+            var ratio = entry.getValue().score / Math.max(before.score, 1e-9);
+            var tolerance = isAllocation? allocationTolerance : timeTolerance;
+            // Allocation of a few bytes per operation is noise
+            var regression = ratio > 1 + tolerance && !(isAllocation && entry.getValue().score < 64);
+            if (regression) regressions++;
+            System.out.printf("%-11s %-90s %14.3f -> %14.3f %s (%+.1f %%)%n", regression? "REGRESSION" : "ok",
+                key, before.score, entry.getValue().score, entry.getValue().unit, (ratio - 1) * 100);
+        }
+        System.out.println(regressions + " regression(s)");
+        System.exit(regressions > 0? 1 : 0);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Reads a JMH CSV result file; the key consists of the benchmark name
+     * and its parameters
+     */
+    private static Map<String, Result> read(Path file) throws IOException {
+        var results = new LinkedHashMap<String, Result>();
+        var lines = Files.readAllLines(file);
+        if (lines.isEmpty()) return results;
+        var header = split(lines.get(0));
+        var scoreColumn = header.indexOf("Score");
+        var unitColumn = header.indexOf("Unit");
+        for (var line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            var fields = split(line);
+            var key = new StringBuilder(fields.get(0));
+            for (int i = unitColumn + 1; i < fields.size() && i < header.size(); i++) {
+                if (!fields.get(i).isEmpty()) key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(fields.get(i));
+            }
+            results.put(key.toString(), new Result(Double.parseDouble(fields.get(scoreColumn)), fields.get(unitColumn)));
+        }
+        return results;
+    }
+    
+    private static List<String> split(String line) {
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        var quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    private static final class Result {
+        
+        private final double score;
+        
+        private final String unit;
+
+        Result(double score, String unit) {
+            this.score = score;
+            this.unit = unit;
+        }
+        
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer.bench;
+
+import de.ubergeek.amigaguideviewer.NodeHtmlConverter;
+import de.ubergeek.amigaguideviewer.Parser;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Checks that parsing and rendering take linear time on adversarial
+ * inputs. Every input family is generated in increasing sizes; for each
+ * size the best time of several runs of parsing the guide and rendering
+ * all nodes is taken. The scaling exponent between the smallest and the
+ * largest size must not exceed the limit (1.0 is linear, 2.0 quadratic),
+ * otherwise the exit code is 1.
+ * <p>
+ * Usage: FuzzTest [--sizes 256K,1M,4M] [--runs 5] [--limit 1.3] [--seed 1]
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class FuzzTest {
+
+    // <editor-fold desc="Properties">
+    
+    private static final String[] FRAGMENTS = {
+        "@", "@{", "}", "\\", "\\@", "\\\\", "\"", " ", "\t", "\n", "@{\"", "\" link ", " 12",
+        "@{fg shine}", "@{b}", "@node", "@{\" x \" link", "word", "@{fg ", "@{\" a\" rx "
+    };
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private FuzzTest() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Runs all input families
+     * @param args Options, see class description
+     */
+    public static void main(String[] args) {
+        var sizes = "256K,1M,4M";
+        var runs = 5;
+        var limit = 1.3;
+        var seed = 1L;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = args[i + 1];
+                case "--runs" -> runs = Integer.parseInt(args[i + 1]);
+                case "--limit" -> limit = Double.parseDouble(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        var sizeList = sizes.split(",");
+        var families = families(seed);
+        
+        // Warm-up, so that the smallest size is not measured in the interpreter
+        for (var family : families.values()) {
+            measure(family.apply((int)GuideGenerator.parseSize(sizeList[0].trim())), runs);
+        }
+        
+        var failures = 0;
+        System.out.printf("%-24s %10s %12s %10s%n", "family", "size", "ns/byte", "exponent");
+        for (var family : families.entrySet()) {
+            double firstBytes = 0, firstNanos = 0;
+            for (int i = 0; i < sizeList.length; i++) {
+                var input = family.getValue().apply((int)GuideGenerator.parseSize(sizeList[i].trim()));
+                var nanos = measure(input, runs);
+                var exponent = "-";
+                if (i == 0) {
+                    firstBytes = input.length();
+                    firstNanos = nanos;
+                } else {
+                    
+                    // Only the exponent over the whole range is checked,
+                    // single steps are too sensitive to noise
+                    var value = Math.log(nanos / firstNanos) / Math.log(input.length() / firstBytes);
+                    exponent = String.format("%.2f", value);
+                    if (i == sizeList.length - 1 && value > limit) {
+                        exponent += " FAIL";
+                        failures++;
+                    }
+                }
+                System.out.printf("%-24s %10d %12.1f %10s%n", family.getKey(), input.length(), nanos / input.length(), exponent);
+            }
+        }
+        System.out.println(failures + " failure(s)");
+        System.exit(failures > 0? 1 : 0);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Input families by name; each function creates an input of
+     * approximately the given size
+     */
+    private static Map<String, IntFunction<String>> families(long seed) {
+        var families = new LinkedHashMap<String, IntFunction<String>>();
+        families.put("unterminated-command", size -> guide("@{\" label \" link main " + repeat("x ", size / 2)));
+        families.put("unterminated-quote", size -> guide("@{\"" + repeat("a ", size / 2) + " link main}"));
+        families.put("giant-line", size -> guide(repeat("word ", size / 5)));
+        families.put("nested-colors", size -> guide(repeat("@{fg shine}", size / 11) + "text"));
+        families.put("link-spaces", size -> guide("@{a link b" + repeat(" 1", size / 2) + "x}"));
+        families.put("command-quotes", size -> "@database fuzz\n@node main " + repeat("\"a\" ", size / 4) + ".\n@endnode\n");
+        families.put("command-words", size -> "@database fuzz\n@node main" + repeat(" a", size / 2) + " .\n@endnode\n");
+        families.put("escapes", size -> guide(repeat("\\@\\\\@\\", size / 6)));
+        families.put("random-fragments", size -> randomFragments(size, seed));
+        families.put("mutated-guide", size -> mutatedGuide(size, seed));
+        return families;
+    }
+    
+    private static double measure(String input, int runs) {
+        var best = Long.MAX_VALUE;
+        
+        // Messages about unknown commands are not part of the measurement
+        var out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        for (int run = 0; run < runs; run++) {
+            System.gc();
+            var start = System.nanoTime();
+            var document = new Parser().parseAmigaGuide(input);
+            var converter = new NodeHtmlConverter();
+            for (var node : document.getNodesList()) {
+                converter.setNode(node);
+                converter.toHtml();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.setOut(out);
+        return best;
+    }
+    
+    private static String guide(String body) {
+        return "@database fuzz\n@node main \"Main\"\n" + body + "\n@endnode\n";
+    }
+    
+    private static String repeat(String text, int count) {
+        return text.repeat(Math.max(1, count));
+    }
+    
+    private static String randomFragments(int size, long seed) {
+        var random = new Random(seed);
+        var sb = new StringBuilder(size + 64);
+        sb.append("@database fuzz\n");
+        while (sb.length() < size) {
+            sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * A generated guide with random fragments inserted at random positions
+     */
+    private static String mutatedGuide(int size, long seed) {
+        var generator = new GuideGenerator();
+        generator.setSeed(seed);
+        generator.setNodeSize(2048);
+        generator.setTargetSize(size);
+        var source = generator.generate();
+        var random = new Random(seed);
+        var sb = new StringBuilder(source.length() + source.length() / 20);
+        for (int i = 0; i < source.length(); i++) {
+            if (random.nextInt(100) == 0) sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            sb.append(source.charAt(i));
+        }
+        return sb.toString();
+    }
+    
+    // </editor-fold>
+    
+}
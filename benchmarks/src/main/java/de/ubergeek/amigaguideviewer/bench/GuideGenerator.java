@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Seeded generator for synthetic AmigaGuide files.
+ * The same settings and seed always produce the same output, so inputs of
+ * any size (1 MB to 1 GB and more) can be recreated instead of shipped.
+ * Densities are given per 1000 characters of node body. Besides plain
+ * guides the generator can add pathological constructs: unterminated
+ * "@{" commands, giant lines without line breaks and deeply nested
+ * "@{fg}" commands.
+ * <p>
+ * Usage: GuideGenerator output.guide [--size 64M] [--nodes n] [--node-size n]
+ * [--links d] [--formatting d] [--escapes d] [--unterminated p]
+ * [--giant-lines p] [--giant-line-length n] [--nesting p] [--nesting-depth n]
+ * [--seed n]
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class GuideGenerator {
+
+    // <editor-fold desc="Properties">
+    
+    private static final String[] WORDS = {
+        "the", "guide", "amiga", "workbench", "node", "window", "screen", "library",
+        "device", "file", "memory", "chip", "fast", "intuition", "graphics", "copper",
+        "blitter", "sprite", "audio", "disk", "volume", "assign", "startup", "sequence"
+    };
+    
+    private static final String[] COLORS = { "text", "shine", "shadow", "fill", "filltext", "background", "highlight" };
+    
+    private static final String[][] STYLES = { { "b", "ub" }, { "i", "ui" }, { "u", "uu" } };
+    
+    private static final int LINE_LENGTH = 72;
+    
+    private long seed = 1;
+    
+    private int nodeCount = 100;
+    
+    private int nodeSize = 4096;
+    
+    private double linkDensity = 2;
+    
+    private double formattingDensity = 4;
+    
+    private double escapeDensity = 0.5;
+    
+    private double unterminatedRate = 0;
+    
+    private double giantLineRate = 0;
+    
+    private int giantLineLength = 1 << 20;
+    
+    private double nestingRate = 0;
+    
+    private int nestingDepth = 1000;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    public long getSeed() {
+        return seed;
+    }
+    
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    public void setNodeCount(int nodeCount) {
+        this.nodeCount = Math.max(1, nodeCount);
+    }
+    
+    /**
+     * Returns the approximate size of a node body in characters
+     * @return Node size
+     */
+    public int getNodeSize() {
+        return nodeSize;
+    }
+    
+    public void setNodeSize(int nodeSize) {
+        this.nodeSize = Math.max(1, nodeSize);
+    }
+    
+    /**
+     * Sets the node count so that the guide has approximately the given size
+     * @param bytes Target size in bytes
+     */
+    public void setTargetSize(long bytes) {
+        setNodeCount((int)Math.min(Integer.MAX_VALUE, bytes / (nodeSize + 64)));
+    }
+    
+    /**
+     * Returns the number of links per 1000 characters
+     * @return Link density
+     */
+    public double getLinkDensity() {
+        return linkDensity;
+    }
+    
+    public void setLinkDensity(double linkDensity) {
+        this.linkDensity = linkDensity;
+    }
+    
+    /**
+     * Returns the number of color and style commands per 1000 characters
+     * @return Formatting command density
+     */
+    public double getFormattingDensity() {
+        return formattingDensity;
+    }
+    
+    public void setFormattingDensity(double formattingDensity) {
+        this.formattingDensity = formattingDensity;
+    }
+    
+    /**
+     * Returns the number of escape sequences ("\@", "\\") per 1000 characters
+     * @return Escape density
+     */
+    public double getEscapeDensity() {
+        return escapeDensity;
+    }
+    
+    public void setEscapeDensity(double escapeDensity) {
+        this.escapeDensity = escapeDensity;
+    }
+    
+    /**
+     * Returns the probability of a node containing an unterminated "@{"
+     * @return Probability per node (0..1)
+     */
+    public double getUnterminatedRate() {
+        return unterminatedRate;
+    }
+    
+    public void setUnterminatedRate(double unterminatedRate) {
+        this.unterminatedRate = unterminatedRate;
+    }
+    
+    /**
+     * Returns the probability of a node containing a giant single line
+     * @return Probability per node (0..1)
+     */
+    public double getGiantLineRate() {
+        return giantLineRate;
+    }
+    
+    public void setGiantLineRate(double giantLineRate) {
+        this.giantLineRate = giantLineRate;
+    }
+    
+    public int getGiantLineLength() {
+        return giantLineLength;
+    }
+    
+    public void setGiantLineLength(int giantLineLength) {
+        this.giantLineLength = Math.max(1, giantLineLength);
+    }
+    
+    /**
+     * Returns the probability of a node containing deeply nested "@{fg}" commands
+     * @return Probability per node (0..1)
+     */
+    public double getNestingRate() {
+        return nestingRate;
+    }
+    
+    public void setNestingRate(double nestingRate) {
+        this.nestingRate = nestingRate;
+    }
+    
+    public int getNestingDepth() {
+        return nestingDepth;
+    }
+    
+    public void setNestingDepth(int nestingDepth) {
+        this.nestingDepth = Math.max(1, nestingDepth);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Generates a guide file
+     * @param args Output file and options, see class description
+     * @throws IOException If the file could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: GuideGenerator output.guide [--size 64M] [--nodes n] [--node-size n] "
+                + "[--links d] [--formatting d] [--escapes d] [--unterminated p] [--giant-lines p] "
+                + "[--giant-line-length n] [--nesting p] [--nesting-depth n] [--seed n]");
+            System.exit(2);
+        }
+        var generator = new GuideGenerator();
+        var size = generator.configure(args, 1);
+        if (size > 0) generator.setTargetSize(size);
+        
+        var start = System.nanoTime();
+        var written = generator.generate(Path.of(args[0]));
+        var seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %d nodes, %d bytes in %.1f s%n", args[0], generator.getNodeCount(), written, seconds);
+    }
+    
+    /**
+     * Applies command line options to the settings
+     * @param args Command line arguments
+     * @param offset Index of the first option
+     * @return The value of --size in bytes or 0 if not given
+     */
+    public long configure(String[] args, int offset) {
+        long size = 0;
+        for (int i = offset; i + 1 < args.length; i += 2) {
+            var value = args[i + 1];
+            switch (args[i]) {
+                case "--size" -> size = parseSize(value);
+                case "--nodes" -> setNodeCount(Integer.parseInt(value));
+                case "--node-size" -> setNodeSize(Integer.parseInt(value));
+                case "--links" -> setLinkDensity(Double.parseDouble(value));
+                case "--formatting" -> setFormattingDensity(Double.parseDouble(value));
+                case "--escapes" -> setEscapeDensity(Double.parseDouble(value));
+                case "--unterminated" -> setUnterminatedRate(Double.parseDouble(value));
+                case "--giant-lines" -> setGiantLineRate(Double.parseDouble(value));
+                case "--giant-line-length" -> setGiantLineLength((int)parseSize(value));
+                case "--nesting" -> setNestingRate(Double.parseDouble(value));
+                case "--nesting-depth" -> setNestingDepth(Integer.parseInt(value));
+                case "--seed" -> setSeed(Long.parseLong(value));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Generates the guide into a string
+     * @return Guide source
+     */
+    public String generate() {
+        var writer = new StringWriter(nodeCount * (nodeSize + 64) + 128);
+        try {
+            generate(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+    
+    /**
+     * Generates the guide into a file (ISO-8859-1)
+     * @param file Output file
+     * @return Number of bytes written
+     * @throws IOException If the file could not be written
+     */
+    public long generate(Path file) throws IOException {
+        try (var writer = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+            return generate(writer);
+        }
+    }
+    
+    /**
+     * Generates the guide. The output is written node by node, so the size
+     * of the guide is not limited by the available memory.
+     * @param writer Output
+     * @return Number of characters written
+     * @throws IOException If the output could not be written
+     */
+    public long generate(Writer writer) throws IOException {
+        var random = new Random(seed);
+        var out = (writer instanceof BufferedWriter || writer instanceof StringWriter)? writer : new BufferedWriter(writer);
+        long written = 0;
+        
+        var sb = new StringBuilder(nodeSize + 1024);
+        sb.append("@database generated.guide\n@author GuideGenerator\n@(c) Public domain\n");
+        sb.append("@rem seed ").append(seed).append(", ").append(nodeCount).append(" nodes\n");
+        for (int i = 0; i < nodeCount; i++) {
+            appendNode(sb, i, random);
+            out.write(sb.toString());
+            written += sb.length();
+            sb.setLength(0);
+        }
+        out.flush();
+        return written;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private void appendNode(StringBuilder sb, int index, Random random) {
+        sb.append("@node ").append(identifier(index)).append(" \"Node ").append(index).append("\"\n");
+        if (index > 1) sb.append("@prev ").append(identifier(index - 1)).append('\n');
+        if (index + 1 < nodeCount) sb.append("@next ").append(identifier(index + 1)).append('\n');
+        
+        // Pathological parts are placed at a random position within the body
+        var unterminated = random.nextDouble() < unterminatedRate;
+        var giantLine = random.nextDouble() < giantLineRate;
+        var nesting = random.nextDouble() < nestingRate;
+        var specialAt = random.nextInt(nodeSize);
+        
+        var bodyStart = sb.length();
+        var lineStart = sb.length();
+        var special = unterminated || giantLine || nesting;
+        while (sb.length() - bodyStart < nodeSize) {
+            if (special && sb.length() - bodyStart >= specialAt) {
+                if (giantLine) appendGiantLine(sb, random);
+                if (nesting) appendNesting(sb, random);
+                if (unterminated) sb.append(" @{\" broken link ").append(identifier(random.nextInt(nodeCount))).append(' ');
+                special = false;
+            }
+            
+            var length = sb.length();
+            appendWord(sb, random);
+            var chance = (sb.length() - length) / 1000.0;
+            if (random.nextDouble() < linkDensity * chance) appendLink(sb, random);
+            if (random.nextDouble() < formattingDensity * chance) appendFormatting(sb, random);
+            if (random.nextDouble() < escapeDensity * chance) sb.append(random.nextBoolean()? " \\@" : " \\\\");
+            
+            if (sb.length() - lineStart >= LINE_LENGTH) {
+                sb.append('\n');
+                lineStart = sb.length();
+            }
+        }
+        if (sb.charAt(sb.length() - 1) != '\n') sb.append('\n');
+        sb.append("@endnode\n");
+    }
+    
+    private void appendWord(StringBuilder sb, Random random) {
+        if (sb.charAt(sb.length() - 1) != '\n') sb.append(' ');
+        sb.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    
+    private void appendLink(StringBuilder sb, Random random) {
+        sb.append(" @{\" ").append(WORDS[random.nextInt(WORDS.length)])
+            .append(" \" link ").append(identifier(random.nextInt(nodeCount))).append(" 0}");
+    }
+    
+    private void appendFormatting(StringBuilder sb, Random random) {
+        if (random.nextBoolean()) {
+            sb.append(" @{").append(random.nextBoolean()? "fg " : "bg ").append(COLORS[random.nextInt(COLORS.length)]).append('}');
+        } else {
+            var style = STYLES[random.nextInt(STYLES.length)];
+            sb.append(" @{").append(style[0]).append('}');
+            appendWord(sb, random);
+            sb.append("@{").append(style[1]).append('}');
+        }
+    }
+    
+    private void appendGiantLine(StringBuilder sb, Random random) {
+        var end = sb.length() + giantLineLength;
+        while (sb.length() < end) appendWord(sb, random);
+        sb.append('\n');
+    }
+    
+    private void appendNesting(StringBuilder sb, Random random) {
+        for (int i = 0; i < nestingDepth; i++) {
+            sb.append("@{fg ").append(COLORS[random.nextInt(COLORS.length)]).append('}');
+        }
+        appendWord(sb, random);
+        sb.append("@{fg text}\n");
+    }
+    
+    private static String identifier(int index) {
+        return (index == 0)? "main" : "node" + index;
+    }
+    
+    /**
+     * Parses a size with an optional unit (K, M or G)
+     * @param value Size, e.g. "64M"
+     * @return Size in bytes
+     */
+    static long parseSize(String value) {
+        var unit = Character.toUpperCase(value.charAt(value.length() - 1));
+        var shift = switch (unit) {
+            case 'K' -> 10;
+            case 'M' -> 20;
+            case 'G' -> 30;
+            default -> 0;
+        };
+        var number = (shift == 0)? value : value.substring(0, value.length() - 1);
+        return Long.parseLong(number) << shift;
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer.bench;
+
+import de.ubergeek.amigaguideviewer.Node;
+import de.ubergeek.amigaguideviewer.NodeHtmlConverter;
+import de.ubergeek.amigaguideviewer.Parser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NodeHtmlConverter.toHtml for text-heavy, link-heavy and color-heavy
+ * nodes. A new converter is used for every call, so the render cache of
+ * the node is bypassed.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HtmlConverterBenchmark {
+    
+    @Param({ "text", "links", "colors" })
+    public String kind;
+    
+    @Param({ "4096" })
+    public int nodeSize;
+    
+    private Node node;
+    
+    @Setup
+    public void setup() {
+        var document = new Parser().parseAmigaGuide(Workloads.guide(20, nodeSize, kind, 42));
+        node = document.getNodeByIdentifier("node1");
+    }
+    
+    @Benchmark
+    public String toHtml() {
+        return new NodeHtmlConverter(node).toHtml();
+    }
+    
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer.bench;
+
+import de.ubergeek.amigaguideviewer.Document;
+import de.ubergeek.amigaguideviewer.Node;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Document.getNodeByIdentifier with identifiers in mixed case, as they
+ * appear in link targets
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodeLookupBenchmark {
+    
+    private static final int LOOKUPS = 1024;
+    
+    @Param({ "100", "10000" })
+    public int nodeCount;
+    
+    private Document document;
+    
+    private String[] identifiers;
+    
+    private int next;
+    
+    @Setup
+    public void setup() {
+        document = new Document();
+        for (int i = 0; i < nodeCount; i++) {
+            document.createAndAddNode("Node" + i, "Node " + i);
+        }
+        var random = new Random(42);
+        identifiers = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            var identifier = "Node" + random.nextInt(nodeCount);
+            identifiers[i] = random.nextBoolean()? identifier.toUpperCase() : identifier;
+        }
+    }
+    
+    @Benchmark
+    public Node lookup() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return document.getNodeByIdentifier(identifiers[next]);
+    }
+    
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer.bench;
+
+import de.ubergeek.amigaguideviewer.NodeHtmlConverter;
+import de.ubergeek.amigaguideviewer.Parser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * Parse and render throughput over generated guides of increasing size.
+ * For every size a guide is generated with {@link GuideGenerator} into a
+ * temporary file, parsed with Parser.parseAmigaGuideFromFile and every node
+ * is rendered with a new NodeHtmlConverter. Besides the throughput the
+ * scaling exponent between two sizes is printed: 1.0 means linear time,
+ * 2.0 quadratic time.
+ * <p>
+ * Usage: ThroughputTest [--sizes 1M,4M,16M,64M] [--runs 3] [generator options]
+ * <p>
+ * Large sizes need a correspondingly large heap (roughly 4 times the
+ * guide size with -Xmx).
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class ThroughputTest {
+
+    // <editor-fold desc="Constructors">
+    
+    private ThroughputTest() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Runs the throughput test
+     * @param args Options, see class description
+     * @throws IOException If a temporary file could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        var sizes = "1M,4M,16M,64M";
+        var runs = 3;
+        var generatorArgs = new ArrayList<String>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = args[i + 1];
+                case "--runs" -> runs = Integer.parseInt(args[i + 1]);
+                default -> {
+                    generatorArgs.add(args[i]);
+                    generatorArgs.add(args[i + 1]);
+                }
+            }
+        }
+        
+        System.out.printf("%10s %8s %10s %10s %10s %10s %8s %8s%n",
+            "size", "nodes", "parse ms", "parse MB/s", "render ms", "render MB/s", "exp(p)", "exp(r)");
+        double lastBytes = 0, lastParse = 0, lastRender = 0;
+        for (var size : sizes.split(",")) {
+            var generator = new GuideGenerator();
+            generator.configure(generatorArgs.toArray(new String[0]), 0);
+            generator.setTargetSize(GuideGenerator.parseSize(size.trim()));
+            
+            var file = Files.createTempFile("throughput", ".guide");
+            try {
+                var bytes = (double)generator.generate(file);
+                var parseNanos = Long.MAX_VALUE;
+                var renderNanos = Long.MAX_VALUE;
+                
+                // Best of n runs
+                for (int run = 0; run < runs; run++) {
+                    var start = System.nanoTime();
+                    var document = new Parser().parseAmigaGuideFromFile(file);
+                    parseNanos = Math.min(parseNanos, System.nanoTime() - start);
+                    
+                    start = System.nanoTime();
+                    var converter = new NodeHtmlConverter();
+                    for (var node : document.getNodesList()) {
+                        converter.setNode(node);
+                        converter.toHtml();
+                    }
+                    renderNanos = Math.min(renderNanos, System.nanoTime() - start);
+                }
+                
+                System.out.printf("%10s %8d %10.1f %10.2f %10.1f %10.2f %8s %8s%n",
+                    size, generator.getNodeCount(),
+                    parseNanos / 1e6, bytes / 1048576 / (parseNanos / 1e9),
+                    renderNanos / 1e6, bytes / 1048576 / (renderNanos / 1e9),
+                    exponent(lastBytes, bytes, lastParse, parseNanos),
+                    exponent(lastBytes, bytes, lastRender, renderNanos));
+                lastBytes = bytes;
+                lastParse = parseNanos;
+                lastRender = renderNanos;
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private static String exponent(double lastBytes, double bytes, double lastNanos, double nanos) {
+        if (lastBytes == 0) return "-";
+        return String.format("%.2f", Math.log(nanos / lastNanos) / Math.log(bytes / lastBytes));
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer.bench;
+
+import java.util.Random;
+
+/**
+ * Deterministic AmigaGuide inputs for the benchmarks
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+final class Workloads {
+
+    // <editor-fold desc="Properties">
+    
+    private static final String[] WORDS = {
+        "the", "guide", "amiga", "workbench", "node", "window", "screen", "library",
+        "device", "file", "memory", "chip", "fast", "intuition", "graphics", "copper",
+        "blitter", "sprite", "audio", "disk", "volume", "assign", "startup", "sequence"
+    };
+    
+    private static final String[] COLORS = { "text", "shine", "shadow", "fill", "filltext", "background", "highlight" };
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private Workloads() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Creates a guide with the given number of nodes
+     * @param nodeCount Number of nodes
+     * @param nodeSize Approximate size of each node body in characters
+     * @param kind Kind of node bodies: "text", "links" or "colors"
+     * @param seed Random seed
+     * @return Guide source
+     */
+    static String guide(int nodeCount, int nodeSize, String kind, long seed) {
+        var random = new Random(seed);
+        var sb = new StringBuilder(nodeCount * (nodeSize + 64) + 128);
+        sb.append("@database benchmark.guide\n@author Benchmark\n@(c) Public domain\n");
+        for (int i = 0; i < nodeCount; i++) {
+            var identifier = (i == 0)? "main" : "node" + i;
+            sb.append("@node ").append(identifier).append(" \"Node ").append(i).append("\"\n");
+            if (i > 1) sb.append("@prev node").append(i - 1).append('\n');
+            if (i + 1 < nodeCount) sb.append("@next node").append(i + 1).append('\n');
+            sb.append(body(kind, nodeSize, nodeCount, random));
+            sb.append("@endnode\n");
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Creates a node body
+     * @param kind "text" (plain words), "links" (a link on every line) or
+     *             "colors" (color and style commands on every line)
+     * @param size Approximate size in characters
+     * @param nodeCount Number of nodes that links may point to
+     * @param random Random source
+     * @return Node body with line breaks
+     */
+    static String body(String kind, int size, int nodeCount, Random random) {
+        var sb = new StringBuilder(size + 128);
+        while (sb.length() < size) {
+            switch (kind) {
+                case "links" -> {
+                    appendWords(sb, 3, random);
+                    sb.append(" @{\" ").append(WORDS[random.nextInt(WORDS.length)]).append(" \" link node")
+                        .append(random.nextInt(Math.max(1, nodeCount))).append(" 0}");
+                    appendWords(sb, 3, random);
+                }
+                case "colors" -> {
+                    sb.append("@{fg ").append(COLORS[random.nextInt(COLORS.length)]).append('}');
+                    appendWords(sb, 2, random);
+                    sb.append(" @{b}");
+                    appendWords(sb, 2, random);
+                    sb.append("@{ub} @{fg text}");
+                    appendWords(sb, 2, random);
+                }
+                default -> appendWords(sb, 10, random);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+    
+    private static void appendWords(StringBuilder sb, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+    
+    // </editor-fold>
+    
+}
@@ -21,14 +21,22 @@ import com.formdev.flatlaf.FlatLightLaf;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
 /**
  * Simple AmigaGuide viewer - command line wrapper.
- * First argument is interpreted as the name of a file to be opened at startup.
- * If no file name is given, the user interface will be opened withour a file;
- * files can be opened via drag and drop or with a file chooser.
+ * Arguments are interpreted as the names of files to be opened at startup;
+ * several files are opened in tabs.
+ * If no file name is given, the documents of the previous session are
+ * opened again; files can be opened via drag and drop or with a file chooser.
+ * With --startup-timing the time needed until the first node is visible
+ * is printed.
+ * With --cat or --pager as the first argument no window is opened; a node
+ * is written to stdout or read in a terminal pager instead.
  * @author André Gewert <agewert@ubergeek.de>
  */
 public class AmigaGuideViewer {
@@ -41,20 +49,68 @@ public class AmigaGuideViewer {
      * @throws java.net.URISyntaxException
      */
     public static void main(String[] args) throws IOException, URISyntaxException {
+        if (TerminalPager.isTerminalMode(args)) {
+            System.exit(TerminalPager.run(args));
+        }
         
-        // Try to set look and feel
-        try {
-            UIManager.setLookAndFeel(new FlatLightLaf());
-        } catch (UnsupportedLookAndFeelException ex) {
-            // We can safely ignore errors while setting the look and feel
+        var files = new ArrayList<Path>();
+        for (var arg : args) {
+            if (arg.equals(StartupTiming.ARGUMENT)) {
+                StartupTiming.enable();
+            } else {
+                files.add(Path.of(arg));
+            }
         }
-
-        var window = new MainWindow();
-        window.setVisible(true);
         
-        if (args.length >= 1) {
-            window.openDocumentFile(Path.of(args[0]));
+        ContentStore.getShared().setCompressionEnabled(Settings.isContentCompressionEnabled());
+        
+        // Parsing starts before the user interface is built; the window
+        // shares the running loads through the document manager
+        var documentManager = new DocumentManager(DocumentManager.DEFAULT_MEMORY_BUDGET);
+        var preloads = new ArrayList<CompletableFuture<Document>>();
+        Session session = null;
+        if (!files.isEmpty()) {
+            for (var file : files) {
+                if (!GuideArchive.isArchiveFile(file)) preloads.add(documentManager.load(file));
+            }
+        } else {
+            // Continue where the previous session ended
+            try {
+                session = Session.read(Session.getDefaultSessionFile());
+            } catch (IOException ex) {
+                System.out.println("Error while restoring the session: " + ex.getMessage());
+            }
+            if (session != null && session.getSelectedTab() >= 0) {
+                preloads.add(documentManager.load(session.getTabs().get(session.getSelectedTab()).getFile()));
+            }
         }
+        StartupTiming.mark("loading started");
+        
+        var restoredSession = session;
+        SwingUtilities.invokeLater(() -> {
+            // Try to set look and feel
+            try {
+                UIManager.setLookAndFeel(new FlatLightLaf());
+            } catch (UnsupportedLookAndFeelException ex) {
+                // We can safely ignore errors while setting the look and feel
+            }
+            StartupTiming.mark("look and feel");
+
+            var window = new MainWindow(documentManager);
+            StartupTiming.mark("window created");
+            window.setVisible(true);
+            StartupTiming.mark("window shown");
+
+            if (!files.isEmpty()) {
+                window.openDocumentFiles(files);
+            } else if (restoredSession != null) {
+                window.restoreSession(restoredSession);
+            }
+            // The window waits for the loads itself now
+            for (var preload : preloads) {
+                preload.cancel(false);
+            }
+        });
     }
     
 }
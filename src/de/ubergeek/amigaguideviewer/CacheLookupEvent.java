@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event: a lookup in one of the caches (parsed documents,
+ * rendered html, decompressed contents)
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+@Name("de.ubergeek.amigaguideviewer.CacheLookup")
+@Label("Cache Lookup")
+@Category({ "AmigaGuide Viewer", "Caches" })
+@StackTrace(false)
+final class CacheLookupEvent extends jdk.jfr.Event {
+
+    @Label("Cache")
+    String cache;
+    
+    @Label("Key")
+    String key;
+    
+    @Label("Hit")
+    boolean hit;
+    
+    /**
+     * Records a lookup if the event is enabled
+     * @param cache Cache name
+     * @param key Looked up key
+     * @param hit true if the value has been found
+     */
+    static void emit(String cache, String key, boolean hit) {
+        var event = new CacheLookupEvent();
+        if (!event.isEnabled()) return;
+        event.cache = cache;
+        event.key = key;
+        event.hit = hit;
+        event.commit();
+    }
+    
+}
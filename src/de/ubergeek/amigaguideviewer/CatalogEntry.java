@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Header-level data of a single guide in the library catalog.
+ * Node titles are decoded lazily if the entry has been read from a
+ * memory-mapped catalog file; once they have been decoded the entry does
+ * not refer to the mapping anymore.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class CatalogEntry {
+
+    // <editor-fold desc="Properties">
+    
+    private final String path;
+    
+    private final long size;
+    
+    private final long lastModified;
+    
+    private final String database;
+    
+    private final String author;
+    
+    private final String copyright;
+    
+    private final String master;
+    
+    private final int nodeCount;
+    
+    private String[] titles;
+    
+    private ByteBuffer titlesBuffer;
+    
+    private final int titlesOffset;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+
+    /**
+     * Returns the path of the guide file
+     * @return Path
+     */
+    public Path getPath() {
+        return Path.of(path);
+    }
+    
+    /**
+     * Returns the path of the guide file as string
+     * @return Path string
+     */
+    public String getPathString() {
+        return path;
+    }
+
+    /**
+     * Returns the file size at the time of scanning
+     * @return Size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the modification time at the time of scanning
+     * @return Milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the database name (@database)
+     * @return Database name or empty string
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * Returns the author (@author)
+     * @return Author or empty string
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Returns the copyright notice (@(c))
+     * @return Copyright or empty string
+     */
+    public String getCopyright() {
+        return copyright;
+    }
+
+    /**
+     * Returns the master file name (@master)
+     * @return Master or empty string
+     */
+    public String getMaster() {
+        return master;
+    }
+
+    /**
+     * Returns the number of nodes
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the titles of all nodes
+     * @return Node titles
+     */
+    public synchronized String[] getTitles() {
+        if (titles == null) {
+            var buffer = titlesBuffer.duplicate();
+            buffer.position(titlesOffset);
+            var count = buffer.getInt();
+            titles = new String[count];
+            for (int i = 0; i < count; i++) {
+                titles[i] = readString(buffer);
+            }
+            titlesBuffer = null;
+        }
+        return titles;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates an entry from a (header-only) parsed document
+     * @param path Path of the guide file
+     * @param size File size
+     * @param lastModified Modification time
+     * @param document Parsed document
+     */
+    public CatalogEntry(String path, long size, long lastModified, Document document) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.database = nullToEmpty(document.getAttributeValue("database"));
+        this.author = nullToEmpty(document.getAttributeValue("author"));
+        this.copyright = nullToEmpty(document.getAttributeValue("(c)"));
+        this.master = nullToEmpty(document.getAttributeValue("master"));
+        this.nodeCount = document.getNodeCount();
+        this.titles = new String[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            titles[i] = document.getNodeByOrdinal(i).getTitle();
+        }
+        this.titlesBuffer = null;
+        this.titlesOffset = -1;
+    }
+    
+    private CatalogEntry(ByteBuffer buffer) {
+        size = buffer.getLong();
+        lastModified = buffer.getLong();
+        nodeCount = buffer.getInt();
+        path = readString(buffer);
+        database = readString(buffer);
+        author = readString(buffer);
+        copyright = readString(buffer);
+        master = readString(buffer);
+        titlesBuffer = buffer;
+        titlesOffset = buffer.position();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Checks if the entry matches the given (lower case) filter text.
+     * File name, database, author and copyright are checked.
+     * @param lowerCaseFilter Filter text
+     * @return true if the entry matches
+     */
+    public boolean matches(String lowerCaseFilter) {
+        return path.toLowerCase().contains(lowerCaseFilter)
+            || database.toLowerCase().contains(lowerCaseFilter)
+            || author.toLowerCase().contains(lowerCaseFilter)
+            || copyright.toLowerCase().contains(lowerCaseFilter);
+    }
+    
+    /**
+     * Checks if the file has changed since the entry was created
+     * @param size Current file size
+     * @param lastModified Current modification time
+     * @return true if size or modification time differ
+     */
+    public boolean isOutdated(long size, long lastModified) {
+        return this.size != size || this.lastModified != lastModified;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Reads an entry at the buffer's position; the position is moved to
+     * the start of the node titles
+     */
+    static CatalogEntry read(ByteBuffer buffer) {
+        return new CatalogEntry(buffer);
+    }
+    
+    /**
+     * Returns the number of bytes write() will produce
+     */
+    int getEncodedSize() {
+        int encodedSize = 8 + 8 + 4 + 4;
+        encodedSize += encodedSize(path) + encodedSize(database) + encodedSize(author)
+            + encodedSize(copyright) + encodedSize(master);
+        for (var title : getTitles()) {
+            encodedSize += encodedSize(title);
+        }
+        return encodedSize;
+    }
+    
+    void write(ByteBuffer buffer) {
+        buffer.putLong(size);
+        buffer.putLong(lastModified);
+        buffer.putInt(nodeCount);
+        writeString(buffer, path);
+        writeString(buffer, database);
+        writeString(buffer, author);
+        writeString(buffer, copyright);
+        writeString(buffer, master);
+        var allTitles = getTitles();
+        buffer.putInt(allTitles.length);
+        for (var title : allTitles) {
+            writeString(buffer, title);
+        }
+    }
+    
+    private static String nullToEmpty(String value) {
+        return (value == null)? "" : value;
+    }
+    
+    private static int encodedSize(String value) {
+        return 4 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+    
+    private static void writeString(ByteBuffer buffer, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        var length = buffer.getInt();
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // </editor-fold>
+    
+}
@@ -30,6 +30,8 @@ public final class Command {
     
     private final List<String> arguments;
     
+    private String argumentString = "";
+    
     public String getName() {
         return name;
     }
@@ -51,6 +53,25 @@ public final class Command {
         arguments.add(argument);
     }
     
+    /**
+     * Returns everything after the command name (trimmed); surrounding
+     * quotes are removed
+     * @return Unparsed arguments
+     */
+    public String getArgumentString() {
+        return argumentString;
+    }
+    
+    public void setArgumentString(String argumentString) {
+        if (argumentString == null) {
+            this.argumentString = "";
+        } else if (argumentString.length() >= 2 && argumentString.startsWith("\"") && argumentString.endsWith("\"")) {
+            this.argumentString = argumentString.substring(1, argumentString.length() - 1);
+        } else {
+            this.argumentString = argumentString;
+        }
+    }
+    
     public Command() {
         this(null);
     }
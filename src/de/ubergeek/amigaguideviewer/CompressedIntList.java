@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of non-negative integers stored as variable length byte
+ * sequences (7 bits per byte, high bit set on all but the last byte).
+ * Used for compact postings lists; small values (like deltas between
+ * sorted integers) take a single byte.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class CompressedIntList {
+
+    // <editor-fold desc="Properties">
+    
+    private byte[] bytes;
+    
+    private int length;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates an empty list
+     */
+    public CompressedIntList() {
+        bytes = new byte[8];
+    }
+    
+    /**
+     * Wraps already encoded bytes
+     * @param bytes Encoded values
+     */
+    public CompressedIntList(byte[] bytes) {
+        this.bytes = bytes;
+        this.length = bytes.length;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Appends a value
+     * @param value Non-negative value
+     */
+    public void add(int value) {
+        if (length + 5 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+        }
+        length = write(bytes, length, value);
+    }
+    
+    /**
+     * Returns the number of encoded bytes
+     * @return Size in bytes
+     */
+    public int getByteSize() {
+        return length;
+    }
+    
+    /**
+     * Returns a trimmed copy of the encoded bytes
+     * @return Encoded values
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+    
+    /**
+     * Returns a reader positioned at the first value
+     * @return Reader
+     */
+    public Reader reader() {
+        return new Reader(bytes, 0, length);
+    }
+    
+    /**
+     * Writes a single value to the given buffer
+     * @param buffer Target buffer (needs up to five free bytes)
+     * @param position Write position
+     * @param value Non-negative value
+     * @return Position after the written value
+     */
+    public static int write(byte[] buffer, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[position++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte)value;
+        return position;
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * Sequential reader for encoded values
+     */
+    public static final class Reader {
+        
+        private final byte[] bytes;
+        
+        private int position;
+        
+        private final int end;
+        
+        /**
+         * Creates a reader for the given range of encoded bytes
+         * @param bytes Encoded values
+         * @param offset First byte
+         * @param end Position after the last byte
+         */
+        public Reader(byte[] bytes, int offset, int end) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.end = end;
+        }
+        
+        /**
+         * Checks if there are more values
+         * @return true if next() can be called
+         */
+        public boolean hasNext() {
+            return position < end;
+        }
+        
+        /**
+         * Reads the next value
+         * @return Value
+         */
+        public int next() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Content-addressed store for node content.
+ * Contents are keyed by their SHA-256 hash, so identical node bodies of all
+ * open documents (copies of the same guide, included license texts ...)
+ * share one string and one render cache entry. Entries are weakly
+ * referenced and disappear with the last node that uses them, so memory
+ * scales with the unique content of the open documents.
+ * <p>
+ * Optionally the contents are kept compressed (LzCodec, one block per
+ * content). A small cache of decompressed contents serves the nodes that
+ * are currently in use.
+ * <p>
+ * Rendered html and decompressed contents are cached per entry and
+ * registered with the memory governor, which may drop them under pressure.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class ContentStore {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Name of the cache of html rendered from the contents
+     */
+    public static final String RENDERED_HTML_CACHE = "Rendered html";
+    
+    /**
+     * Name of the cache of decompressed contents
+     */
+    public static final String DECOMPRESSED_CACHE = "Decompressed contents";
+    
+    private static final ContentStore SHARED = new ContentStore();
+    
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+    
+    private static final ThreadLocal<byte[]> DIGEST_BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+    
+    /**
+     * Shorter contents are never compressed
+     */
+    private static final int MIN_COMPRESSED_LENGTH = 256;
+    
+    /**
+     * Maximum size of the cache of decompressed contents in bytes
+     */
+    private static final long DECOMPRESSED_CACHE_SIZE = 8L << 20;
+    
+    private final EntryCache decompressedCache = new EntryCache(DECOMPRESSED_CACHE, DECOMPRESSED_CACHE_SIZE);
+    
+    private final EntryCache renderedCache = new EntryCache(RENDERED_HTML_CACHE, Long.MAX_VALUE);
+    
+    private volatile boolean compressionEnabled;
+    
+    private final HashMap<Key, EntryReference> entries = new HashMap<>();
+    
+    private final ReferenceQueue<Entry> queue = new ReferenceQueue<>();
+    
+    private long uniqueSize;
+    
+    private long requestCount;
+    
+    private long hitCount;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a store; its caches are registered with the shared memory governor
+     */
+    public ContentStore() {
+        MemoryGovernor.getShared().register(decompressedCache);
+        MemoryGovernor.getShared().register(renderedCache);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the store shared by all documents
+     * @return Shared store
+     */
+    public static ContentStore getShared() {
+        return SHARED;
+    }
+    
+    /**
+     * Returns the number of unique contents
+     * @return Number of entries
+     */
+    public synchronized int getEntryCount() {
+        purge();
+        return entries.size();
+    }
+    
+    /**
+     * Returns the approximate heap size of the unique contents
+     * @return Size in bytes
+     */
+    public synchronized long getUniqueSize() {
+        purge();
+        return uniqueSize;
+    }
+    
+    /**
+     * Checks if new contents are stored compressed
+     * @return true if compression is enabled
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+    
+    /**
+     * Enables or disables compression of new contents. Existing entries
+     * keep their storage mode.
+     * @param compressionEnabled true to store new contents compressed
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+    
+    /**
+     * Returns the number of contents that have been stored
+     * @return Number of requests
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+    
+    /**
+     * Returns the number of stored contents that were already present
+     * @return Number of deduplicated contents
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Returns the entry for the given content, creating it if no equal
+     * content is stored yet
+     * @param text Content
+     * @return Shared entry
+     */
+    public Entry intern(String text) {
+        var key = new Key(digest(text));
+        synchronized (this) {
+            purge();
+            requestCount++;
+            var existing = entries.get(key);
+            var entry = (existing != null)? existing.get() : null;
+            if (entry != null) {
+                hitCount++;
+                return entry;
+            }
+            entry = (compressionEnabled && text.length() >= MIN_COMPRESSED_LENGTH)
+                ? Entry.compressed(this, text)
+                : new Entry(this, text);
+            var reference = new EntryReference(entry, key, queue);
+            entry.reference = reference;
+            entries.put(key, reference);
+            uniqueSize += reference.size;
+            return entry;
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Removes the entries that are no longer used by any node
+     */
+    private void purge() {
+        EntryReference reference;
+        while ((reference = (EntryReference)queue.poll()) != null) {
+            if (entries.get(reference.key) == reference) {
+                entries.remove(reference.key);
+                uniqueSize -= reference.size;
+            }
+            decompressedCache.remove(reference);
+            renderedCache.remove(reference);
+        }
+    }
+    
+    private String getDecompressed(Entry entry) {
+        var cached = decompressedCache.get(entry.reference);
+        PerformanceMetrics.getShared().recordCacheLookup(DECOMPRESSED_CACHE, null, cached != null);
+        if (cached != null) return (String)cached.value;
+        var start = System.nanoTime();
+        var bytes = LzCodec.decompress(entry.compressed, entry.uncompressedLength);
+        var text = new String(bytes, StandardCharsets.UTF_8);
+        decompressedCache.put(entry.reference, text, 64 + 2L * text.length(), System.nanoTime() - start);
+        return text;
+    }
+    
+    /**
+     * Hashes the UTF-16 code units of the text
+     */
+    private static byte[] digest(String text) {
+        var digest = DIGEST.get();
+        var buffer = DIGEST_BUFFER.get();
+        int position = 0;
+        for (int i = 0; i < text.length(); i++) {
+            var value = text.charAt(i);
+            buffer[position++] = (byte)(value >>> 8);
+            buffer[position++] = (byte)value;
+            if (position == buffer.length) {
+                digest.update(buffer, 0, position);
+                position = 0;
+            }
+        }
+        digest.update(buffer, 0, position);
+        return digest.digest();
+    }
+    
+    
+    /**
+     * SHA-256 hash of a content
+     */
+    private static final class Key {
+        
+        private final byte[] hash;
+        
+        private final int hashCode;
+
+        Key(byte[] hash) {
+            this.hash = hash;
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(hash, ((Key)other).hash);
+        }
+        
+    }
+    
+    
+    private static final class EntryReference extends WeakReference<Entry> {
+        
+        private final Key key;
+        
+        private final long size;
+
+        EntryReference(Entry entry, Key key, ReferenceQueue<Entry> queue) {
+            super(entry, queue);
+            this.key = key;
+            this.size = entry.getEstimatedSize();
+        }
+        
+    }
+    
+    /**
+     * Least recently used cache of values derived from entries
+     */
+    private static final class EntryCache implements MemoryGovernor.Cache {
+        
+        private final String name;
+        
+        private final long maxSize;
+        
+        private final LinkedHashMap<EntryReference, CachedValue> values = new LinkedHashMap<>(64, 0.75f, true);
+        
+        private long size;
+
+        EntryCache(String name, long maxSize) {
+            this.name = name;
+            this.maxSize = maxSize;
+        }
+        
+        synchronized CachedValue get(EntryReference reference) {
+            var cached = values.get(reference);
+            if (cached != null) cached.lastAccess = System.nanoTime();
+            return cached;
+        }
+        
+        void put(EntryReference reference, Object value, long valueSize, long cost) {
+            synchronized (this) {
+                var replaced = values.put(reference, new CachedValue(reference, value, valueSize, cost));
+                if (replaced != null) size -= replaced.size;
+                size += valueSize;
+                var iterator = values.values().iterator();
+                while (size > maxSize && values.size() > 1) {
+                    size -= iterator.next().size;
+                    iterator.remove();
+                }
+            }
+            MemoryGovernor.getShared().check();
+        }
+        
+        synchronized void remove(EntryReference reference) {
+            var removed = values.remove(reference);
+            if (removed != null) size -= removed.size;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public synchronized int getEntryCount() {
+            return values.size();
+        }
+
+        @Override
+        public synchronized long getSize() {
+            return size;
+        }
+
+        @Override
+        public synchronized MemoryGovernor.Candidate getEvictionCandidate() {
+            if (values.isEmpty()) return null;
+            var cached = values.values().iterator().next();
+            return new MemoryGovernor.Candidate(cached, cached.size, cached.lastAccess, cached.cost);
+        }
+
+        @Override
+        public synchronized long evict(MemoryGovernor.Candidate candidate) {
+            var cached = (CachedValue)candidate.getKey();
+            if (cached.lastAccess != candidate.getLastAccess() || !values.remove(cached.reference, cached)) return 0;
+            size -= cached.size;
+            return cached.size;
+        }
+        
+    }
+    
+    
+    private static final class CachedValue {
+        
+        private final EntryReference reference;
+        
+        private final Object value;
+        
+        private final long size;
+        
+        /**
+         * Time needed to create the value in nanoseconds
+         */
+        private final long cost;
+        
+        private volatile long lastAccess = System.nanoTime();
+
+        CachedValue(EntryReference reference, Object value, long size, long cost) {
+            this.reference = reference;
+            this.value = value;
+            this.size = size;
+            this.cost = cost;
+        }
+        
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * A unique content and the html last rendered from it
+     */
+    public static final class Entry {
+        
+        private final ContentStore store;
+        
+        /**
+         * Content; null if it is stored compressed
+         */
+        private final String text;
+        
+        private final byte[] compressed;
+        
+        private final int uncompressedLength;
+        
+        /**
+         * Key of the entry in the store and its caches
+         */
+        private EntryReference reference;
+
+        Entry(ContentStore store, String text) {
+            this.store = store;
+            this.text = text;
+            this.compressed = null;
+            this.uncompressedLength = 0;
+        }
+        
+        private Entry(ContentStore store, byte[] compressed, int uncompressedLength) {
+            this.store = store;
+            this.text = null;
+            this.compressed = compressed;
+            this.uncompressedLength = uncompressedLength;
+        }
+        
+        /**
+         * Creates a compressed entry if compression saves at least an
+         * eighth of the size, an uncompressed one otherwise
+         */
+        static Entry compressed(ContentStore store, String text) {
+            var bytes = text.getBytes(StandardCharsets.UTF_8);
+            var compressed = LzCodec.compress(bytes);
+            if (compressed.length > 2L * text.length() * 7 / 8) {
+                return new Entry(store, text);
+            }
+            return new Entry(store, compressed, bytes.length);
+        }
+
+        /**
+         * Returns the content; compressed contents are decompressed or
+         * taken from the cache of decompressed contents
+         * @return Content string
+         */
+        public String getText() {
+            return (text != null)? text : store.getDecompressed(this);
+        }
+        
+        /**
+         * Checks if the content is stored compressed
+         * @return true if the content is compressed
+         */
+        public boolean isCompressed() {
+            return compressed != null;
+        }
+        
+        /**
+         * Returns the approximate heap size of the stored content
+         * @return Size in bytes
+         */
+        public long getEstimatedSize() {
+            return (text != null)? 64 + 2L * text.length() : 64 + compressed.length;
+        }
+        
+        /**
+         * Returns the cached html for the given link signature
+         * @param linkSignature Link signature of the rendering node
+         * @return Html or null if it has not been rendered for this signature
+         */
+        String getRenderedHtml(long linkSignature) {
+            var cached = store.renderedCache.get(reference);
+            if (cached == null) return null;
+            var rendered = (RenderedHtml)cached.value;
+            return (rendered.linkSignature == linkSignature)? rendered.html : null;
+        }
+        
+        /**
+         * Caches the html rendered from this content
+         * @param linkSignature Link signature of the rendering node
+         * @param html Rendered html
+         * @param cost Time needed for rendering in nanoseconds
+         */
+        void setRenderedHtml(long linkSignature, String html, long cost) {
+            store.renderedCache.put(reference, new RenderedHtml(linkSignature, html), 96 + 2L * html.length(), cost);
+        }
+        
+    }
+    
+    
+    /**
+     * Html rendered for a certain link signature
+     */
+    private static final class RenderedHtml {
+        
+        private final long linkSignature;
+        
+        private final String html;
+
+        RenderedHtml(long linkSignature, String html) {
+            this.linkSignature = linkSignature;
+            this.html = html;
+        }
+        
+    }
+    
+}
@@ -17,7 +17,11 @@
  */
 package de.ubergeek.amigaguideviewer;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,10 +36,30 @@ public class Document {
     
     private Node firstNode;
     
+    private Path file;
+    
+    private long sourceSize;
+    
+    private long parseTime;
+    
     private final Map<String, Node> nodes;
     
+    private final List<Node> nodesByOrdinal;
+    
+    private final List<Link> links;
+    
     private final Map<String, String> attributes;
     
+    /**
+     * Backlink index in compressed sparse row layout: the ordinals of all
+     * nodes linking to node n are stored in backlinkSources from
+     * backlinkOffsets[n] (inclusive) to backlinkOffsets[n + 1] (exclusive).
+     * Built lazily on first access.
+     */
+    private volatile int[] backlinkOffsets;
+    
+    private int[] backlinkSources;
+    
     // </editor-fold>
 
     
@@ -59,12 +83,110 @@ public class Document {
         firstNode = node;
     }
     
+    /**
+     * Returns the file this document has been loaded from
+     * @return Path of the guide file or null if the document was not loaded from a file
+     */
+    public Path getFile() {
+        return file;
+    }
+    
+    /**
+     * Sets the file this document has been loaded from
+     * @param file Path of the guide file
+     */
+    public void setFile(Path file) {
+        this.file = file;
+    }
+    
+    /**
+     * Returns the size of the guide source this document has been parsed from
+     * @return Size in bytes
+     */
+    public long getSourceSize() {
+        return sourceSize;
+    }
+    
+    /**
+     * Returns the time needed for parsing this document (or this version
+     * of it, if it has been reparsed)
+     * @return Time in nanoseconds
+     */
+    public long getParseTime() {
+        return parseTime;
+    }
+    
+    void setParseStatistics(long sourceSize, long parseTime) {
+        this.sourceSize = sourceSize;
+        this.parseTime = parseTime;
+    }
+    
     /**
      * Returns a list with all existing document nodes
      * @return A list with all existing document nodes
      */
     public List<Node> getNodesList() {
-        return new ArrayList<>(nodes.values());
+        return new ArrayList<>(nodesByOrdinal);
+    }
+    
+    /**
+     * Returns the number of document nodes
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return nodesByOrdinal.size();
+    }
+    
+    /**
+     * Returns the node with the given ordinal (position within the document)
+     * @param ordinal Node ordinal
+     * @return The node or null if the ordinal is out of range
+     */
+    public Node getNodeByOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= nodesByOrdinal.size()) return null;
+        return nodesByOrdinal.get(ordinal);
+    }
+    
+    /**
+     * Returns the number of entries in the link table
+     * @return Number of links
+     */
+    public int getLinkCount() {
+        return links.size();
+    }
+    
+    /**
+     * Returns the link with the given id
+     * @param id Link id
+     * @return The link or null if the id is out of range
+     */
+    public Link getLink(int id) {
+        if (id < 0 || id >= links.size()) return null;
+        return links.get(id);
+    }
+    
+    /**
+     * Returns the link with the given index within the given node.
+     * The index counts the link commands in the node's content in order of
+     * appearance.
+     * @param node Source node
+     * @param index Index of the link within the node
+     * @return The link or null if no such link exists
+     */
+    public Link getLink(Node node, int index) {
+        if (node == null || node.getDocument() != this) return null;
+        if (index < 0 || index >= node.getLinkCount()) return null;
+        return getLink(node.getFirstLinkId() + index);
+    }
+    
+    /**
+     * Returns all links contained in the given node
+     * @param node Source node
+     * @return List of links (empty if the node has no links)
+     */
+    public List<Link> getLinksOfNode(Node node) {
+        if (node == null || node.getDocument() != this || node.getLinkCount() == 0) return List.of();
+        return links.subList(node.getFirstLinkId(), node.getFirstLinkId() + node.getLinkCount());
     }
     
     // </editor-fold>
@@ -77,6 +199,8 @@ public class Document {
      */
     public Document() {
         nodes = new LinkedHashMap<>();
+        nodesByOrdinal = new ArrayList<>();
+        links = new ArrayList<>();
         attributes = new LinkedHashMap<>();
     }
     
@@ -84,6 +208,35 @@ public class Document {
     
     
     // <editor-fold desc="Public methods">
+    
+    /**
+     * Returns the ordinals of all nodes that refer to the given node, either
+     * through a link command or through @next, @prev, @toc or @index.
+     * Each referring node is returned only once, in document order.
+     * @param node Target node
+     * @return Ordinals of the referring nodes
+     */
+    public int[] getBacklinkOrdinals(Node node) {
+        if (node == null || node.getDocument() != this) return new int[0];
+        var offsets = getBacklinkOffsets();
+        var ordinal = node.getOrdinal();
+        return Arrays.copyOfRange(backlinkSources, offsets[ordinal], offsets[ordinal + 1]);
+    }
+    
+    /**
+     * Returns all nodes that refer to the given node.
+     * @see #getBacklinkOrdinals(de.ubergeek.amigaguideviewer.Node) 
+     * @param node Target node
+     * @return List of referring nodes
+     */
+    public List<Node> getBacklinks(Node node) {
+        var ordinals = getBacklinkOrdinals(node);
+        var result = new ArrayList<Node>(ordinals.length);
+        for (var ordinal : ordinals) {
+            result.add(nodesByOrdinal.get(ordinal));
+        }
+        return result;
+    }
 
     /**
      * Created a new document node and adds it's reference to the list of nodes
@@ -93,14 +246,70 @@ public class Document {
      * @return Reference to the new document node
      */
     public Node createAndAddNode(String identifier, String title) {
-        var node = new Node(this, identifier, title);
-        nodes.put(identifier.toLowerCase(), node);
+        return addNode(new Node(this, identifier, title));
+    }
+    
+    /**
+     * Adds a node that has been created for this document. A node with the
+     * same identifier is replaced (keeping its position).
+     * @param node Node to be added
+     * @return The added node
+     */
+    Node addNode(Node node) {
+        var replacedNode = nodes.put(node.getIdentifier().toLowerCase(), node);
+        if (replacedNode != null) {
+            node.setOrdinal(replacedNode.getOrdinal());
+            nodesByOrdinal.set(node.getOrdinal(), node);
+            if (firstNode == replacedNode) firstNode = node;
+        } else {
+            node.setOrdinal(nodesByOrdinal.size());
+            nodesByOrdinal.add(node);
+        }
         if (nodes.size() == 1) {
             firstNode = node;
         }
         return node;
     }
     
+    /**
+     * Adds a link to the link table and assigns its id.
+     * Links have to be added node by node in order of appearance.
+     * @param source Node that contains the link
+     * @param link The link to be added
+     */
+    public void addLink(Node source, Link link) {
+        link.setId(links.size());
+        link.setSourceNodeOrdinal(source.getOrdinal());
+        if (source.getLinkCount() == 0) {
+            source.setFirstLinkId(link.getId());
+        }
+        source.setLinkCount(source.getLinkCount() + 1);
+        links.add(link);
+    }
+    
+    /**
+     * Resolves the targets of all links in the link table.
+     * Has to be called after all nodes have been added.
+     */
+    public void resolveLinks() {
+        for (var link : links) {
+            if (!link.getType().isNodeLink()) {
+                link.resolve(LinkStatus.NOT_A_NODE_LINK, -1);
+            } else if (link.getTarget().isBlank()) {
+                link.resolve(LinkStatus.EMPTY_TARGET, -1);
+            } else {
+                var target = getNodeByIdentifier(link.getTarget());
+                if (target != null) {
+                    link.resolve(LinkStatus.RESOLVED, target.getOrdinal());
+                } else if (link.getTarget().contains("/")) {
+                    link.resolve(LinkStatus.EXTERNAL_DOCUMENT, -1);
+                } else {
+                    link.resolve(LinkStatus.UNKNOWN_NODE, -1);
+                }
+            }
+        }
+    }
+    
     /**
      * Tries to find a document node with the given identification string.
      * If no node with the given identifier is existing the method returns null.
@@ -172,6 +381,100 @@ public class Document {
         return null;
     }
     
+    /**
+     * Returns the approximate heap size of the document in bytes.
+     * Contents that occur in several nodes are counted once.
+     * @return Size estimate
+     */
+    public long getEstimatedSize() {
+        long size = 256L + links.size() * 64L;
+        var contents = Collections.newSetFromMap(new IdentityHashMap<ContentStore.Entry, Boolean>());
+        for (var node : nodesByOrdinal) {
+            size += 160;
+            var entry = node.peekSharedContent();
+            if (entry == null) {
+                size += 2L * node.getContent().length();
+            } else if (contents.add(entry)) {
+                size += entry.getEstimatedSize();
+            }
+        }
+        return size;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private int[] getBacklinkOffsets() {
+        var offsets = backlinkOffsets;
+        if (offsets == null) {
+            synchronized (this) {
+                offsets = backlinkOffsets;
+                if (offsets == null) {
+                    offsets = buildBacklinkIndex();
+                    backlinkOffsets = offsets;
+                }
+            }
+        }
+        return offsets;
+    }
+    
+    /**
+     * Builds the backlink index in one pass over the link table and the
+     * navigation attributes of all nodes.
+     * Edges are packed as (target << 32 | source) into a long array, so that
+     * sorting groups them by target and orders the sources.
+     */
+    private int[] buildBacklinkIndex() {
+        var nodeCount = nodesByOrdinal.size();
+        var edges = new long[links.size() + nodeCount * 4];
+        var edgeCount = 0;
+        
+        for (var link : links) {
+            if (link.isResolved()) {
+                edges[edgeCount++] = ((long)link.getTargetNodeOrdinal() << 32) | link.getSourceNodeOrdinal();
+            }
+        }
+        
+        var navigationAttributes = new NodeAttribute[] {
+            NodeAttribute.PREV, NodeAttribute.NEXT, NodeAttribute.TOC, NodeAttribute.INDEX
+        };
+        for (var node : nodesByOrdinal) {
+            for (var attribute : navigationAttributes) {
+                var identifier = node.getAttributeValue(attribute);
+                if (identifier == null) continue;
+                var target = getNodeByIdentifier(identifier);
+                if (target != null) {
+                    edges[edgeCount++] = ((long)target.getOrdinal() << 32) | node.getOrdinal();
+                }
+            }
+        }
+        
+        Arrays.sort(edges, 0, edgeCount);
+        
+        var offsets = new int[nodeCount + 1];
+        var sources = new int[edgeCount];
+        var sourceCount = 0;
+        var previousEdge = -1L;
+        var edgeIndex = 0;
+        
+        for (var target = 0; target < nodeCount; target++) {
+            offsets[target] = sourceCount;
+            while (edgeIndex < edgeCount && (int)(edges[edgeIndex] >>> 32) == target) {
+                var edge = edges[edgeIndex++];
+                if (edge != previousEdge) {
+                    sources[sourceCount++] = (int)edge;
+                    previousEdge = edge;
+                }
+            }
+        }
+        offsets[nodeCount] = sourceCount;
+        
+        backlinkSources = Arrays.copyOf(sources, sourceCount);
+        return offsets;
+    }
+    
     // </editor-fold>
     
 }
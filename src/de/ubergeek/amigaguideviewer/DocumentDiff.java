@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Differences between two versions of a document, e.g. before and after a
+ * guide file has been edited. Nodes are matched by identifier; a node counts
+ * as changed if its content hash or the state of its links (broken or not)
+ * differs.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class DocumentDiff {
+
+    // <editor-fold desc="Properties">
+    
+    private final Set<String> addedNodes;
+    
+    private final Set<String> removedNodes;
+    
+    private final Set<String> changedNodes;
+    
+    private final boolean structureChanged;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+
+    /**
+     * Returns the (lower case) identifiers of nodes that only exist in the new document
+     * @return Set of identifiers
+     */
+    public Set<String> getAddedNodes() {
+        return addedNodes;
+    }
+
+    /**
+     * Returns the (lower case) identifiers of nodes that only exist in the old document
+     * @return Set of identifiers
+     */
+    public Set<String> getRemovedNodes() {
+        return removedNodes;
+    }
+
+    /**
+     * Returns the (lower case) identifiers of nodes that exist in both
+     * documents but have been changed
+     * @return Set of identifiers
+     */
+    public Set<String> getChangedNodes() {
+        return changedNodes;
+    }
+
+    /**
+     * Checks if nodes have been added, removed, reordered or renamed, i.e.
+     * if the list of contents has to be rebuilt
+     * @return true if the node list has changed
+     */
+    public boolean isStructureChanged() {
+        return structureChanged;
+    }
+    
+    /**
+     * Checks if both documents are equal
+     * @return true if no node has been added, removed or changed
+     */
+    public boolean isEmpty() {
+        return !structureChanged && changedNodes.isEmpty();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private DocumentDiff(Set<String> addedNodes, Set<String> removedNodes, Set<String> changedNodes, boolean structureChanged) {
+        this.addedNodes = Collections.unmodifiableSet(addedNodes);
+        this.removedNodes = Collections.unmodifiableSet(removedNodes);
+        this.changedNodes = Collections.unmodifiableSet(changedNodes);
+        this.structureChanged = structureChanged;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Compares two versions of a document
+     * @param oldDocument Previous version
+     * @param newDocument New version
+     * @return The differences
+     */
+    public static DocumentDiff compute(Document oldDocument, Document newDocument) {
+        var addedNodes = new HashSet<String>();
+        var removedNodes = new HashSet<String>();
+        var changedNodes = new HashSet<String>();
+        var structureChanged = oldDocument.getNodeCount() != newDocument.getNodeCount();
+        
+        for (int ordinal = 0; ordinal < newDocument.getNodeCount(); ordinal++) {
+            var newNode = newDocument.getNodeByOrdinal(ordinal);
+            var identifier = newNode.getIdentifier().toLowerCase();
+            var oldNode = oldDocument.getNodeByIdentifier(identifier);
+            if (oldNode == null) {
+                addedNodes.add(identifier);
+                structureChanged = true;
+                continue;
+            }
+            if (oldNode.getOrdinal() != ordinal || !oldNode.toString().equals(newNode.toString())) {
+                structureChanged = true;
+            }
+            if (oldNode.getContentHash() != newNode.getContentHash()
+                    || oldNode.getLinkSignature() != newNode.getLinkSignature()) {
+                changedNodes.add(identifier);
+            }
+        }
+        for (var oldNode : oldDocument.getNodesList()) {
+            if (newDocument.getNodeByIdentifier(oldNode.getIdentifier()) == null) {
+                removedNodes.add(oldNode.getIdentifier().toLowerCase());
+                structureChanged = true;
+            }
+        }
+        return new DocumentDiff(addedNodes, removedNodes, changedNodes, structureChanged);
+    }
+    
+    /**
+     * Checks if the given node has been added, removed or changed
+     * @param identifier Node identifier
+     * @return true if the node is not the same in both documents
+     */
+    public boolean isNodeChanged(String identifier) {
+        var key = identifier.toLowerCase();
+        return changedNodes.contains(key) || addedNodes.contains(key) || removedNodes.contains(key);
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,703 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads guides and keeps recently used documents in memory.
+ * <p>
+ * Documents are cached in a least recently used order and weighted by their
+ * estimated heap size; the oldest documents are dropped once the memory
+ * budget is exceeded. A cached document is only returned if its file did
+ * not change, otherwise it is reparsed incrementally. Loads run on the
+ * lanes of the load scheduler and concurrent requests for the same file
+ * share one load; the load is cancelled once all requesters cancelled.
+ * The cache is also registered with the memory governor, which may drop
+ * documents when other caches need the memory.
+ * <p>
+ * Guides inside ZIP and LHA archives are addressed by virtual paths below
+ * the archive file ("/docs/coll.lha/Sub/a.guide"). They are read straight
+ * from the archive entry; recently used archives are kept open so that
+ * their directory does not have to be read again.
+ * <p>
+ * The manager also resolves the file part of cross-file links
+ * ("other.guide/node") relative to the linking guide.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class DocumentManager implements Closeable {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Name of the cache of parsed documents
+     */
+    public static final String DOCUMENT_CACHE = "Parsed documents";
+    
+    /**
+     * Default memory budget: a quarter of the heap, at most 256 MB
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4);
+    
+    private static final int MAX_OPEN_ARCHIVES = 4;
+    
+    private final long memoryBudget;
+    
+    private final LinkedHashMap<Path, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final Map<Path, PendingLoad> pendingLoads = new HashMap<>();
+    
+    private final LinkedHashMap<Path, OpenArchive> archives = new LinkedHashMap<>(8, 0.75f, true);
+    
+    private long cachedSize;
+    
+    private final GovernedCache governedCache = new GovernedCache();
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the memory budget of the cache
+     * @return Budget in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+    
+    /**
+     * Returns the estimated size of all cached documents
+     * @return Size in bytes
+     */
+    public synchronized long getCachedSize() {
+        return cachedSize;
+    }
+    
+    /**
+     * Returns the number of cached documents
+     * @return Number of documents
+     */
+    public synchronized int getCachedDocumentCount() {
+        return cache.size();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a document manager
+     * @param memoryBudget Maximum estimated size of the cached documents in bytes
+     */
+    public DocumentManager(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        MemoryGovernor.getShared().register(governedCache);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Loads the given guide in the foreground lane. A cached document is
+     * returned if the file did not change since it was parsed.
+     * @param file Path of the guide file
+     * @return Future that completes with the document; completes
+     *         exceptionally with an UncheckedIOException if the file could not be read
+     */
+    public CompletableFuture<Document> load(Path file) {
+        return load(file, LoadScheduler.Lane.FOREGROUND);
+    }
+    
+    /**
+     * Loads the given guide in the given lane of the load scheduler. If the
+     * guide is already being loaded, the running load is shared; a load
+     * waiting in the background lane is moved to the foreground lane when
+     * it is requested there. Cancelling the returned future only cancels
+     * the load once no other requester is waiting for it.
+     * @param file Path of the guide file
+     * @param lane Lane of the load scheduler
+     * @return Future that completes with the document; completes
+     *         exceptionally with an UncheckedIOException if the file could not be read
+     */
+    public CompletableFuture<Document> load(Path file, LoadScheduler.Lane lane) {
+        var key = file.toAbsolutePath().normalize();
+        var waiter = new CompletableFuture<Document>();
+        PendingLoad pending;
+        synchronized (this) {
+            pending = pendingLoads.get(key);
+            if (pending == null) {
+                pending = new PendingLoad();
+                pendingLoads.put(key, pending);
+                startLoad(key, pending, lane);
+            } else if (lane == LoadScheduler.Lane.FOREGROUND && pending.task.getLane() != lane && !pending.task.isStarted()) {
+                // Move the queued load to the foreground lane
+                var queued = pending.task;
+                pending.task = null;
+                if (queued.cancel(false)) {
+                    startLoad(key, pending, lane);
+                } else {
+                    pending.task = queued;
+                }
+            }
+            pending.waiters++;
+        }
+        
+        var load = pending;
+        load.result.whenComplete((document, exception) -> {
+            if (exception != null) {
+                waiter.completeExceptionally(exception);
+            } else {
+                waiter.complete(document);
+            }
+        });
+        waiter.whenComplete((document, exception) -> {
+            if (waiter.isCancelled()) release(key, load);
+        });
+        return waiter;
+    }
+    
+    /**
+     * Loads the given guide in the background lane, so that a later
+     * request for it is answered from the cache. A prefetch does not count
+     * as a waiter of the load: nobody can cancel it, so it must not keep a
+     * load alive that all real requesters have cancelled.
+     * @param file Path of the guide file
+     */
+    public void prefetch(Path file) {
+        var key = file.toAbsolutePath().normalize();
+        synchronized (this) {
+            if (pendingLoads.containsKey(key)) return;
+            var pending = new PendingLoad();
+            pendingLoads.put(key, pending);
+            startLoad(key, pending, LoadScheduler.Lane.BACKGROUND);
+        }
+    }
+    
+    /**
+     * Resolves the target of a cross-file link. The target consists of a
+     * file path and a node name separated by the last slash. Relative paths
+     * are resolved against the folder of the linking guide; as on the Amiga,
+     * an empty path component (leading or double slash) means the parent
+     * folder and names are matched case-insensitively. Volume and assign
+     * names ("HELP:") can not be mapped, so the path behind them is tried
+     * relative to the linking guide as well.
+     * @param baseFile Path of the linking guide; null resolves against the working directory
+     * @param target Link target
+     * @return The resolved target or null if the file does not exist
+     */
+    public Target resolveLink(Path baseFile, String target) {
+        if (target == null) return null;
+        var slash = target.lastIndexOf('/');
+        if (slash <= 0) return null;
+        var filePart = target.substring(0, slash);
+        var nodeIdentifier = target.substring(slash + 1).trim();
+        if (nodeIdentifier.isEmpty()) nodeIdentifier = "main";
+        
+        var folder = (baseFile != null && baseFile.toAbsolutePath().getParent() != null)
+            ? baseFile.toAbsolutePath().getParent()
+            : Path.of("").toAbsolutePath();
+        
+        var colon = filePart.lastIndexOf(':');
+        var file = resolvePath(folder, colon >= 0 ? filePart.substring(colon + 1) : filePart);
+        if (file == null && colon >= 0) {
+            // Assigns usually point to a folder of guides; try the file name only
+            var name = filePart.substring(filePart.lastIndexOf('/') + 1);
+            file = resolvePath(folder, name.substring(name.lastIndexOf(':') + 1));
+        }
+        return (file != null) ? new Target(file, nodeIdentifier) : null;
+    }
+    
+    /**
+     * Checks if the given file is an AmigaGuide document by looking for
+     * the @database command at its beginning; archive entries are supported
+     * @param file Path of the file
+     * @return true if the file starts with @database
+     */
+    public boolean isAmigaGuideFile(Path file) {
+        try (InputStream input = openFile(file)) {
+            var head = new String(input.readNBytes(64), StandardCharsets.ISO_8859_1).stripLeading();
+            return head.regionMatches(true, 0, "@database", 0, 9);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Returns the guides of an archive, using the cached archive directory
+     * @param archiveFile Path of the archive file
+     * @return Guide entries; all entries if the archive contains no .guide files
+     * @throws IOException If the archive could not be read
+     */
+    public List<GuideArchive.Entry> getArchiveEntries(Path archiveFile) throws IOException {
+        return getArchive(archiveFile.toAbsolutePath().normalize()).getGuideEntries();
+    }
+    
+    /**
+     * Returns the file on disk that contains the given file: the archive for
+     * virtual paths of archive entries, the file itself otherwise
+     * @param file Path of a file
+     * @return Path of the containing file on disk
+     */
+    public Path getSourceFile(Path file) {
+        var archiveFile = locateArchive(file.toAbsolutePath().normalize());
+        return (archiveFile != null)? archiveFile : file;
+    }
+    
+    /**
+     * Removes all documents from the cache
+     */
+    public synchronized void clear() {
+        cache.clear();
+        cachedSize = 0;
+    }
+    
+    /**
+     * Removes the cache from the memory governor, clears it and closes the
+     * open archives. The document manager must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        MemoryGovernor.getShared().unregister(governedCache);
+        clear();
+        synchronized (archives) {
+            for (var open : archives.values()) {
+                closeArchive(open);
+            }
+            archives.clear();
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Submits the load of a pending file to the load scheduler
+     */
+    private void startLoad(Path key, PendingLoad pending, LoadScheduler.Lane lane) {
+        var task = LoadScheduler.getShared().submit(lane, () -> {
+            try {
+                return loadNow(key);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        pending.task = task;
+        task.whenComplete((document, exception) -> {
+            StartupTiming.mark("loaded " + key.getFileName());
+            synchronized (this) {
+                // The load has been moved to another lane
+                if (pending.task != task) return;
+                pendingLoads.remove(key, pending);
+            }
+            if (exception != null) {
+                pending.result.completeExceptionally(exception);
+            } else {
+                pending.result.complete(document);
+            }
+        });
+    }
+    
+    /**
+     * Called when a requester cancelled its load; the load is cancelled
+     * once nobody is waiting for it anymore
+     */
+    private void release(Path key, PendingLoad pending) {
+        synchronized (this) {
+            if (--pending.waiters > 0 || !pendingLoads.remove(key, pending)) return;
+        }
+        pending.task.cancel(true);
+        pending.result.cancel(false);
+    }
+    
+    private Document loadNow(Path file) throws IOException {
+        try {
+            return loadNowOnce(file);
+        } catch (ClosedByInterruptException ex) {
+            throw ex;
+        } catch (ClosedChannelException ex) {
+            // The archive has been closed under the load and is reopened
+            return loadNowOnce(file);
+        }
+    }
+    
+    private Document loadNowOnce(Path file) throws IOException {
+        var archiveFile = locateArchive(file);
+        GuideArchive archive = null;
+        GuideArchive.Entry archiveEntry = null;
+        long size, lastModified;
+        if (archiveFile != null) {
+            archive = getArchive(archiveFile);
+            archiveEntry = archive.getEntry(getEntryName(archiveFile, file));
+            if (archiveEntry == null) throw new NoSuchFileException(file.toString());
+            // Entries are only changed by replacing the whole archive
+            size = archiveEntry.getSize();
+            lastModified = Files.getLastModifiedTime(archiveFile).toMillis();
+        } else {
+            size = Files.size(file);
+            lastModified = Files.getLastModifiedTime(file).toMillis();
+        }
+        
+        CacheEntry entry;
+        synchronized (this) {
+            entry = cache.get(file);
+        }
+        var hit = entry != null && entry.size == size && entry.lastModified == lastModified;
+        PerformanceMetrics.getShared().recordCacheLookup(DOCUMENT_CACHE, file.toString(), hit);
+        if (hit) {
+            entry.lastAccess = System.nanoTime();
+            return entry.document;
+        }
+        
+        var start = System.nanoTime();
+        var parser = new Parser();
+        Document document;
+        if (archive != null) {
+            try (var input = archive.openEntry(archiveEntry)) {
+                document = (entry != null)
+                    ? parser.reparseAmigaGuideFromStream(entry.document, input)
+                    : parser.parseAmigaGuideFromStream(input);
+            } catch (ClosedChannelException ex) {
+                discardArchive(archiveFile, archive);
+                throw ex;
+            }
+            document.setFile(file);
+        } else {
+            document = (entry != null)
+                ? parser.reparseAmigaGuideFromFile(entry.document, file)
+                : parser.parseAmigaGuideFromFile(file);
+        }
+        
+        synchronized (this) {
+            var newEntry = new CacheEntry(file, document, size, lastModified, System.nanoTime() - start);
+            var replaced = cache.put(file, newEntry);
+            if (replaced != null) cachedSize -= replaced.weight;
+            cachedSize += newEntry.weight;
+            evict();
+        }
+        MemoryGovernor.getShared().check();
+        return document;
+    }
+    
+    /**
+     * Drops the least recently used documents until the cache fits into
+     * the budget. The most recently used document is always kept.
+     */
+    private void evict() {
+        var iterator = cache.values().iterator();
+        while (cachedSize > memoryBudget && cache.size() > 1 && iterator.hasNext()) {
+            var entry = iterator.next();
+            iterator.remove();
+            cachedSize -= entry.weight;
+        }
+    }
+    
+    /**
+     * Opens a file on disk or an archive entry
+     */
+    private InputStream openFile(Path file) throws IOException {
+        var key = file.toAbsolutePath().normalize();
+        var archiveFile = locateArchive(key);
+        if (archiveFile == null) return Files.newInputStream(file);
+        var archive = getArchive(archiveFile);
+        var entry = archive.getEntry(getEntryName(archiveFile, key));
+        if (entry == null) throw new NoSuchFileException(file.toString());
+        try {
+            return archive.openEntry(entry);
+        } catch (ClosedChannelException ex) {
+            discardArchive(archiveFile, archive);
+            throw ex;
+        }
+    }
+    
+    /**
+     * Finds the archive that contains the given virtual path
+     * @return The archive file or null if the path does not point into an archive
+     */
+    private static Path locateArchive(Path file) {
+        if (Files.exists(file)) return null;
+        for (var current = file.getParent(); current != null; current = current.getParent()) {
+            if (Files.isRegularFile(current)) {
+                return GuideArchive.isArchiveFile(current)? current : null;
+            }
+            if (Files.isDirectory(current)) return null;
+        }
+        return null;
+    }
+    
+    private static String getEntryName(Path archiveFile, Path file) {
+        return archiveFile.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+    
+    /**
+     * Returns an open archive; archives are reopened when the file changed
+     * and the least recently used one is closed when too many are open
+     */
+    private GuideArchive getArchive(Path archiveFile) throws IOException {
+        var size = Files.size(archiveFile);
+        var lastModified = Files.getLastModifiedTime(archiveFile).toMillis();
+        synchronized (archives) {
+            var open = archives.get(archiveFile);
+            if (open != null && open.size == size && open.lastModified == lastModified) {
+                return open.archive;
+            }
+            if (open != null) closeArchive(open);
+            
+            open = new OpenArchive(GuideArchive.open(archiveFile), size, lastModified);
+            archives.put(archiveFile, open);
+            var iterator = archives.values().iterator();
+            while (archives.size() > MAX_OPEN_ARCHIVES) {
+                closeArchive(iterator.next());
+                iterator.remove();
+            }
+            return open.archive;
+        }
+    }
+    
+    /**
+     * Removes an archive whose file channel has been closed (an interrupt
+     * of a reading thread closes it), so that the next access reopens it
+     */
+    private void discardArchive(Path archiveFile, GuideArchive archive) {
+        synchronized (archives) {
+            var open = archives.get(archiveFile);
+            if (open == null || open.archive != archive) return;
+            archives.remove(archiveFile);
+            closeArchive(open);
+        }
+    }
+    
+    private static void closeArchive(OpenArchive open) {
+        try {
+            open.archive.close();
+        } catch (IOException ex) {
+            System.out.println("Error while closing archive: " + ex.getMessage());
+        }
+    }
+    
+    private Path resolvePath(Path folder, String path) {
+        var current = folder;
+        var components = path.split("/", -1);
+        for (int i = 0; i < components.length; i++) {
+            var component = components[i];
+            if (component.isEmpty()) {
+                current = current.getParent();
+                if (current == null) return null;
+                continue;
+            }
+            current = resolveName(current, component);
+            if (current == null) return null;
+        }
+        if (Files.isRegularFile(current)) return current;
+        var archiveFile = locateArchive(current);
+        try {
+            return (archiveFile != null && getArchive(archiveFile).getEntry(getEntryName(archiveFile, current)) != null)
+                ? current : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+    
+    private Path resolveName(Path folder, String name) {
+        var exact = folder.resolve(name);
+        if (Files.exists(exact)) return exact;
+        // Within an archive (the archive file itself or a folder in it)
+        var archiveFile = (Files.isRegularFile(folder) && GuideArchive.isArchiveFile(folder))? folder : locateArchive(folder);
+        if (archiveFile != null) {
+            try {
+                var prefix = archiveFile.equals(folder)? "" : getEntryName(archiveFile, folder);
+                var found = getArchive(archiveFile).findName(prefix, name);
+                return (found != null)? archiveFile.resolve(found) : null;
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+        try (var stream = Files.newDirectoryStream(folder)) {
+            for (var candidate : stream) {
+                if (candidate.getFileName().toString().equalsIgnoreCase(name)) return candidate;
+            }
+        } catch (IOException ex) {
+            // Folder does not exist or can not be read
+        }
+        return null;
+    }
+    
+    /**
+     * A running load and the number of requesters waiting for it
+     */
+    private static final class PendingLoad {
+        
+        private final CompletableFuture<Document> result = new CompletableFuture<>();
+        
+        private LoadScheduler.Task<Document> task;
+        
+        private int waiters;
+        
+    }
+    
+    /**
+     * A cached document and the state of its file when it was parsed
+     */
+    private static final class CacheEntry {
+        
+        private final Path file;
+        
+        private final Document document;
+        
+        private final long size;
+        
+        private final long lastModified;
+        
+        private final long weight;
+        
+        /**
+         * Time needed to parse the document in nanoseconds
+         */
+        private final long cost;
+        
+        private volatile long lastAccess;
+
+        CacheEntry(Path file, Document document, long size, long lastModified, long cost) {
+            this.file = file;
+            this.document = document;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.weight = document.getEstimatedSize();
+            this.cost = cost;
+            this.lastAccess = System.nanoTime();
+        }
+        
+    }
+    
+    /**
+     * View of the document cache for the memory governor
+     */
+    private final class GovernedCache implements MemoryGovernor.Cache {
+
+        @Override
+        public String getName() {
+            return DOCUMENT_CACHE;
+        }
+
+        @Override
+        public int getEntryCount() {
+            return getCachedDocumentCount();
+        }
+
+        @Override
+        public long getSize() {
+            return getCachedSize();
+        }
+
+        @Override
+        public MemoryGovernor.Candidate getEvictionCandidate() {
+            synchronized (DocumentManager.this) {
+                // The most recently used document is always kept
+                if (cache.size() <= 1) return null;
+                var entry = cache.values().iterator().next();
+                return new MemoryGovernor.Candidate(entry, entry.weight, entry.lastAccess, entry.cost);
+            }
+        }
+
+        @Override
+        public long evict(MemoryGovernor.Candidate candidate) {
+            var entry = (CacheEntry)candidate.getKey();
+            synchronized (DocumentManager.this) {
+                if (entry.lastAccess != candidate.getLastAccess() || !cache.remove(entry.file, entry)) return 0;
+                cachedSize -= entry.weight;
+                return entry.weight;
+            }
+        }
+        
+    }
+    
+    /**
+     * An open archive and the state of its file when it was opened
+     */
+    private static final class OpenArchive {
+        
+        private final GuideArchive archive;
+        
+        private final long size;
+        
+        private final long lastModified;
+
+        OpenArchive(GuideArchive archive, long size, long lastModified) {
+            this.archive = archive;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+        
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * Resolved target of a cross-file link
+     */
+    public static final class Target {
+        
+        private final Path file;
+        
+        private final String nodeIdentifier;
+
+        Target(Path file, String nodeIdentifier) {
+            this.file = file;
+            this.nodeIdentifier = nodeIdentifier;
+        }
+
+        /**
+         * Returns the linked file
+         * @return Path of the file
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the linked node
+         * @return Node identifier
+         */
+        public String getNodeIdentifier() {
+            return nodeIdentifier;
+        }
+        
+    }
+    
+}
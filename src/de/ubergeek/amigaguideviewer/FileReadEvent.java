@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event: a guide file or archive entry has been read
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+@Name("de.ubergeek.amigaguideviewer.FileRead")
+@Label("Guide File Read")
+@Category({ "AmigaGuide Viewer", "Loading" })
+@StackTrace(false)
+final class FileReadEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    @Description("Path of the file; empty for archive entries read from a stream")
+    String path;
+    
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+    
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches single files and (recursively) whole folders for changes.
+ * Events are collected on a background thread and reported in batches once
+ * no further events arrived for DEBOUNCE_MILLIS, because editors usually
+ * write a file in several steps. The listener is called on the watcher
+ * thread.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class FileWatcher {
+
+    // <editor-fold desc="Properties">
+    
+    private static final long DEBOUNCE_MILLIS = 300;
+    
+    /**
+     * Receives changed files
+     */
+    public interface Listener {
+        
+        /**
+         * Called with the files that have been created, modified or deleted.
+         * If events have been lost the watched folder itself is reported;
+         * the listener should then rescan it.
+         * @param files Changed files (absolute paths)
+         */
+        void filesChanged(Set<Path> files);
+        
+    }
+    
+    private final Listener listener;
+    
+    private final WatchService watchService;
+    
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    
+    private final Set<Path> watchedFiles = new HashSet<>();
+    
+    private final Set<Path> watchedFolders = new HashSet<>();
+    
+    private final Thread thread;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a watcher and starts its background thread
+     * @param name Name of the background thread
+     * @param listener Receives the changed files
+     * @throws IOException If the file system does not support watching
+     */
+    public FileWatcher(String name, Listener listener) throws IOException {
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Replaces the set of watched single files
+     * @param files Files to be watched
+     */
+    public synchronized void setFiles(Collection<Path> files) {
+        watchedFiles.clear();
+        for (var file : files) {
+            watchedFiles.add(file.toAbsolutePath().normalize());
+        }
+        registerAll();
+    }
+    
+    /**
+     * Replaces the set of watched folders. Sub folders are watched as well,
+     * including those created later on.
+     * @param folders Folders to be watched
+     */
+    public synchronized void setFolders(Collection<Path> folders) {
+        watchedFolders.clear();
+        for (var folder : folders) {
+            watchedFolders.add(folder.toAbsolutePath().normalize());
+        }
+        registerAll();
+    }
+    
+    /**
+     * Stops watching and ends the background thread
+     */
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            System.out.println("Error while closing file watcher: " + ex.getMessage());
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private void registerAll() {
+        for (var key : watchedDirectories.keySet()) {
+            key.cancel();
+        }
+        watchedDirectories.clear();
+        
+        for (var file : watchedFiles) {
+            if (file.getParent() != null) register(file.getParent());
+        }
+        for (var folder : watchedFolders) {
+            registerTree(folder);
+        }
+    }
+    
+    private void registerTree(Path folder) {
+        if (!Files.isDirectory(folder)) return;
+        try (var stream = Files.walk(folder)) {
+            stream.filter(Files::isDirectory).forEach(this::register);
+        } catch (IOException | UncheckedIOException ex) {
+            System.out.println("Could not watch " + folder + ": " + ex.getMessage());
+        }
+    }
+    
+    private void register(Path directory) {
+        try {
+            var key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, directory);
+        } catch (IOException ex) {
+            System.out.println("Could not watch " + directory + ": " + ex.getMessage());
+        }
+    }
+    
+    private boolean isWatchedFolderContent(Path file) {
+        for (var folder : watchedFolders) {
+            if (file.startsWith(folder)) return true;
+        }
+        return false;
+    }
+    
+    private void run() {
+        var changedFiles = new LinkedHashSet<Path>();
+        try {
+            while (true) {
+                var key = changedFiles.isEmpty()
+                    ? watchService.take()
+                    : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                
+                if (key == null) {
+                    listener.filesChanged(new LinkedHashSet<>(changedFiles));
+                    changedFiles.clear();
+                    continue;
+                }
+                
+                synchronized (this) {
+                    var directory = watchedDirectories.get(key);
+                    if (directory != null) {
+                        collectChanges(key, directory, changedFiles);
+                    }
+                    if (!key.reset()) {
+                        watchedDirectories.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Watcher has been closed
+        }
+    }
+    
+    private void collectChanges(WatchKey key, Path directory, Set<Path> changedFiles) {
+        for (var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events have been lost: report the watched files and folders
+                for (var file : watchedFiles) {
+                    if (directory.equals(file.getParent())) changedFiles.add(file);
+                }
+                if (isWatchedFolderContent(directory)) changedFiles.add(directory);
+                continue;
+            }
+            
+            @SuppressWarnings("unchecked")
+            var file = directory.resolve(((WatchEvent<Path>)event).context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                if (isWatchedFolderContent(file)) registerTree(file);
+                continue;
+            }
+            if (watchedFiles.contains(file) || isWatchedFolderContent(file)) {
+                changedFiles.add(file);
+            }
+        }
+    }
+    
+    // </editor-fold>
+    
+}
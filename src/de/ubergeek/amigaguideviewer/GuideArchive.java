@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only access to the guides in an archive file.
+ * Opening an archive only reads its directory (the ZIP central directory or
+ * the LHA entry headers); entries are decompressed when they are opened, so
+ * listing and opening one guide out of many never inflates the others.
+ * Implementations are safe for concurrent use.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public interface GuideArchive extends Closeable {
+    
+    /**
+     * Checks if the given file name has the extension of a supported archive
+     * @param file Path of the file
+     * @return true for .zip, .lha and .lzh files
+     */
+    static boolean isArchiveFile(Path file) {
+        if (file.getFileName() == null) return false;
+        var name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".lha") || name.endsWith(".lzh");
+    }
+    
+    /**
+     * Opens an archive file
+     * @param file Path of the archive
+     * @return The archive
+     * @throws IOException If the file could not be read or has an invalid format
+     */
+    static GuideArchive open(Path file) throws IOException {
+        var name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".zip")) {
+            return new ZipGuideArchive(file);
+        }
+        return new LhaGuideArchive(file);
+    }
+    
+    /**
+     * Returns the archive file
+     * @return Path of the archive
+     */
+    Path getFile();
+    
+    /**
+     * Returns all file entries
+     * @return Unmodifiable list of entries, in archive order
+     */
+    List<Entry> getEntries();
+    
+    /**
+     * Opens an entry for reading. The data is decompressed while it is read.
+     * @param entry Entry of this archive
+     * @return Stream of the uncompressed data
+     * @throws IOException If the entry could not be read
+     */
+    InputStream openEntry(Entry entry) throws IOException;
+    
+    /**
+     * Returns the entries that look like guides (extension .guide).
+     * If there are none all entries are returned.
+     * @return List of entries
+     */
+    default List<Entry> getGuideEntries() {
+        var guides = getEntries().stream()
+            .filter(entry -> entry.getName().toLowerCase().endsWith(".guide"))
+            .collect(Collectors.toList());
+        return guides.isEmpty()? getEntries() : guides;
+    }
+    
+    /**
+     * Looks up an entry by name; names are compared case-insensitively if
+     * there is no exact match (as on the Amiga)
+     * @param name Entry name ("/" separated, no leading slash)
+     * @return The entry or null
+     */
+    default Entry getEntry(String name) {
+        Entry match = null;
+        for (var entry : getEntries()) {
+            if (entry.getName().equals(name)) return entry;
+            if (match == null && entry.getName().equalsIgnoreCase(name)) match = entry;
+        }
+        return match;
+    }
+    
+    /**
+     * Returns the name of a file or folder within the given folder of the
+     * archive, matched case-insensitively
+     * @param folder Folder name ("" for the root, "/" separated)
+     * @param name Name to look for
+     * @return The full name with the spelling used in the archive, or null
+     */
+    default String findName(String folder, String name) {
+        var prefix = folder.isEmpty()? "" : folder + "/";
+        for (var entry : getEntries()) {
+            var entryName = entry.getName();
+            if (!entryName.regionMatches(true, 0, prefix, 0, prefix.length())) continue;
+            var end = entryName.indexOf('/', prefix.length());
+            var child = entryName.substring(prefix.length(), end < 0? entryName.length() : end);
+            if (child.equalsIgnoreCase(name)) {
+                return entryName.substring(0, prefix.length()) + child;
+            }
+        }
+        return null;
+    }
+    
+    
+    /**
+     * A file in an archive
+     */
+    class Entry {
+        
+        private final String name;
+        
+        private final long size;
+        
+        private final long lastModified;
+
+        /**
+         * Creates an entry
+         * @param name Name within the archive ("/" separated, no leading slash)
+         * @param size Uncompressed size
+         * @param lastModified Modification time in milliseconds since the epoch
+         */
+        public Entry(String name, long size, long lastModified) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the name within the archive
+         * @return Entry name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the uncompressed size
+         * @return Size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the modification time
+         * @return Milliseconds since the epoch
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the entry name; used by the entry selection
+         * @return String representation
+         */
+        @Override
+        public String toString() {
+            return name;
+        }
+        
+    }
+    
+}
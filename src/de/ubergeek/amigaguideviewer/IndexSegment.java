@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, memory-mapped segment of the library search index.
+ * A segment covers a set of guides; every node of these guides is a
+ * document of the segment. Documents are numbered consecutively per guide.
+ * <p>
+ * File layout (all numbers big endian, strings as int length + UTF-8):
+ * <pre>
+ * header       magic, version, guideCount, docCount, termCount, reserved,
+ *              guideTableOffset, docTableOffset, termOffsetsOffset, termTableOffset
+ * postings     per term: varints (docDelta, frequency, firstOffset)*
+ * guide table  per guide: path, size, lastModified, firstDoc, docCount
+ * doc table    int offset per doc, then per doc: guide, nodeIdentifier, title
+ * term offsets long offset per term (terms are sorted)
+ * term table   per term: term, docFrequency, postingsOffset, postingsLength
+ * </pre>
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class IndexSegment {
+
+    // <editor-fold desc="Properties">
+    
+    static final int MAGIC = 0x41475653;
+    
+    static final int VERSION = 1;
+    
+    static final int HEADER_SIZE = 56;
+    
+    private final Path file;
+    
+    private final ByteBuffer buffer;
+    
+    private final IndexedGuide[] guides;
+    
+    private final int[] docGuides;
+    
+    private final int docCount;
+    
+    private final int termCount;
+    
+    private final long docTableOffset;
+    
+    private final long termOffsetsOffset;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the segment file
+     * @return Path of the segment file
+     */
+    public Path getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the size of the segment file
+     * @return Size in bytes
+     */
+    public long getFileSize() {
+        return buffer.capacity();
+    }
+    
+    /**
+     * Returns the number of guides in this segment
+     * @return Number of guides
+     */
+    public int getGuideCount() {
+        return guides.length;
+    }
+    
+    /**
+     * Returns the guide with the given (segment local) number
+     * @param guide Guide number
+     * @return Guide info
+     */
+    public IndexedGuide getGuide(int guide) {
+        return guides[guide];
+    }
+    
+    /**
+     * Returns the number of documents (nodes) in this segment
+     * @return Number of documents
+     */
+    public int getDocCount() {
+        return docCount;
+    }
+    
+    /**
+     * Returns the guide number of the given document
+     * @param doc Document number
+     * @return Guide number
+     */
+    public int getDocGuide(int doc) {
+        return docGuides[doc];
+    }
+    
+    /**
+     * Returns the number of distinct terms
+     * @return Number of terms
+     */
+    public int getTermCount() {
+        return termCount;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private IndexSegment(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Invalid index segment: " + file);
+        }
+        var guideCount = buffer.getInt(8);
+        docCount = buffer.getInt(12);
+        termCount = buffer.getInt(16);
+        var guideTableOffset = buffer.getLong(24);
+        docTableOffset = buffer.getLong(32);
+        termOffsetsOffset = buffer.getLong(40);
+        
+        guides = new IndexedGuide[guideCount];
+        docGuides = new int[docCount];
+        var reader = buffer.duplicate();
+        reader.position((int)guideTableOffset);
+        for (int i = 0; i < guideCount; i++) {
+            var path = readString(reader);
+            var size = reader.getLong();
+            var lastModified = reader.getLong();
+            var firstDoc = reader.getInt();
+            var guideDocCount = reader.getInt();
+            guides[i] = new IndexedGuide(path, size, lastModified, firstDoc, guideDocCount);
+            for (int doc = firstDoc; doc < firstDoc + guideDocCount; doc++) {
+                docGuides[doc] = i;
+            }
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Opens (memory maps) a segment file
+     * @param file Path of the segment file
+     * @return The segment
+     * @throws IOException If the file could not be read or is invalid
+     */
+    public static IndexSegment open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index segment too large: " + file);
+            }
+            return new IndexSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    /**
+     * Returns the node identifier of the given document
+     * @param doc Document number
+     * @return Node identifier
+     */
+    public String getDocNodeIdentifier(int doc) {
+        var reader = docReader(doc);
+        return readString(reader);
+    }
+    
+    /**
+     * Returns the node title of the given document
+     * @param doc Document number
+     * @return Node title
+     */
+    public String getDocTitle(int doc) {
+        var reader = docReader(doc);
+        skipString(reader);
+        return readString(reader);
+    }
+    
+    /**
+     * Returns the term with the given index
+     * @param index Term index (terms are sorted)
+     * @return Term
+     */
+    public String getTerm(int index) {
+        var reader = buffer.duplicate();
+        reader.position((int)termRecordOffset(index));
+        return readString(reader);
+    }
+    
+    /**
+     * Returns the number of documents containing the given term
+     * @param index Term index
+     * @return Document frequency
+     */
+    public int getDocFrequency(int index) {
+        var reader = termRecordReader(index);
+        return reader.getInt();
+    }
+    
+    /**
+     * Returns a cursor over the postings of the given term
+     * @param index Term index
+     * @return Postings cursor
+     */
+    public PostingsCursor getPostings(int index) {
+        var reader = termRecordReader(index);
+        reader.getInt();
+        var offset = reader.getLong();
+        var length = reader.getInt();
+        return new PostingsCursor(buffer, (int)offset, (int)offset + length);
+    }
+    
+    /**
+     * Returns the raw (encoded) postings of the given term
+     * @param index Term index
+     * @return Encoded postings
+     */
+    public byte[] getPostingsBytes(int index) {
+        var reader = termRecordReader(index);
+        reader.getInt();
+        var offset = reader.getLong();
+        var length = reader.getInt();
+        var bytes = new byte[length];
+        buffer.duplicate().position((int)offset).get(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Returns the index of the first term that is not less than the given
+     * term (binary search in the mapped term table)
+     * @param term Term
+     * @return Term index (termCount if all terms are less)
+     */
+    public int lowerBound(String term) {
+        int low = 0, high = termCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getTerm(middle).compareTo(term) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Returns the index of the given term
+     * @param term Term
+     * @return Term index or -1 if the term does not occur in this segment
+     */
+    public int findTerm(String term) {
+        var index = lowerBound(term);
+        if (index < termCount && getTerm(index).equals(term)) return index;
+        return -1;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private long termRecordOffset(int index) {
+        return buffer.getLong((int)(termOffsetsOffset + index * 8L));
+    }
+    
+    private ByteBuffer termRecordReader(int index) {
+        var reader = buffer.duplicate();
+        reader.position((int)termRecordOffset(index));
+        skipString(reader);
+        return reader;
+    }
+    
+    private ByteBuffer docReader(int doc) {
+        var reader = buffer.duplicate();
+        var offset = buffer.getInt((int)(docTableOffset + doc * 4L));
+        reader.position((int)(docTableOffset + docCount * 4L + offset));
+        reader.getInt();
+        return reader;
+    }
+    
+    static String readString(ByteBuffer reader) {
+        var length = reader.getInt();
+        var bytes = new byte[length];
+        reader.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void skipString(ByteBuffer reader) {
+        var length = reader.getInt();
+        reader.position(reader.position() + length);
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * A guide covered by a segment
+     */
+    public static final class IndexedGuide {
+        
+        private final String path;
+        
+        private final long size;
+        
+        private final long lastModified;
+        
+        private final int firstDoc;
+        
+        private final int docCount;
+
+        IndexedGuide(String path, long size, long lastModified, int firstDoc, int docCount) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.firstDoc = firstDoc;
+            this.docCount = docCount;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public int getFirstDoc() {
+            return firstDoc;
+        }
+
+        public int getDocCount() {
+            return docCount;
+        }
+        
+    }
+    
+    
+    /**
+     * Sequential reader for the postings of one term: triples of document
+     * delta, frequency and first occurrence offset
+     */
+    public static final class PostingsCursor {
+        
+        private final ByteBuffer buffer;
+        
+        private int position;
+        
+        private final int end;
+        
+        private int doc;
+        
+        private int frequency;
+        
+        private int firstOffset;
+
+        PostingsCursor(ByteBuffer buffer, int position, int end) {
+            this.buffer = buffer;
+            this.position = position;
+            this.end = end;
+        }
+        
+        /**
+         * Moves to the next posting
+         * @return false if there are no more postings
+         */
+        public boolean next() {
+            if (position >= end) return false;
+            doc += readVarInt();
+            frequency = readVarInt();
+            firstOffset = readVarInt();
+            return true;
+        }
+
+        public int getDoc() {
+            return doc;
+        }
+
+        public int getFrequency() {
+            return frequency;
+        }
+
+        public int getFirstOffset() {
+            return firstOffset;
+        }
+        
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+        
+    }
+    
+}
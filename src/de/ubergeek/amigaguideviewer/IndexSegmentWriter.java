@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes index segment files (see IndexSegment for the file layout).
+ * A segment is either built from parsed documents (addGuide) or merged
+ * from existing segments (merge). Postings are streamed to the file in
+ * term order; only the guide, document and term tables are kept in memory.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+final class IndexSegmentWriter {
+
+    // <editor-fold desc="Properties">
+    
+    private final List<IndexSegment.IndexedGuide> guides = new ArrayList<>();
+    
+    private final List<String> docIdentifiers = new ArrayList<>();
+    
+    private final List<String> docTitles = new ArrayList<>();
+    
+    private final List<Integer> docGuides = new ArrayList<>();
+    
+    private final HashMap<String, TermPostingsBuilder> builders = new HashMap<>();
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Adds all nodes of a guide to the segment
+     * @param path Path of the guide file
+     * @param size Size of the guide file
+     * @param lastModified Modification time of the guide file
+     * @param document Parsed guide
+     */
+    void addGuide(String path, long size, long lastModified, Document document) {
+        var guide = guides.size();
+        var firstDoc = docIdentifiers.size();
+        var touched = new ArrayList<TermPostingsBuilder>();
+        var converter = new NodePlainTextConverter();
+        
+        for (var node : document.getNodesList()) {
+            final int doc = docIdentifiers.size();
+            docIdentifiers.add(node.getIdentifier());
+            docTitles.add(node.getTitle() != null ? node.getTitle() : node.getIdentifier());
+            docGuides.add(guide);
+            
+            converter.setNode(node);
+            SearchIndex.forEachTerm(converter.toPlainText(), (term, offset) -> {
+                var builder = builders.get(term);
+                if (builder == null) {
+                    builder = new TermPostingsBuilder();
+                    builders.put(term, builder);
+                }
+                if (builder.addOccurrence(doc, offset)) {
+                    touched.add(builder);
+                }
+            });
+            for (var builder : touched) {
+                builder.flush();
+            }
+            touched.clear();
+        }
+        guides.add(new IndexSegment.IndexedGuide(path, size, lastModified, firstDoc, docIdentifiers.size() - firstDoc));
+    }
+    
+    /**
+     * Checks if any guide has been added
+     * @return true if the segment would be empty
+     */
+    boolean isEmpty() {
+        return guides.isEmpty();
+    }
+    
+    /**
+     * Writes the guides added so far as a segment file
+     * @param file Path of the segment file
+     * @throws IOException If the file could not be written
+     */
+    void write(Path file) throws IOException {
+        var terms = builders.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        try (var output = new SegmentOutput(file)) {
+            for (var term : terms) {
+                var builder = builders.get(term);
+                output.writeTerm(term, builder.documentFrequency, builder.postings.toByteArray());
+            }
+            output.finish(guides, docGuides, docIdentifiers, docTitles);
+        }
+    }
+    
+    /**
+     * Merges segments into a new segment file. Deleted guides are dropped
+     * and the documents of the remaining guides are renumbered.
+     * @param segments Segments to be merged
+     * @param deletedGuides Deleted guides per segment
+     * @param file Path of the new segment file
+     * @throws IOException If a file could not be read or written
+     */
+    static void merge(List<IndexSegment> segments, List<BitSet> deletedGuides, Path file) throws IOException {
+        var guides = new ArrayList<IndexSegment.IndexedGuide>();
+        var docGuides = new ArrayList<Integer>();
+        var docIdentifiers = new ArrayList<String>();
+        var docTitles = new ArrayList<String>();
+        var docMaps = new int[segments.size()][];
+        
+        for (int s = 0; s < segments.size(); s++) {
+            var segment = segments.get(s);
+            var deleted = deletedGuides.get(s);
+            var docMap = new int[segment.getDocCount()];
+            Arrays.fill(docMap, -1);
+            for (int g = 0; g < segment.getGuideCount(); g++) {
+                if (deleted.get(g)) continue;
+                var guide = segment.getGuide(g);
+                var newGuide = guides.size();
+                var firstDoc = docIdentifiers.size();
+                for (int doc = guide.getFirstDoc(); doc < guide.getFirstDoc() + guide.getDocCount(); doc++) {
+                    docMap[doc] = docIdentifiers.size();
+                    docIdentifiers.add(segment.getDocNodeIdentifier(doc));
+                    docTitles.add(segment.getDocTitle(doc));
+                    docGuides.add(newGuide);
+                }
+                guides.add(new IndexSegment.IndexedGuide(guide.getPath(), guide.getSize(), guide.getLastModified(), firstDoc, guide.getDocCount()));
+            }
+            docMaps[s] = docMap;
+        }
+        
+        // k-way merge of the sorted term tables; ties are broken by segment
+        // order so the renumbered documents stay ascending
+        var queue = new PriorityQueue<TermCursor>((a, b) -> {
+            var result = a.term.compareTo(b.term);
+            return result != 0 ? result : Integer.compare(a.segment, b.segment);
+        });
+        for (int s = 0; s < segments.size(); s++) {
+            var cursor = new TermCursor(segments.get(s), s);
+            if (cursor.next()) queue.add(cursor);
+        }
+        
+        try (var output = new SegmentOutput(file)) {
+            while (!queue.isEmpty()) {
+                var term = queue.peek().term;
+                var postings = new CompressedIntList();
+                int documentFrequency = 0;
+                int lastDoc = 0;
+                while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                    var cursor = queue.poll();
+                    var docMap = docMaps[cursor.segment];
+                    var reader = cursor.source.getPostings(cursor.index);
+                    while (reader.next()) {
+                        var doc = docMap[reader.getDoc()];
+                        if (doc < 0) continue;
+                        postings.add(doc - lastDoc);
+                        postings.add(reader.getFrequency());
+                        postings.add(reader.getFirstOffset());
+                        lastDoc = doc;
+                        documentFrequency++;
+                    }
+                    if (cursor.next()) queue.add(cursor);
+                }
+                if (documentFrequency > 0) {
+                    output.writeTerm(term, documentFrequency, postings.toByteArray());
+                }
+            }
+            output.finish(guides, docGuides, docIdentifiers, docTitles);
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Position within the term table of a segment that is being merged
+     */
+    private static final class TermCursor {
+        
+        private final IndexSegment source;
+        
+        private final int segment;
+        
+        private int index = -1;
+        
+        private String term;
+
+        TermCursor(IndexSegment source, int segment) {
+            this.source = source;
+            this.segment = segment;
+        }
+        
+        boolean next() {
+            if (++index >= source.getTermCount()) return false;
+            term = source.getTerm(index);
+            return true;
+        }
+        
+    }
+    
+    /**
+     * Collects the postings of a single term. Only the frequency and the
+     * first occurrence are stored per document, which keeps library-wide
+     * segments small.
+     */
+    private static final class TermPostingsBuilder {
+        
+        private final CompressedIntList postings = new CompressedIntList();
+        
+        private int documentFrequency;
+        
+        private int lastFlushedDoc;
+        
+        private int currentDoc = -1;
+        
+        private int frequency;
+        
+        private int firstOffset;
+        
+        /**
+         * Records an occurrence
+         * @return true if this is the first occurrence within the document
+         */
+        boolean addOccurrence(int doc, int offset) {
+            var first = doc != currentDoc;
+            if (first) {
+                currentDoc = doc;
+                frequency = 0;
+                firstOffset = offset;
+            }
+            frequency++;
+            return first;
+        }
+        
+        void flush() {
+            postings.add(currentDoc - lastFlushedDoc);
+            postings.add(frequency);
+            postings.add(firstOffset);
+            lastFlushedDoc = currentDoc;
+            documentFrequency++;
+        }
+        
+    }
+    
+    /**
+     * Streams the sections of a segment file. The header is written last
+     * because it holds the offsets of the tables.
+     */
+    private static final class SegmentOutput implements AutoCloseable {
+        
+        private final Path file;
+        
+        private final DataOutputStream output;
+        
+        private long position;
+        
+        private final List<String> terms = new ArrayList<>();
+        
+        private final List<long[]> termInfos = new ArrayList<>();
+        
+        private boolean finished;
+
+        SegmentOutput(Path file) throws IOException {
+            this.file = file;
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            output.write(new byte[IndexSegment.HEADER_SIZE]);
+            position = IndexSegment.HEADER_SIZE;
+        }
+        
+        void writeTerm(String term, int documentFrequency, byte[] postings) throws IOException {
+            terms.add(term);
+            termInfos.add(new long[] { documentFrequency, position, postings.length });
+            output.write(postings);
+            position += postings.length;
+        }
+        
+        void finish(List<IndexSegment.IndexedGuide> guides, List<Integer> docGuides,
+                List<String> docIdentifiers, List<String> docTitles) throws IOException {
+            var guideTableOffset = position;
+            for (var guide : guides) {
+                writeString(guide.getPath());
+                writeLong(guide.getSize());
+                writeLong(guide.getLastModified());
+                writeInt(guide.getFirstDoc());
+                writeInt(guide.getDocCount());
+            }
+            
+            var docTableOffset = position;
+            var docRecords = new byte[docIdentifiers.size()][][];
+            int offset = 0;
+            for (int doc = 0; doc < docIdentifiers.size(); doc++) {
+                var identifier = docIdentifiers.get(doc).getBytes(StandardCharsets.UTF_8);
+                var title = docTitles.get(doc).getBytes(StandardCharsets.UTF_8);
+                docRecords[doc] = new byte[][] { identifier, title };
+                writeInt(offset);
+                offset += 12 + identifier.length + title.length;
+            }
+            for (int doc = 0; doc < docIdentifiers.size(); doc++) {
+                writeInt(docGuides.get(doc));
+                writeBytes(docRecords[doc][0]);
+                writeBytes(docRecords[doc][1]);
+            }
+            
+            var termOffsetsOffset = position;
+            var termTableOffset = termOffsetsOffset + terms.size() * 8L;
+            var recordOffset = termTableOffset;
+            var encodedTerms = new byte[terms.size()][];
+            for (int i = 0; i < terms.size(); i++) {
+                encodedTerms[i] = terms.get(i).getBytes(StandardCharsets.UTF_8);
+                writeLong(recordOffset);
+                recordOffset += 4 + encodedTerms[i].length + 16;
+            }
+            for (int i = 0; i < terms.size(); i++) {
+                var info = termInfos.get(i);
+                writeBytes(encodedTerms[i]);
+                writeInt((int)info[0]);
+                writeLong(info[1]);
+                writeInt((int)info[2]);
+            }
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Index segment too large: " + file);
+            }
+            output.close();
+            
+            try (var header = new RandomAccessFile(file.toFile(), "rw")) {
+                header.writeInt(IndexSegment.MAGIC);
+                header.writeInt(IndexSegment.VERSION);
+                header.writeInt(guides.size());
+                header.writeInt(docIdentifiers.size());
+                header.writeInt(terms.size());
+                header.writeInt(0);
+                header.writeLong(guideTableOffset);
+                header.writeLong(docTableOffset);
+                header.writeLong(termOffsetsOffset);
+                header.writeLong(termTableOffset);
+            }
+            finished = true;
+        }
+        
+        private void writeInt(int value) throws IOException {
+            output.writeInt(value);
+            position += 4;
+        }
+        
+        private void writeLong(long value) throws IOException {
+            output.writeLong(value);
+            position += 8;
+        }
+        
+        private void writeString(String value) throws IOException {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        private void writeBytes(byte[] bytes) throws IOException {
+            writeInt(bytes.length);
+            output.write(bytes);
+            position += bytes.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+            if (!finished) {
+                Files.deleteIfExists(file);
+            }
+        }
+        
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decompresses the LHA methods -lh4- to -lh7- (LZSS with static Huffman
+ * coded blocks; the methods only differ in the dictionary size).
+ * The decoder stops after the given number of uncompressed bytes.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+final class LhaDecoder extends InputStream {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Number of literal / length codes: 256 literals plus lengths 3..256
+     */
+    private static final int NC = 510;
+    
+    /**
+     * Number of codes of the code length table
+     */
+    private static final int NT = 19;
+    
+    private static final int TBIT = 5;
+    
+    private static final int CBIT = 9;
+    
+    private static final int THRESHOLD = 3;
+    
+    private static final int MAX_CODE_LENGTH = 16;
+    
+    private final InputStream input;
+    
+    private final byte[] dictionary;
+    
+    private final int dictionaryMask;
+    
+    private final int positionCodes;
+    
+    private final int positionBits;
+    
+    private final HuffmanTable literalTable = new HuffmanTable();
+    
+    private final HuffmanTable lengthTable = new HuffmanTable();
+    
+    private long remaining;
+    
+    private int position;
+    
+    private int copyLength;
+    
+    private int copySource;
+    
+    private int blockSize;
+    
+    private int bitBuffer;
+    
+    private int bitCount;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a decoder
+     * @param input Compressed data
+     * @param method Compression method ("-lh5-" etc.)
+     * @param originalSize Uncompressed size
+     * @throws IOException If the method is not supported
+     */
+    LhaDecoder(InputStream input, String method, long originalSize) throws IOException {
+        var dictionaryBits = switch (method) {
+            case "-lh4-" -> 12;
+            case "-lh5-" -> 13;
+            case "-lh6-" -> 15;
+            case "-lh7-" -> 16;
+            default -> throw new IOException("Unsupported compression method: " + method);
+        };
+        this.input = input;
+        this.dictionary = new byte[1 << dictionaryBits];
+        this.dictionaryMask = dictionary.length - 1;
+        this.positionCodes = dictionaryBits + 1;
+        this.positionBits = (dictionaryBits <= 13)? 4 : 5;
+        this.remaining = originalSize;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+
+    @Override
+    public int read() throws IOException {
+        var buffer = new byte[1];
+        return (read(buffer, 0, 1) < 0)? -1 : (buffer[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining <= 0) return -1;
+        int produced = 0;
+        while (produced < length && remaining > 0) {
+            if (copyLength == 0) {
+                var code = decodeLiteral();
+                if (code < 256) {
+                    buffer[offset + produced++] = put((byte)code);
+                    continue;
+                }
+                copyLength = code - (256 - THRESHOLD);
+                copySource = (position - decodePosition() - 1) & dictionaryMask;
+            }
+            while (copyLength > 0 && produced < length && remaining > 0) {
+                buffer[offset + produced++] = put(dictionary[copySource]);
+                copySource = (copySource + 1) & dictionaryMask;
+                copyLength--;
+            }
+        }
+        return produced;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private byte put(byte value) {
+        dictionary[position] = value;
+        position = (position + 1) & dictionaryMask;
+        remaining--;
+        return value;
+    }
+    
+    private int decodeLiteral() throws IOException {
+        if (blockSize == 0) {
+            blockSize = readBits(16);
+            readLengthTable(NT, TBIT, 3);
+            readLiteralTable();
+            readLengthTable(positionCodes, positionBits, -1);
+        }
+        blockSize--;
+        return literalTable.decode();
+    }
+    
+    private int decodePosition() throws IOException {
+        var code = lengthTable.decode();
+        if (code <= 1) return code;
+        return (1 << (code - 1)) + readBits(code - 1);
+    }
+    
+    /**
+     * Reads the code lengths of the code length table (count = NT) or of the
+     * position table. After the code at index special a 2 bit run of zero
+     * lengths follows.
+     */
+    private void readLengthTable(int count, int bits, int special) throws IOException {
+        var lengths = new int[count];
+        var n = readBits(bits);
+        if (n == 0) {
+            lengthTable.setConstant(readBits(bits));
+            return;
+        }
+        if (n > count) throw new IOException("Corrupt LHA data");
+        int i = 0;
+        while (i < n) {
+            var length = readBits(3);
+            if (length == 7) {
+                while (readBits(1) == 1) {
+                    if (++length > MAX_CODE_LENGTH) throw new IOException("Corrupt LHA data");
+                }
+            }
+            lengths[i++] = length;
+            if (i == special) {
+                var zeros = readBits(2);
+                while (zeros-- > 0 && i < count) lengths[i++] = 0;
+            }
+        }
+        lengthTable.build(lengths);
+    }
+    
+    private void readLiteralTable() throws IOException {
+        var lengths = new int[NC];
+        var n = readBits(CBIT);
+        if (n == 0) {
+            literalTable.setConstant(readBits(CBIT));
+            return;
+        }
+        if (n > NC) throw new IOException("Corrupt LHA data");
+        int i = 0;
+        while (i < n) {
+            var code = lengthTable.decode();
+            if (code <= 2) {
+                var zeros = switch (code) {
+                    case 0 -> 1;
+                    case 1 -> readBits(4) + 3;
+                    default -> readBits(CBIT) + 20;
+                };
+                if (i + zeros > NC) throw new IOException("Corrupt LHA data");
+                i += zeros;
+            } else {
+                lengths[i++] = code - 2;
+            }
+        }
+        literalTable.build(lengths);
+    }
+    
+    private int readBits(int count) throws IOException {
+        while (bitCount < count) {
+            var next = input.read();
+            // The encoder may omit trailing zero bits
+            bitBuffer = (bitBuffer << 8) | ((next < 0)? 0 : next);
+            bitCount += 8;
+        }
+        bitCount -= count;
+        var value = (bitBuffer >>> bitCount) & ((1 << count) - 1);
+        bitBuffer &= (1 << bitCount) - 1;
+        return value;
+    }
+    
+    /**
+     * Canonical Huffman code: codes are assigned in order of length and,
+     * within one length, in symbol order
+     */
+    private final class HuffmanTable {
+        
+        private final int[] counts = new int[MAX_CODE_LENGTH + 1];
+        
+        private int[] symbols = new int[0];
+        
+        private int constant = -1;
+        
+        void setConstant(int symbol) {
+            constant = symbol;
+        }
+        
+        void build(int[] lengths) throws IOException {
+            constant = -1;
+            Arrays.fill(counts, 0);
+            for (var length : lengths) {
+                if (length > MAX_CODE_LENGTH) throw new IOException("Corrupt LHA data");
+                counts[length]++;
+            }
+            counts[0] = 0;
+            var offsets = new int[MAX_CODE_LENGTH + 2];
+            for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+                offsets[length + 1] = offsets[length] + counts[length];
+            }
+            symbols = new int[offsets[MAX_CODE_LENGTH + 1]];
+            for (int symbol = 0; symbol < lengths.length; symbol++) {
+                if (lengths[symbol] != 0) symbols[offsets[lengths[symbol]]++] = symbol;
+            }
+        }
+        
+        int decode() throws IOException {
+            if (constant >= 0) return constant;
+            int code = 0, first = 0, index = 0;
+            for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+                code |= readBits(1);
+                var count = counts[length];
+                if (code - first < count) {
+                    return symbols[index + code - first];
+                }
+                index += count;
+                first = (first + count) << 1;
+                code <<= 1;
+            }
+            throw new IOException("Corrupt LHA data");
+        }
+        
+    }
+    
+    // </editor-fold>
+    
+}
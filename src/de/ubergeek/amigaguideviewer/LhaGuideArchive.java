@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LHA / LZH archive (header levels 0 to 2, methods -lh0- and -lh4- to -lh7-).
+ * LHA has no central directory, so the entry headers are scanned once when
+ * the archive is opened and kept as an index of name, data offset and method;
+ * the compressed data is only read when an entry is opened.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class LhaGuideArchive implements GuideArchive {
+
+    // <editor-fold desc="Properties">
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final Path file;
+    
+    private final FileChannel channel;
+    
+    private final List<Entry> entries;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Opens an LHA archive and reads its entry headers
+     * @param file Path of the archive
+     * @throws IOException If the file could not be read or is not an LHA archive
+     */
+    public LhaGuideArchive(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.entries = Collections.unmodifiableList(readHeaders());
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+
+    @Override
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public InputStream openEntry(Entry entry) throws IOException {
+        var lhaEntry = (LhaEntry)entry;
+        InputStream data = new EntryInputStream(channel, lhaEntry.dataOffset, lhaEntry.compressedSize);
+        if (!lhaEntry.method.equals("-lh0-") && !lhaEntry.method.equals("-lz4-")) {
+            data = new LhaDecoder(data, lhaEntry.method, lhaEntry.getSize());
+        }
+        return new CrcInputStream(data, lhaEntry.crc, entry.getName());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private List<Entry> readHeaders() throws IOException {
+        var result = new ArrayList<Entry>();
+        var size = channel.size();
+        long offset = 0;
+        while (offset + 22 <= size) {
+            var header = read(offset, (int)Math.min(size - offset, 512));
+            if (header.get(0) == 0) break;
+            var method = new String(bytes(header, 2, 5), StandardCharsets.ISO_8859_1);
+            if (!method.startsWith("-l") || method.charAt(4) != '-') {
+                throw new IOException("Not an LHA archive: " + file);
+            }
+            var level = header.get(20) & 0xff;
+            var entry = switch (level) {
+                case 0, 1 -> readHeader01(offset, header, method, level);
+                case 2 -> readHeader2(offset, header, method);
+                default -> throw new IOException("Unsupported LHA header level " + level + ": " + file);
+            };
+            if (!method.equals("-lhd-") && !entry.getName().isEmpty()) {
+                result.add(entry);
+            }
+            offset = entry.dataOffset + entry.compressedSize;
+        }
+        return result;
+    }
+    
+    private LhaEntry readHeader01(long offset, ByteBuffer header, String method, int level) throws IOException {
+        var headerSize = header.get(0) & 0xff;
+        long compressedSize = header.getInt(7) & 0xffffffffL;
+        long originalSize = header.getInt(11) & 0xffffffffL;
+        var lastModified = dosTime(header.getInt(15));
+        var nameLength = header.get(21) & 0xff;
+        var name = decodeName(bytes(header, 22, nameLength));
+        var crc = header.getShort(22 + nameLength) & 0xffff;
+        long dataOffset = offset + 2 + headerSize;
+        if (level == 1) {
+            // Extended headers follow the base header and count as compressed data
+            var directory = "";
+            var nextSize = header.getShort(2 + headerSize - 2) & 0xffff;
+            while (nextSize > 0) {
+                var extended = read(dataOffset, nextSize);
+                compressedSize -= nextSize;
+                dataOffset += nextSize;
+                switch (extended.get(0)) {
+                    case 0x01 -> name = decodeName(bytes(extended, 1, nextSize - 3));
+                    case 0x02 -> directory = decodeName(bytes(extended, 1, nextSize - 3));
+                }
+                nextSize = extended.getShort(nextSize - 2) & 0xffff;
+            }
+            name = joinName(directory, name);
+        }
+        return new LhaEntry(name, originalSize, lastModified, method, dataOffset, compressedSize, crc);
+    }
+    
+    private LhaEntry readHeader2(long offset, ByteBuffer header, String method) throws IOException {
+        var headerSize = header.getShort(0) & 0xffff;
+        long compressedSize = header.getInt(7) & 0xffffffffL;
+        long originalSize = header.getInt(11) & 0xffffffffL;
+        var lastModified = (header.getInt(15) & 0xffffffffL) * 1000;
+        var crc = header.getShort(21) & 0xffff;
+        var all = read(offset, headerSize);
+        var name = "";
+        var directory = "";
+        var position = 24;
+        var nextSize = all.getShort(position) & 0xffff;
+        position += 2;
+        while (nextSize > 0 && position + nextSize <= headerSize) {
+            switch (all.get(position)) {
+                case 0x01 -> name = decodeName(bytes(all, position + 1, nextSize - 3));
+                case 0x02 -> directory = decodeName(bytes(all, position + 1, nextSize - 3));
+            }
+            var following = all.getShort(position + nextSize - 2) & 0xffff;
+            position += nextSize;
+            nextSize = following;
+        }
+        return new LhaEntry(joinName(directory, name), originalSize, lastModified, method,
+            offset + headerSize, compressedSize, crc);
+    }
+    
+    private ByteBuffer read(long offset, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Truncated LHA archive: " + file);
+            }
+        }
+        return buffer.flip();
+    }
+    
+    private static byte[] bytes(ByteBuffer buffer, int offset, int length) throws IOException {
+        if (length < 0 || offset + length > buffer.limit()) throw new IOException("Corrupt LHA header");
+        var result = new byte[length];
+        buffer.get(offset, result);
+        return result;
+    }
+    
+    /**
+     * Converts a stored name: path separators may be 0xFF (generic), "\"
+     * (MS-DOS) or "/" (Amiga); a NUL ends the name (followed by a comment
+     * on the Amiga)
+     */
+    private static String decodeName(byte[] data) {
+        var builder = new StringBuilder(data.length);
+        for (var value : data) {
+            if (value == 0) break;
+            builder.append((value == (byte)0xff || value == '\\')? '/' : (char)(value & 0xff));
+        }
+        var name = builder.toString();
+        while (name.startsWith("/")) name = name.substring(1);
+        while (name.endsWith("/")) name = name.substring(0, name.length() - 1);
+        return name;
+    }
+    
+    private static String joinName(String directory, String name) {
+        return directory.isEmpty()? name : directory + "/" + name;
+    }
+    
+    private static long dosTime(int value) {
+        try {
+            var time = LocalDateTime.of(1980 + ((value >>> 25) & 0x7f), (value >>> 21) & 0x0f,
+                (value >>> 16) & 0x1f, (value >>> 11) & 0x1f, (value >>> 5) & 0x3f, (value & 0x1f) * 2);
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (java.time.DateTimeException ex) {
+            return 0;
+        }
+    }
+    
+    
+    /**
+     * Index entry with the location of the compressed data
+     */
+    private static final class LhaEntry extends Entry {
+        
+        private final String method;
+        
+        private final long dataOffset;
+        
+        private final long compressedSize;
+        
+        private final int crc;
+
+        LhaEntry(String name, long size, long lastModified, String method, long dataOffset, long compressedSize, int crc) {
+            super(name, size, lastModified);
+            this.method = method;
+            this.dataOffset = dataOffset;
+            this.compressedSize = compressedSize;
+            this.crc = crc;
+        }
+        
+    }
+    
+    
+    /**
+     * Reads a range of the archive with positional reads, so several entries
+     * can be read at the same time through the shared channel
+     */
+    private static final class EntryInputStream extends InputStream {
+        
+        private final FileChannel channel;
+        
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        
+        private long position;
+        
+        private long remaining;
+
+        EntryInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+            buffer.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (!fill()) return -1;
+            var count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+        
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) return true;
+            if (remaining <= 0) return false;
+            buffer.clear().limit((int)Math.min(BUFFER_SIZE, remaining));
+            var count = channel.read(buffer, position);
+            if (count < 0) throw new EOFException("Truncated LHA archive");
+            position += count;
+            remaining -= count;
+            buffer.flip();
+            return buffer.hasRemaining();
+        }
+        
+    }
+    
+    
+    /**
+     * Verifies the CRC-16 (polynomial 0xA001) of the uncompressed data when
+     * the end of the entry is reached
+     */
+    private static final class CrcInputStream extends InputStream {
+        
+        private static final int[] TABLE = new int[256];
+        
+        static {
+            for (int i = 0; i < 256; i++) {
+                var value = i;
+                for (int bit = 0; bit < 8; bit++) {
+                    value = ((value & 1) != 0)? (value >>> 1) ^ 0xa001 : value >>> 1;
+                }
+                TABLE[i] = value;
+            }
+        }
+        
+        private final InputStream input;
+        
+        private final int expected;
+        
+        private final String name;
+        
+        private int crc;
+
+        CrcInputStream(InputStream input, int expected, String name) {
+            this.input = input;
+            this.expected = expected;
+            this.name = name;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var buffer = new byte[1];
+            return (read(buffer, 0, 1) < 0)? -1 : (buffer[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            var count = input.read(target, offset, length);
+            if (count < 0) {
+                if (crc != expected) throw new IOException("CRC error in archive entry " + name);
+                return -1;
+            }
+            for (int i = offset; i < offset + count; i++) {
+                crc = (crc >>> 8) ^ TABLE[(crc ^ target[i]) & 0xff];
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+        
+    }
+    
+    // </editor-fold>
+    
+}
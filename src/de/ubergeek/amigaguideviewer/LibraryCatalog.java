@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent catalog of the guides found in the library folders.
+ * Only header-level data is kept for each guide (see CatalogEntry); node
+ * bodies are parsed when a guide is opened. The catalog file is memory
+ * mapped when it is opened and rescans skip files whose size and
+ * modification time did not change. Rescans and updates decode the node
+ * titles of all entries first, so that no entry keeps the mapping of the
+ * catalog file alive when the file is replaced by save().
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class LibraryCatalog {
+
+    // <editor-fold desc="Properties">
+    
+    private static final int MAGIC = 0x41475643;
+    
+    private static final int VERSION = 1;
+    
+    private final List<CatalogEntry> entries;
+    
+    private final Map<String, CatalogEntry> entriesByPath;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns all entries, sorted by path
+     * @return Unmodifiable list of entries
+     */
+    public List<CatalogEntry> getEntries() {
+        return entries;
+    }
+    
+    /**
+     * Returns the entry for the given file
+     * @param file Path of the guide file
+     * @return The entry or null if the file is not part of the catalog
+     */
+    public CatalogEntry getEntry(Path file) {
+        return entriesByPath.get(file.toString());
+    }
+    
+    /**
+     * Returns the default location of the catalog file
+     * @return Path of the catalog file
+     */
+    public static Path getDefaultCatalogFile() {
+        return Settings.getDataDirectory().resolve("library.catalog");
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private LibraryCatalog(List<CatalogEntry> entries) {
+        entries.sort((a, b) -> a.getPathString().compareTo(b.getPathString()));
+        this.entries = Collections.unmodifiableList(entries);
+        this.entriesByPath = new HashMap<>(entries.size() * 2);
+        for (var entry : entries) {
+            entriesByPath.put(entry.getPathString(), entry);
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Creates an empty catalog
+     * @return Empty catalog
+     */
+    public static LibraryCatalog empty() {
+        return new LibraryCatalog(new ArrayList<>());
+    }
+    
+    /**
+     * Opens a catalog file.
+     * If the file does not exist an empty catalog is returned.
+     * @param catalogFile Path of the catalog file
+     * @return The catalog
+     * @throws IOException If the file could not be read or has an invalid format
+     */
+    public static LibraryCatalog open(Path catalogFile) throws IOException {
+        if (!Files.exists(catalogFile)) return empty();
+        
+        ByteBuffer buffer;
+        try (var channel = FileChannel.open(catalogFile, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Invalid catalog file: " + catalogFile);
+        }
+        var count = buffer.getInt();
+        var entries = new ArrayList<CatalogEntry>(count);
+        for (int i = 0; i < count; i++) {
+            var offset = buffer.getInt(12 + i * 4);
+            var entryBuffer = buffer.duplicate();
+            entryBuffer.position(offset);
+            entries.add(CatalogEntry.read(entryBuffer));
+        }
+        return new LibraryCatalog(entries);
+    }
+    
+    /**
+     * Writes the catalog to the given file.
+     * The file is written to a temporary file first and then moved into place.
+     * @param catalogFile Path of the catalog file
+     * @throws IOException If the file could not be written
+     */
+    public void save(Path catalogFile) throws IOException {
+        var headerSize = 12 + entries.size() * 4;
+        var totalSize = (long)headerSize;
+        for (var entry : entries) {
+            totalSize += entry.getEncodedSize();
+        }
+        if (totalSize > Integer.MAX_VALUE) {
+            throw new IOException("Catalog too large");
+        }
+        
+        var buffer = ByteBuffer.allocate((int)totalSize);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+        buffer.position(headerSize);
+        for (int i = 0; i < entries.size(); i++) {
+            buffer.putInt(12 + i * 4, buffer.position());
+            entries.get(i).write(buffer);
+        }
+        buffer.flip();
+        
+        if (catalogFile.getParent() != null) {
+            Files.createDirectories(catalogFile.getParent());
+        }
+        var temporaryFile = catalogFile.resolveSibling(catalogFile.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temporaryFile, catalogFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Returns all entries that match the given filter text (case insensitive).
+     * @see CatalogEntry#matches(java.lang.String) 
+     * @param filter Filter text; blank returns all entries
+     * @return Matching entries
+     */
+    public List<CatalogEntry> filter(String filter) {
+        if (filter == null || filter.isBlank()) return entries;
+        var lowerCaseFilter = filter.trim().toLowerCase();
+        return entries.stream()
+            .filter(entry -> entry.matches(lowerCaseFilter))
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Scans the given folders (recursively) for guide files and returns an
+     * updated catalog. Entries of files whose size and modification time did
+     * not change are reused; all other files are parsed (headers only) in
+     * parallel. Files that could not be read are skipped.
+     * @param folders Library folders
+     * @return The updated catalog
+     * @throws IOException If a folder could not be scanned
+     * @throws InterruptedException If the scan has been interrupted
+     */
+    public LibraryCatalog rescan(List<Path> folders) throws IOException, InterruptedException {
+        releaseMapping();
+        var files = new ArrayList<Path>();
+        for (var folder : folders) {
+            if (!Files.isDirectory(folder)) continue;
+            try (var stream = Files.walk(folder)) {
+                stream.filter(LibraryCatalog::isGuideFile).forEach(files::add);
+            }
+        }
+        
+        var result = new ArrayList<CatalogEntry>(files.size());
+        var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            var futures = new ArrayList<Future<CatalogEntry>>();
+            for (var file : files) {
+                futures.add(executor.submit(() -> scanFile(file)));
+            }
+            for (var future : futures) {
+                try {
+                    var entry = future.get();
+                    if (entry != null) result.add(entry);
+                } catch (ExecutionException ex) {
+                    // Unreadable files are not part of the catalog
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new LibraryCatalog(result);
+    }
+    
+    /**
+     * Returns a catalog in which the entry for the given file has been
+     * updated (or removed if the file does not exist anymore).
+     * @param file Path of the guide file
+     * @return The updated catalog
+     */
+    public LibraryCatalog update(Path file) {
+        releaseMapping();
+        var result = new ArrayList<CatalogEntry>(entries);
+        result.removeIf(entry -> entry.getPathString().equals(file.toString()));
+        try {
+            if (Files.exists(file)) {
+                var entry = scanFile(file);
+                if (entry != null) result.add(entry);
+            }
+        } catch (IOException ex) {
+            // Unreadable files are not part of the catalog
+        }
+        return new LibraryCatalog(result);
+    }
+    
+    /**
+     * Checks if the given file should be part of the library
+     * @param file Path of the file
+     * @return true for regular files with the extension .guide
+     */
+    public static boolean isGuideFile(Path file) {
+        return Files.isRegularFile(file) && hasGuideExtension(file);
+    }
+    
+    /**
+     * Checks if the given file name has the extension of guide files.
+     * Unlike isGuideFile() this also works for files that have been deleted.
+     * @param file Path of the file
+     * @return true for the extension .guide
+     */
+    public static boolean hasGuideExtension(Path file) {
+        return file.getFileName() != null
+            && file.getFileName().toString().toLowerCase().endsWith(".guide");
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Decodes the titles of all entries, so that they do not refer to the
+     * memory-mapped catalog file anymore
+     */
+    private void releaseMapping() {
+        for (var entry : entries) {
+            entry.getTitles();
+        }
+    }
+    
+    private CatalogEntry scanFile(Path file) throws IOException {
+        var size = Files.size(file);
+        var lastModified = Files.getLastModifiedTime(file).toMillis();
+        var existing = entriesByPath.get(file.toString());
+        if (existing != null && !existing.isOutdated(size, lastModified)) {
+            return existing;
+        }
+        var document = new Parser().parseAmigaGuideHeaderFromFile(file);
+        return new CatalogEntry(file.toString(), size, lastModified, document);
+    }
+    
+    // </editor-fold>
+    
+}
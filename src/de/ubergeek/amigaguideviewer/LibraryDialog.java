@@ -0,0 +1,557 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import javax.swing.DefaultListModel;
+import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Simple AmigaGuide viewer - library dialog.
+ * Shows the guides found in the configured library folders; a double click
+ * opens the guide in the main window. The full-text search covers all nodes
+ * of all guides and opens the guide at the matching node.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public class LibraryDialog extends javax.swing.JDialog {
+
+    // <editor-fold desc="Properties">
+    
+    private final MainWindow mainWindow;
+    
+    private final CatalogTableModel tableModel = new CatalogTableModel();
+    
+    private LibraryCatalog catalog = LibraryCatalog.empty();
+    
+    private SwingWorker<LibraryCatalog, Void> scanWorker = null;
+    
+    /**
+     * Library-wide full-text index; null until it has been opened
+     */
+    private LibrarySearchIndex searchIndex = null;
+    
+    private SwingWorker<List<LibrarySearchHit>, Void> searchWorker = null;
+    
+    /**
+     * Maximum number of hits shown for a full-text search
+     */
+    private static final int MAX_SEARCH_HITS = 500;
+    
+    private JFileChooser folderChooser = null;
+    
+    /**
+     * Watches the library folders; null if file watching is not supported
+     */
+    private FileWatcher folderWatcher = null;
+    
+    /**
+     * Updates the catalog in the background
+     */
+    private interface CatalogUpdate {
+        LibraryCatalog apply(LibraryCatalog catalog) throws IOException, InterruptedException;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private void loadCatalog() {
+        statusLabel.setText("Loading catalog ...");
+        var worker = new SwingWorker<LibraryCatalog, Void>() {
+            
+            private LibrarySearchIndex loadedIndex = null;
+            
+            @Override
+            protected LibraryCatalog doInBackground() throws IOException {
+                try {
+                    loadedIndex = LibrarySearchIndex.open(LibrarySearchIndex.getDefaultDirectory());
+                } catch (IOException ex) {
+                    System.out.println("Error while opening library index: " + ex.getMessage());
+                }
+                return LibraryCatalog.open(LibraryCatalog.getDefaultCatalogFile());
+            }
+            
+            @Override
+            protected void done() {
+                searchIndex = loadedIndex;
+                try {
+                    setCatalog(get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("Catalog could not be loaded; please rescan");
+                    return;
+                }
+                // An index that does not match the catalog (e.g. after it
+                // has been deleted) is rebuilt by a rescan
+                if (searchIndex != null && searchIndex.getGuideCount() != catalog.getEntries().size()) {
+                    cmdRescan();
+                }
+            }
+        };
+        worker.execute();
+    }
+    
+    private void setCatalog(LibraryCatalog catalog) {
+        this.catalog = catalog;
+        updateShownEntries();
+    }
+    
+    private void updateShownEntries() {
+        var entries = catalog.filter(filterTextField.getText());
+        var folder = foldersList.getSelectedValue();
+        if (folder != null) {
+            var prefix = folder.toString();
+            entries = entries.stream().filter(entry -> entry.getPathString().startsWith(prefix)).collect(Collectors.toList());
+        }
+        tableModel.setEntries(entries);
+        statusLabel.setText(entries.size() + " of " + catalog.getEntries().size() + " guides");
+    }
+    
+    private void updateFoldersList() {
+        var model = new DefaultListModel<Path>();
+        model.addAll(Settings.getLibraryFolders());
+        foldersList.setModel(model);
+        if (folderWatcher != null) {
+            folderWatcher.setFolders(Settings.getLibraryFolders());
+        }
+    }
+    
+    private void cmdAddFolder() {
+        if (folderChooser == null) {
+            folderChooser = new JFileChooser();
+            folderChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        }
+        if (folderChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION && folderChooser.getSelectedFile() != null) {
+            var folders = Settings.getLibraryFolders();
+            var folder = folderChooser.getSelectedFile().toPath().toAbsolutePath();
+            if (!folders.contains(folder)) {
+                folders.add(folder);
+                Settings.setLibraryFolders(folders);
+                updateFoldersList();
+                cmdRescan();
+            }
+        }
+    }
+    
+    private void cmdRemoveFolder() {
+        var folder = foldersList.getSelectedValue();
+        if (folder == null) return;
+        var folders = Settings.getLibraryFolders();
+        folders.remove(folder);
+        Settings.setLibraryFolders(folders);
+        updateFoldersList();
+        cmdRescan();
+    }
+    
+    private void cmdRescan() {
+        if (scanWorker != null) {
+            scanWorker.cancel(true);
+        }
+        startCatalogUpdate("Scanning and indexing library folders ...",
+            oldCatalog -> oldCatalog.rescan(Settings.getLibraryFolders()));
+    }
+    
+    /**
+     * Updates the catalog entries and index of the given changed files only.
+     * Changes that cannot be mapped to single guides (new or removed folders,
+     * lost events) lead to a full rescan.
+     * @param files Changed files reported by the folder watcher
+     */
+    private void updateChangedFiles(Set<Path> files) {
+        if (scanWorker != null || files.stream().anyMatch(Files::isDirectory)) {
+            cmdRescan();
+            return;
+        }
+        var guides = files.stream().filter(LibraryCatalog::hasGuideExtension).collect(Collectors.toList());
+        if (guides.isEmpty()) return;
+        
+        startCatalogUpdate("Updating " + guides.size() + " changed guides ...", oldCatalog -> {
+            var newCatalog = oldCatalog;
+            for (var guide : guides) {
+                newCatalog = newCatalog.update(guide);
+            }
+            return newCatalog;
+        });
+    }
+    
+    private void startCatalogUpdate(String statusText, CatalogUpdate update) {
+        statusLabel.setText(statusText);
+        rescanButton.setEnabled(false);
+        
+        var oldCatalog = catalog;
+        var index = searchIndex;
+        scanWorker = new SwingWorker<LibraryCatalog, Void>() {
+            @Override
+            protected LibraryCatalog doInBackground() throws IOException, InterruptedException {
+                var newCatalog = update.apply(oldCatalog);
+                newCatalog.save(LibraryCatalog.getDefaultCatalogFile());
+                if (index != null) {
+                    index.update(newCatalog);
+                }
+                return newCatalog;
+            }
+            
+            @Override
+            protected void done() {
+                if (isCancelled() || scanWorker != this) return;
+                scanWorker = null;
+                rescanButton.setEnabled(true);
+                try {
+                    setCatalog(get());
+                    updateSearchResults();
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("Error while scanning: " + ex.getMessage());
+                }
+            }
+        };
+        scanWorker.execute();
+    }
+    
+    private void updateSearchResults() {
+        if (searchWorker != null) {
+            searchWorker.cancel(true);
+            searchWorker = null;
+        }
+        var query = searchTextField.getText();
+        if (searchIndex == null || query.isBlank()) {
+            searchResultsList.setModel(new DefaultListModel<>());
+            return;
+        }
+        
+        var index = searchIndex;
+        searchWorker = new SwingWorker<List<LibrarySearchHit>, Void>() {
+            @Override
+            protected List<LibrarySearchHit> doInBackground() {
+                return index.search(query, MAX_SEARCH_HITS);
+            }
+            
+            @Override
+            protected void done() {
+                if (isCancelled() || searchWorker != this) return;
+                searchWorker = null;
+                try {
+                    var model = new DefaultListModel<LibrarySearchHit>();
+                    model.addAll(get());
+                    searchResultsList.setModel(model);
+                    guidesTabbedPane.setSelectedComponent(searchResultsScrollPane);
+                    statusLabel.setText(model.size() + " matching nodes");
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("Error while searching: " + ex.getMessage());
+                }
+            }
+        };
+        searchWorker.execute();
+    }
+    
+    private void cmdOpenSelectedGuide() {
+        var row = guidesTable.getSelectedRow();
+        if (row < 0) return;
+        var entry = tableModel.getEntry(guidesTable.convertRowIndexToModel(row));
+        mainWindow.openDocumentFile(entry.getPath());
+    }
+    
+    private void cmdOpenSelectedSearchHit() {
+        var hit = searchResultsList.getSelectedValue();
+        if (hit == null) return;
+        mainWindow.openDocumentFile(hit.getPath(), hit.getNodeIdentifier());
+    }
+    
+    // </editor-fold>
+
+    /**
+     * Creates new form LibraryDialog
+     * @param parent Main window which opens the selected guides
+     */
+    public LibraryDialog(MainWindow parent) {
+        super(parent, false);
+        mainWindow = parent;
+        initComponents();
+        
+        // Keep catalog and index up to date while guides are edited
+        try {
+            folderWatcher = new FileWatcher("Library watcher", (Set<Path> files) -> {
+                SwingUtilities.invokeLater(() -> updateChangedFiles(files));
+            });
+        } catch (IOException ex) {
+            System.out.println("File watching is not supported: " + ex.getMessage());
+        }
+        
+        filterTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent de) {
+                updateShownEntries();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent de) {
+                updateShownEntries();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent de) {
+                updateShownEntries();
+            }
+        });
+        
+        searchTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent de) {
+                updateSearchResults();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent de) {
+                updateSearchResults();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent de) {
+                updateSearchResults();
+            }
+        });
+        
+        foldersList.addListSelectionListener((var lse) -> {
+            if (!lse.getValueIsAdjusting()) updateShownEntries();
+        });
+        
+        guidesTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent me) {
+                if (me.getClickCount() == 2) {
+                    cmdOpenSelectedGuide();
+                }
+            }
+        });
+        
+        searchResultsList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent me) {
+                if (me.getClickCount() == 2) {
+                    cmdOpenSelectedSearchHit();
+                }
+            }
+        });
+        
+        updateFoldersList();
+        loadCatalog();
+    }
+
+    /**
+     * This method is called from within the constructor to initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is always
+     * regenerated by the Form Editor.
+     */
+    @SuppressWarnings("unchecked")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        toolPanel = new javax.swing.JPanel();
+        filterLabel = new javax.swing.JLabel();
+        filterTextField = new javax.swing.JTextField();
+        searchLabel = new javax.swing.JLabel();
+        searchTextField = new javax.swing.JTextField();
+        addFolderButton = new javax.swing.JButton();
+        removeFolderButton = new javax.swing.JButton();
+        rescanButton = new javax.swing.JButton();
+        librarySplitPane = new javax.swing.JSplitPane();
+        foldersScrollPane = new javax.swing.JScrollPane();
+        foldersList = new javax.swing.JList<>();
+        guidesTabbedPane = new javax.swing.JTabbedPane();
+        guidesScrollPane = new javax.swing.JScrollPane();
+        guidesTable = new javax.swing.JTable();
+        searchResultsScrollPane = new javax.swing.JScrollPane();
+        searchResultsList = new javax.swing.JList<>();
+        statusPanel = new javax.swing.JPanel();
+        statusLabel = new javax.swing.JLabel();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+        setTitle("Library");
+        setLocationByPlatform(true);
+        setPreferredSize(new java.awt.Dimension(820, 520));
+
+        toolPanel.setLayout(new java.awt.FlowLayout(java.awt.FlowLayout.LEFT));
+
+        filterLabel.setText("Filter:");
+        toolPanel.add(filterLabel);
+
+        filterTextField.setColumns(25);
+        toolPanel.add(filterTextField);
+
+        searchLabel.setText("Search text:");
+        toolPanel.add(searchLabel);
+
+        searchTextField.setColumns(20);
+        toolPanel.add(searchTextField);
+
+        addFolderButton.setText("Add folder...");
+        addFolderButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                addFolderButtonActionPerformed(evt);
+            }
+        });
+        toolPanel.add(addFolderButton);
+
+        removeFolderButton.setText("Remove folder");
+        removeFolderButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                removeFolderButtonActionPerformed(evt);
+            }
+        });
+        toolPanel.add(removeFolderButton);
+
+        rescanButton.setText("Rescan");
+        rescanButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                rescanButtonActionPerformed(evt);
+            }
+        });
+        toolPanel.add(rescanButton);
+
+        getContentPane().add(toolPanel, java.awt.BorderLayout.PAGE_START);
+
+        librarySplitPane.setDividerLocation(200);
+
+        foldersList.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        foldersScrollPane.setViewportView(foldersList);
+
+        librarySplitPane.setLeftComponent(foldersScrollPane);
+
+        guidesTable.setAutoCreateRowSorter(true);
+        guidesTable.setModel(tableModel);
+        guidesTable.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        guidesScrollPane.setViewportView(guidesTable);
+
+        guidesTabbedPane.addTab("Guides", guidesScrollPane);
+
+        searchResultsList.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        searchResultsScrollPane.setViewportView(searchResultsList);
+
+        guidesTabbedPane.addTab("Search results", searchResultsScrollPane);
+
+        librarySplitPane.setRightComponent(guidesTabbedPane);
+
+        getContentPane().add(librarySplitPane, java.awt.BorderLayout.CENTER);
+
+        statusPanel.setLayout(new java.awt.FlowLayout(java.awt.FlowLayout.LEFT));
+
+        statusLabel.setText(" ");
+        statusPanel.add(statusLabel);
+
+        getContentPane().add(statusPanel, java.awt.BorderLayout.PAGE_END);
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    private void addFolderButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_addFolderButtonActionPerformed
+        cmdAddFolder();
+    }//GEN-LAST:event_addFolderButtonActionPerformed
+
+    private void removeFolderButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_removeFolderButtonActionPerformed
+        cmdRemoveFolder();
+    }//GEN-LAST:event_removeFolderButtonActionPerformed
+
+    private void rescanButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_rescanButtonActionPerformed
+        cmdRescan();
+    }//GEN-LAST:event_rescanButtonActionPerformed
+
+    /**
+     * Table model for the catalog entries
+     */
+    private static class CatalogTableModel extends AbstractTableModel {
+        
+        private static final String[] COLUMNS = { "File", "Database", "Author", "Copyright", "Nodes" };
+        
+        private List<CatalogEntry> entries = List.of();
+        
+        void setEntries(List<CatalogEntry> entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+        
+        CatalogEntry getEntry(int row) {
+            return entries.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return entries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return (column == 4)? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            var entry = entries.get(row);
+            return switch (column) {
+                case 0 -> entry.getPath().getFileName().toString();
+                case 1 -> entry.getDatabase();
+                case 2 -> entry.getAuthor();
+                case 3 -> entry.getCopyright();
+                default -> entry.getNodeCount();
+            };
+        }
+        
+    }
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton addFolderButton;
+    private javax.swing.JLabel filterLabel;
+    private javax.swing.JTextField filterTextField;
+    private javax.swing.JList<Path> foldersList;
+    private javax.swing.JScrollPane foldersScrollPane;
+    private javax.swing.JScrollPane guidesScrollPane;
+    private javax.swing.JTabbedPane guidesTabbedPane;
+    private javax.swing.JTable guidesTable;
+    private javax.swing.JSplitPane librarySplitPane;
+    private javax.swing.JButton removeFolderButton;
+    private javax.swing.JButton rescanButton;
+    private javax.swing.JLabel searchLabel;
+    private javax.swing.JList<LibrarySearchHit> searchResultsList;
+    private javax.swing.JScrollPane searchResultsScrollPane;
+    private javax.swing.JTextField searchTextField;
+    private javax.swing.JLabel statusLabel;
+    private javax.swing.JPanel statusPanel;
+    private javax.swing.JPanel toolPanel;
+    // End of variables declaration//GEN-END:variables
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.nio.file.Path;
+
+/**
+ * A single result of a library-wide full-text search.
+ * Unlike SearchHit the node is not loaded; the hit only names the guide
+ * file and the node identifier.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class LibrarySearchHit {
+
+    // <editor-fold desc="Properties">
+    
+    private final Path path;
+    
+    private final String nodeIdentifier;
+    
+    private final String nodeTitle;
+    
+    private final float score;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+
+    /**
+     * Returns the path of the guide file
+     * @return Path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the identifier of the matching node
+     * @return Node identifier
+     */
+    public String getNodeIdentifier() {
+        return nodeIdentifier;
+    }
+
+    /**
+     * Returns the title of the matching node
+     * @return Node title
+     */
+    public String getNodeTitle() {
+        return nodeTitle;
+    }
+
+    /**
+     * Returns the relevance score (higher is better)
+     * @return Score
+     */
+    public float getScore() {
+        return score;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a new search hit
+     * @param path Path of the guide file
+     * @param nodeIdentifier Identifier of the matching node
+     * @param nodeTitle Title of the matching node
+     * @param score Relevance score
+     */
+    public LibrarySearchHit(Path path, String nodeIdentifier, String nodeTitle, float score) {
+        this.path = path;
+        this.nodeIdentifier = nodeIdentifier;
+        this.nodeTitle = nodeTitle;
+        this.score = score;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Returns node title and file name; used by the search results list
+     * @return String representation
+     */
+    @Override
+    public String toString() {
+        return nodeTitle + " (" + path.getFileName() + ")";
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent full-text index over all nodes of all guides in the library.
+ * <p>
+ * The index consists of immutable, memory-mapped segment files (see
+ * IndexSegment) plus a manifest that lists the active segments and the
+ * guides that have been deleted from them. Updates only index new or
+ * changed guides: they are split into batches which are built into new
+ * segments in parallel. Whenever there are more than MERGE_FACTOR segments
+ * the smallest ones are merged in the background, which also drops the
+ * deleted guides for good.
+ * <p>
+ * Searches work on an immutable snapshot of the segment list and never
+ * block on updates or merges.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class LibrarySearchIndex {
+
+    // <editor-fold desc="Properties">
+    
+    private static final int MANIFEST_MAGIC = 0x4147564d;
+    
+    private static final int MANIFEST_VERSION = 1;
+    
+    private static final String MANIFEST_NAME = "manifest";
+    
+    /**
+     * Number of guide bytes that go into one newly built segment
+     */
+    private static final long BATCH_SIZE = 16L << 20;
+    
+    /**
+     * Segments are merged when there are more than this many
+     */
+    private static final int MERGE_FACTOR = 8;
+    
+    /**
+     * Segments are not merged beyond this size
+     */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    
+    /**
+     * Maximum number of index terms a prefix query is expanded to
+     */
+    private static final int MAX_PREFIX_EXPANSION = 512;
+    
+    private final Path directory;
+    
+    private final Object updateLock = new Object();
+    
+    private final ExecutorService mergeExecutor;
+    
+    private volatile Snapshot snapshot;
+    
+    private final AtomicInteger nextSegmentNumber = new AtomicInteger();
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the default index directory
+     * @return Path of the index directory
+     */
+    public static Path getDefaultDirectory() {
+        return Settings.getDataDirectory().resolve("index");
+    }
+    
+    /**
+     * Returns the number of indexed (not deleted) guides
+     * @return Number of guides
+     */
+    public int getGuideCount() {
+        var current = snapshot;
+        int count = 0;
+        for (int s = 0; s < current.segments.size(); s++) {
+            count += current.segments.get(s).getGuideCount() - current.deletedGuides.get(s).cardinality();
+        }
+        return count;
+    }
+    
+    /**
+     * Returns the number of segments
+     * @return Number of segments
+     */
+    public int getSegmentCount() {
+        return snapshot.segments.size();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private LibrarySearchIndex(Path directory) {
+        this.directory = directory;
+        this.snapshot = new Snapshot(List.of(), List.of());
+        this.mergeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "Library index merger");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Opens the index in the given directory.
+     * A missing or unreadable index results in an empty index; the next
+     * update() then indexes the whole library.
+     * @param directory Index directory
+     * @return The index
+     * @throws IOException If the directory could not be created
+     */
+    public static LibrarySearchIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        var index = new LibrarySearchIndex(directory);
+        try {
+            index.readManifest();
+        } catch (IOException ex) {
+            System.out.println("Could not read library index, rebuilding: " + ex.getMessage());
+            index.snapshot = new Snapshot(List.of(), List.of());
+        }
+        index.deleteUnusedSegmentFiles();
+        return index;
+    }
+    
+    /**
+     * Brings the index up to date with the given catalog. Guides that are
+     * new or have changed are parsed and indexed in parallel; guides that
+     * have changed or are not part of the catalog anymore are marked as
+     * deleted. Afterwards a background merge is scheduled if necessary.
+     * @param catalog Library catalog
+     * @throws IOException If a segment or the manifest could not be written
+     * @throws InterruptedException If the update has been interrupted
+     */
+    public void update(LibraryCatalog catalog) throws IOException, InterruptedException {
+        synchronized (updateLock) {
+            var current = snapshot;
+            var deletedGuides = new ArrayList<BitSet>();
+            var indexedGuides = new HashMap<String, int[]>();
+            for (int s = 0; s < current.segments.size(); s++) {
+                var segment = current.segments.get(s);
+                var deleted = (BitSet)current.deletedGuides.get(s).clone();
+                deletedGuides.add(deleted);
+                for (int g = 0; g < segment.getGuideCount(); g++) {
+                    if (!deleted.get(g)) indexedGuides.put(segment.getGuide(g).getPath(), new int[] { s, g });
+                }
+            }
+            
+            var pending = new ArrayList<CatalogEntry>();
+            for (var entry : catalog.getEntries()) {
+                var location = indexedGuides.remove(entry.getPathString());
+                if (location != null) {
+                    var guide = current.segments.get(location[0]).getGuide(location[1]);
+                    if (!entry.isOutdated(guide.getSize(), guide.getLastModified())) continue;
+                    deletedGuides.get(location[0]).set(location[1]);
+                }
+                pending.add(entry);
+            }
+            for (var location : indexedGuides.values()) {
+                deletedGuides.get(location[0]).set(location[1]);
+            }
+            
+            var segments = new ArrayList<IndexSegment>();
+            var deleted = new ArrayList<BitSet>();
+            var droppedSegments = new ArrayList<IndexSegment>();
+            for (int s = 0; s < current.segments.size(); s++) {
+                var segment = current.segments.get(s);
+                if (deletedGuides.get(s).cardinality() == segment.getGuideCount()) {
+                    droppedSegments.add(segment);
+                } else {
+                    segments.add(segment);
+                    deleted.add(deletedGuides.get(s));
+                }
+            }
+            for (var segment : buildSegments(pending)) {
+                segments.add(segment);
+                deleted.add(new BitSet());
+            }
+            
+            publish(new Snapshot(segments, deleted), droppedSegments);
+        }
+        mergeExecutor.execute(this::mergeSegments);
+    }
+    
+    /**
+     * Searches for nodes containing all terms of the given query.
+     * The last query term is treated as a prefix unless the query ends with
+     * a non-term character. Hits are ranked by tf-idf over the whole library.
+     * @param query Query string
+     * @param maxHits Maximum number of hits to be returned
+     * @return Ranked hits (best first)
+     */
+    public List<LibrarySearchHit> search(String query, int maxHits) {
+        if (query == null) return List.of();
+        var queryTerms = new ArrayList<String>();
+        SearchIndex.forEachTerm(query, (term, offset) -> queryTerms.add(term));
+        var current = snapshot;
+        if (queryTerms.isEmpty() || current.segments.isEmpty()) return List.of();
+        var lastIsPrefix = SearchIndex.isTermChar(query.charAt(query.length() - 1));
+        
+        // Expand the query terms and sum up the document frequencies over
+        // all segments first, so that scores are comparable across segments
+        long totalDocs = 0;
+        for (var segment : current.segments) totalDocs += segment.getDocCount();
+        var expansions = new ArrayList<TreeMap<String, Integer>>();
+        for (int q = 0; q < queryTerms.size(); q++) {
+            var term = queryTerms.get(q);
+            var prefix = q == queryTerms.size() - 1 && lastIsPrefix;
+            var expansion = new TreeMap<String, Integer>();
+            for (var segment : current.segments) {
+                var index = segment.lowerBound(term);
+                while (index < segment.getTermCount()) {
+                    var candidate = segment.getTerm(index);
+                    if (prefix ? !candidate.startsWith(term) : !candidate.equals(term)) break;
+                    if (expansion.size() >= MAX_PREFIX_EXPANSION && !expansion.containsKey(candidate)) break;
+                    expansion.merge(candidate, segment.getDocFrequency(index), Integer::sum);
+                    index++;
+                }
+            }
+            if (expansion.isEmpty()) return List.of();
+            expansions.add(expansion);
+        }
+        
+        var best = new PriorityQueue<LibrarySearchHit>(Comparator.comparing(LibrarySearchHit::getScore));
+        for (int s = 0; s < current.segments.size(); s++) {
+            searchSegment(current.segments.get(s), current.deletedGuides.get(s), expansions, totalDocs, maxHits, best);
+        }
+        
+        var hits = new ArrayList<>(best);
+        hits.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+        return hits;
+    }
+    
+    /**
+     * Stops the background merger. Merges in progress are abandoned; the
+     * manifest always refers to complete segments.
+     */
+    public void close() {
+        mergeExecutor.shutdownNow();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Immutable list of the active segments and their deleted guides
+     */
+    private static final class Snapshot {
+        
+        private final List<IndexSegment> segments;
+        
+        private final List<BitSet> deletedGuides;
+
+        Snapshot(List<IndexSegment> segments, List<BitSet> deletedGuides) {
+            this.segments = Collections.unmodifiableList(segments);
+            this.deletedGuides = Collections.unmodifiableList(deletedGuides);
+        }
+        
+    }
+    
+    private void searchSegment(IndexSegment segment, BitSet deletedGuides, List<TreeMap<String, Integer>> expansions,
+            long totalDocs, int maxHits, PriorityQueue<LibrarySearchHit> best) {
+        var docCount = segment.getDocCount();
+        var scores = new float[docCount];
+        var matchedTerms = new int[docCount];
+        
+        for (int q = 0; q < expansions.size(); q++) {
+            var matchedAny = false;
+            for (var expansion : expansions.get(q).entrySet()) {
+                var index = segment.findTerm(expansion.getKey());
+                if (index < 0) continue;
+                var idf = (float)Math.log(1.0 + (double)totalDocs / expansion.getValue());
+                var cursor = segment.getPostings(index);
+                while (cursor.next()) {
+                    var doc = cursor.getDoc();
+                    // Only count each query term once per document
+                    if (matchedTerms[doc] == q) matchedTerms[doc] = q + 1;
+                    if (matchedTerms[doc] == q + 1) {
+                        scores[doc] += (1.0f + (float)Math.log(cursor.getFrequency())) * idf;
+                        matchedAny = true;
+                    }
+                }
+            }
+            if (!matchedAny) return;
+        }
+        
+        for (int doc = 0; doc < docCount; doc++) {
+            if (matchedTerms[doc] != expansions.size()) continue;
+            var guide = segment.getDocGuide(doc);
+            if (deletedGuides.get(guide)) continue;
+            if (best.size() >= maxHits && best.peek().getScore() >= scores[doc]) continue;
+            best.add(new LibrarySearchHit(Path.of(segment.getGuide(guide).getPath()),
+                segment.getDocNodeIdentifier(doc), segment.getDocTitle(doc), scores[doc]));
+            if (best.size() > maxHits) best.poll();
+        }
+    }
+    
+    /**
+     * Builds new segments for the given guides, one segment per batch of
+     * about BATCH_SIZE bytes. Batches are built in parallel. Guides that
+     * could not be read are skipped.
+     */
+    private List<IndexSegment> buildSegments(List<CatalogEntry> entries) throws IOException, InterruptedException {
+        var batches = new ArrayList<List<CatalogEntry>>();
+        var batch = new ArrayList<CatalogEntry>();
+        long batchSize = 0;
+        for (var entry : entries) {
+            batch.add(entry);
+            batchSize += entry.getSize();
+            if (batchSize >= BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
+            }
+        }
+        if (!batch.isEmpty()) batches.add(batch);
+        
+        var segments = new ArrayList<IndexSegment>();
+        var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            var futures = new ArrayList<Future<IndexSegment>>();
+            for (var guides : batches) {
+                var file = nextSegmentFile();
+                futures.add(executor.submit(() -> buildSegment(guides, file)));
+            }
+            for (var future : futures) {
+                var segment = future.get();
+                if (segment != null) segments.add(segment);
+            }
+        } catch (ExecutionException ex) {
+            deleteSegmentFiles(segments);
+            var cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+        } catch (InterruptedException ex) {
+            deleteSegmentFiles(segments);
+            throw ex;
+        } finally {
+            executor.shutdownNow();
+        }
+        return segments;
+    }
+    
+    private IndexSegment buildSegment(List<CatalogEntry> entries, Path file) throws IOException, InterruptedException {
+        var writer = new IndexSegmentWriter();
+        var parser = new Parser();
+        for (var entry : entries) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            try {
+                var document = parser.parseAmigaGuideFromFile(entry.getPath());
+                writer.addGuide(entry.getPathString(), entry.getSize(), entry.getLastModified(), document);
+            } catch (IOException ex) {
+                System.out.println("Could not index " + entry.getPath() + ": " + ex.getMessage());
+            }
+        }
+        if (writer.isEmpty()) return null;
+        writer.write(file);
+        return IndexSegment.open(file);
+    }
+    
+    /**
+     * Merges the smallest segments as long as there are more than
+     * MERGE_FACTOR of them. Runs on the merge thread. The merged segment is
+     * planned and written without holding the update lock; the lock is only
+     * taken to publish the result. If an update has removed a source segment
+     * or deleted guides from it in the meantime, the merge is discarded and
+     * planned again.
+     */
+    private void mergeSegments() {
+        while (!Thread.currentThread().isInterrupted()) {
+            var current = snapshot;
+            if (current.segments.size() <= MERGE_FACTOR) return;
+            
+            var candidates = new ArrayList<Integer>();
+            for (int s = 0; s < current.segments.size(); s++) candidates.add(s);
+            candidates.sort(Comparator.comparingLong(s -> current.segments.get(s).getFileSize()));
+            var selected = new HashSet<Integer>();
+            long mergedSize = 0;
+            for (var s : candidates) {
+                var size = current.segments.get(s).getFileSize();
+                if (selected.size() == MERGE_FACTOR || mergedSize + size > MAX_SEGMENT_SIZE) break;
+                selected.add(s);
+                mergedSize += size;
+            }
+            if (selected.size() < 2) return;
+            
+            // Keep the original segment order so that documents stay ordered
+            var sources = new ArrayList<IndexSegment>();
+            var sourceDeletions = new ArrayList<BitSet>();
+            for (int s = 0; s < current.segments.size(); s++) {
+                if (selected.contains(s)) {
+                    sources.add(current.segments.get(s));
+                    sourceDeletions.add(current.deletedGuides.get(s));
+                }
+            }
+            
+            var file = nextSegmentFile();
+            try {
+                IndexSegmentWriter.merge(sources, sourceDeletions, file);
+                var merged = IndexSegment.open(file);
+                synchronized (updateLock) {
+                    var latest = snapshot;
+                    var segments = new ArrayList<IndexSegment>();
+                    var deleted = new ArrayList<BitSet>();
+                    var unchanged = 0;
+                    for (int s = 0; s < latest.segments.size(); s++) {
+                        var segment = latest.segments.get(s);
+                        var source = sources.indexOf(segment);
+                        if (source < 0) {
+                            segments.add(segment);
+                            deleted.add(latest.deletedGuides.get(s));
+                        } else if (latest.deletedGuides.get(s).equals(sourceDeletions.get(source))) {
+                            unchanged++;
+                        }
+                    }
+                    if (unchanged == sources.size()) {
+                        if (merged.getGuideCount() > 0) {
+                            segments.add(merged);
+                            deleted.add(new BitSet());
+                        } else {
+                            Files.deleteIfExists(file);
+                        }
+                        publish(new Snapshot(segments, deleted), sources);
+                        continue;
+                    }
+                }
+                deleteSegmentFiles(List.of(merged));
+            } catch (IOException ex) {
+                System.out.println("Could not merge library index segments: " + ex.getMessage());
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Writes the manifest for the given snapshot, makes it the current one
+     * and removes the segment files that are not used anymore
+     */
+    private void publish(Snapshot next, List<IndexSegment> dropped) throws IOException {
+        writeManifest(next);
+        snapshot = next;
+        deleteSegmentFiles(dropped);
+    }
+    
+    private Path nextSegmentFile() {
+        return directory.resolve(String.format("segment-%06d.idx", nextSegmentNumber.getAndIncrement()));
+    }
+    
+    private void readManifest() throws IOException {
+        var manifestFile = directory.resolve(MANIFEST_NAME);
+        if (!Files.exists(manifestFile)) return;
+        
+        var segments = new ArrayList<IndexSegment>();
+        var deleted = new ArrayList<BitSet>();
+        try (var input = new DataInputStream(Files.newInputStream(manifestFile))) {
+            if (input.readInt() != MANIFEST_MAGIC || input.readInt() != MANIFEST_VERSION) {
+                throw new IOException("Invalid manifest: " + manifestFile);
+            }
+            nextSegmentNumber.set(input.readInt());
+            var count = input.readInt();
+            for (int s = 0; s < count; s++) {
+                segments.add(IndexSegment.open(directory.resolve(input.readUTF())));
+                var deletedCount = input.readInt();
+                var deletedGuides = new BitSet();
+                for (int i = 0; i < deletedCount; i++) {
+                    deletedGuides.set(input.readInt());
+                }
+                deleted.add(deletedGuides);
+            }
+        }
+        snapshot = new Snapshot(segments, deleted);
+    }
+    
+    private void writeManifest(Snapshot next) throws IOException {
+        var manifestFile = directory.resolve(MANIFEST_NAME);
+        var temporaryFile = directory.resolve(MANIFEST_NAME + ".tmp");
+        try (var output = new DataOutputStream(Files.newOutputStream(temporaryFile))) {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeInt(MANIFEST_VERSION);
+            output.writeInt(nextSegmentNumber.get());
+            output.writeInt(next.segments.size());
+            for (int s = 0; s < next.segments.size(); s++) {
+                output.writeUTF(next.segments.get(s).getFile().getFileName().toString());
+                var deletedGuides = next.deletedGuides.get(s);
+                output.writeInt(deletedGuides.cardinality());
+                for (int g = deletedGuides.nextSetBit(0); g >= 0; g = deletedGuides.nextSetBit(g + 1)) {
+                    output.writeInt(g);
+                }
+            }
+        }
+        Files.move(temporaryFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void deleteSegmentFiles(List<IndexSegment> segments) {
+        for (var segment : segments) {
+            try {
+                Files.deleteIfExists(segment.getFile());
+            } catch (IOException ex) {
+                // Still mapped on some platforms; removed on the next open()
+            }
+        }
+    }
+    
+    private void deleteUnusedSegmentFiles() throws IOException {
+        var used = new HashSet<Path>();
+        for (var segment : snapshot.segments) used.add(segment.getFile().getFileName());
+        try (var stream = Files.newDirectoryStream(directory, "segment-*.idx")) {
+            for (var file : stream) {
+                if (!used.contains(file.getFileName())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+    
+    // </editor-fold>
+    
+}
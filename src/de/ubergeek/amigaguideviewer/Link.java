@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+/**
+ * Represents a single link command within a node.
+ * Links are collected and resolved by the parser; each link of a document
+ * has a unique id which is its index within the document's link table.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class Link {
+
+    // <editor-fold desc="Properties">
+    
+    private int id = -1;
+    
+    private int sourceNodeOrdinal = -1;
+    
+    private final String label;
+    
+    private final LinkType type;
+    
+    private final String target;
+    
+    private final int line;
+    
+    private LinkStatus status;
+    
+    private int targetNodeOrdinal = -1;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the link id (index within the document's link table)
+     * @return Link id or -1 if the link has not been added to a document
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Returns the ordinal of the node that contains this link
+     * @return Ordinal of the source node
+     */
+    public int getSourceNodeOrdinal() {
+        return sourceNodeOrdinal;
+    }
+
+    /**
+     * Returns the display label
+     * @return Label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the link type
+     * @return Link type
+     */
+    public LinkType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the target as written in the guide source (node name,
+     * file/node or a command line)
+     * @return Raw target string
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the optional target line number
+     * @return Line number or 0
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the result of the link resolution
+     * @return Resolution status
+     */
+    public LinkStatus getStatus() {
+        return status;
+    }
+    
+    /**
+     * Checks if the link points to an existing node of the same document
+     * @return true if the link has been resolved
+     */
+    public boolean isResolved() {
+        return status == LinkStatus.RESOLVED;
+    }
+    
+    /**
+     * Checks if the link is a node link whose target does not exist
+     * @return true if the link is broken
+     */
+    public boolean isBroken() {
+        return status == LinkStatus.UNKNOWN_NODE || status == LinkStatus.EMPTY_TARGET;
+    }
+
+    /**
+     * Returns the ordinal of the target node if the link has been resolved
+     * @return Ordinal of the target node or -1
+     */
+    public int getTargetNodeOrdinal() {
+        return targetNodeOrdinal;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a new (unresolved) link
+     * @param label Display label
+     * @param type Link type
+     * @param target Raw target string
+     * @param line Target line number or 0
+     */
+    public Link(String label, LinkType type, String target, int line) {
+        this.label = (label == null)? "" : label;
+        this.type = type;
+        this.target = (target == null)? "" : target;
+        this.line = line;
+        this.status = type.isNodeLink()? LinkStatus.UNKNOWN_NODE : LinkStatus.NOT_A_NODE_LINK;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Parses a link command token as returned by the tokenizer.
+     * If the token is not a link command null will be returned.
+     * The syntax is @{label type [target [line]]} where label and target
+     * may be quoted. The token is scanned from left to right without
+     * backtracking, so parsing takes linear time even for malformed tokens.
+     * @param token Command token (@{...})
+     * @return The parsed link or null
+     */
+    public static Link parseCommandToken(String token) {
+        var length = token.length();
+        if (length < 3 || !token.startsWith("@{") || token.charAt(length - 1) != '}') return null;
+        
+        // A quoted label that is not followed by a valid link is read again
+        // as a plain word, e.g. @{"a"b link x}
+        if (token.charAt(2) == '"') {
+            var closingQuote = token.indexOf('"', 3);
+            if (closingQuote > 0) {
+                var link = parseCommandTail(token, token.substring(3, closingQuote), true, closingQuote + 1);
+                if (link != null) return link;
+            }
+        }
+        var labelEnd = skipNonWhitespace(token, 2, length);
+        if (labelEnd == 2) return null;
+        return parseCommandTail(token, token.substring(2, labelEnd), false, labelEnd);
+    }
+    
+    /**
+     * Returns a short description of the link target for status displays
+     * @return Description
+     */
+    @Override
+    public String toString() {
+        return type.getName() + " " + target;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Parses the part of a link command following the label
+     */
+    private static Link parseCommandTail(String token, String label, boolean isLabelQuoted, int position) {
+        var end = token.length() - 1;
+        var typeStart = skipWhitespace(token, position, end);
+        if (typeStart == position) return null;
+        var typeEnd = typeStart;
+        while (typeEnd < end && !Tokenizer.isWhitespace(token.charAt(typeEnd))) typeEnd++;
+        var type = LinkType.fromName(token.substring(typeStart, typeEnd));
+        if (type == null) return null;
+        
+        String target = null;
+        int line = 0;
+        var targetStart = skipWhitespace(token, typeEnd, end);
+        if (targetStart > typeEnd && targetStart < end) {
+            
+            // Quoted target; falls back to a plain word if the rest is invalid
+            var targetEnd = -1;
+            if (token.charAt(targetStart) == '"') {
+                var closingQuote = token.indexOf('"', targetStart + 1);
+                if (closingQuote > 0 && closingQuote < end) {
+                    line = parseLineNumber(token, closingQuote + 1, end);
+                    if (line >= 0) {
+                        target = token.substring(targetStart + 1, closingQuote);
+                        targetEnd = closingQuote + 1;
+                    }
+                }
+            }
+            if (target == null) {
+                targetEnd = skipNonWhitespace(token, targetStart, end + 1);
+                
+                // A target that reaches the end of the token takes all but
+                // the closing brace, e.g. @{"x" link a}b}
+                if (targetEnd > end) {
+                    targetEnd = end;
+                    line = 0;
+                } else {
+                    line = parseLineNumber(token, targetEnd, end);
+                }
+                if (line < 0) return null;
+                target = token.substring(targetStart, targetEnd);
+            }
+        } else if (targetStart != end) {
+            return null;
+        }
+        
+        switch (type) {
+            case CLOSE, QUIT -> {
+                return new Link(isLabelQuoted? label : null, type, "", 0);
+            }
+            default -> {
+                return new Link(label, type, target, line);
+            }
+        }
+    }
+    
+    /**
+     * Parses the optional line number and the trailing white space up to
+     * the closing brace at position end
+     * @return Line number, 0 if there is none or -1 if the text is invalid
+     */
+    private static int parseLineNumber(String token, int position, int end) {
+        var digitsStart = skipWhitespace(token, position, end);
+        if (digitsStart == end) return 0;
+        if (digitsStart == position) return -1;
+        var digitsEnd = digitsStart;
+        while (digitsEnd < end && token.charAt(digitsEnd) >= '0' && token.charAt(digitsEnd) <= '9') digitsEnd++;
+        if (digitsEnd == digitsStart || skipWhitespace(token, digitsEnd, end) != end) return -1;
+        try {
+            return Integer.parseInt(token.substring(digitsStart, digitsEnd));
+        } catch (NumberFormatException ex) {
+            // Line numbers are optional
+            return 0;
+        }
+    }
+    
+    private static int skipWhitespace(String token, int position, int end) {
+        while (position < end && Tokenizer.isWhitespace(token.charAt(position))) position++;
+        return position;
+    }
+    
+    private static int skipNonWhitespace(String token, int position, int end) {
+        while (position < end && !Tokenizer.isWhitespace(token.charAt(position))) position++;
+        return position;
+    }
+    
+    void setId(int id) {
+        this.id = id;
+    }
+    
+    void setSourceNodeOrdinal(int sourceNodeOrdinal) {
+        this.sourceNodeOrdinal = sourceNodeOrdinal;
+    }
+    
+    void resolve(LinkStatus status, int targetNodeOrdinal) {
+        this.status = status;
+        this.targetNodeOrdinal = targetNodeOrdinal;
+    }
+    
+    // </editor-fold>
+    
+}
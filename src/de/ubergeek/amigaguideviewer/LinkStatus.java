@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+/**
+ * Result of the link resolution done by the parser
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public enum LinkStatus {
+
+    /**
+     * The link points to an existing node of the same document
+     */
+    RESOLVED,
+
+    /**
+     * The link points to a node name that does not exist in the document
+     */
+    UNKNOWN_NODE,
+
+    /**
+     * The link points to a node in another file (file/node)
+     */
+    EXTERNAL_DOCUMENT,
+
+    /**
+     * The link does not point to a node at all (rx, system, quit ...)
+     */
+    NOT_A_NODE_LINK,
+
+    /**
+     * The link has no target
+     */
+    EMPTY_TARGET
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+/**
+ * Types of link commands (@{"label" type target})
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public enum LinkType {
+
+    LINK("link"),
+    ALINK("alink"),
+    RX("rx"),
+    RXS("rxs"),
+    SYSTEM("system"),
+    CLOSE("close"),
+    QUIT("quit");
+
+    private static final LinkType[] VALUES = values();
+
+    private final String name;
+
+    LinkType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the (lower case) command name as used in the guide source
+     * @return Command name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks if links of this type point to a document node
+     * @return true for link and alink
+     */
+    public boolean isNodeLink() {
+        return this == LINK || this == ALINK;
+    }
+
+    /**
+     * Looks up the link type with the given name (case insensitive).
+     * @param name Command name
+     * @return The matching link type or null if the name is unknown
+     */
+    public static LinkType fromName(String name) {
+        for (var type : VALUES) {
+            if (type.name.equalsIgnoreCase(name)) return type;
+        }
+        return null;
+    }
+
+}
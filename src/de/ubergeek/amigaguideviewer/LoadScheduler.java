@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs document loads and other background work in two lanes.
+ * <p>
+ * The foreground lane is meant for loads the user is waiting for (opening
+ * a guide, following a link), the background lane for work nobody waits
+ * for (search indexes, reloads of changed files, prefetching linked
+ * guides, rendering the first node of documents opened in background
+ * tabs). Both lanes have their own threads, so background work never
+ * delays a foreground load; background threads run with a low priority.
+ * <p>
+ * Cancellation is cooperative: cancel() marks the task as cancelled, and
+ * long running work (Parser, SearchIndex) polls isCancellationRequested()
+ * and stops with a CancellationException. The running thread is not
+ * interrupted, because an interrupt closes the file channels of the
+ * archives shared by all loads.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class LoadScheduler {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Number of foreground threads: loads of several documents opened at
+     * once run in parallel, bounded by the number of processors
+     */
+    private static final int FOREGROUND_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    
+    private static final int BACKGROUND_THREADS = 1;
+    
+    /**
+     * Created after the thread counts, which it needs
+     */
+    private static final LoadScheduler SHARED = new LoadScheduler();
+    
+    private final ExecutorService foregroundExecutor;
+    
+    private final ExecutorService backgroundExecutor;
+    
+    /**
+     * Task running on the current thread
+     */
+    private static final ThreadLocal<Task<?>> CURRENT_TASK = new ThreadLocal<>();
+    
+    /**
+     * Lane of a task
+     */
+    public enum Lane {
+        FOREGROUND,
+        BACKGROUND
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the scheduler shared by all windows
+     * @return Shared scheduler
+     */
+    public static LoadScheduler getShared() {
+        return SHARED;
+    }
+    
+    /**
+     * Checks if the work running on the current thread should stop: either
+     * its task has been cancelled or the thread has been interrupted
+     * @return true if the current work should be cancelled
+     */
+    public static boolean isCancellationRequested() {
+        var task = CURRENT_TASK.get();
+        return (task != null && task.isCancelled()) || Thread.currentThread().isInterrupted();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private LoadScheduler() {
+        foregroundExecutor = Executors.newFixedThreadPool(FOREGROUND_THREADS, runnable -> {
+            var thread = new Thread(runnable, "Document loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backgroundExecutor = Executors.newFixedThreadPool(BACKGROUND_THREADS, runnable -> {
+            var thread = new Thread(runnable, "Background loader");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Runs a task in the given lane
+     * @param <T> Result type
+     * @param lane Lane
+     * @param task Task
+     * @return Future of the result; cancel() stops the task cooperatively
+     */
+    public <T> Task<T> submit(Lane lane, Callable<T> task) {
+        var future = new Task<T>(lane, task);
+        (lane == Lane.FOREGROUND? foregroundExecutor : backgroundExecutor).execute(future);
+        return future;
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * A scheduled task that can be cancelled while it is running
+     * @param <T> Result type
+     */
+    public static final class Task<T> extends CompletableFuture<T> implements Runnable {
+        
+        private final Lane lane;
+        
+        private final Callable<T> callable;
+        
+        private boolean started;
+        
+        private Task(Lane lane, Callable<T> callable) {
+            this.lane = lane;
+            this.callable = callable;
+        }
+        
+        /**
+         * Returns the lane the task has been submitted to
+         * @return Lane
+         */
+        public Lane getLane() {
+            return lane;
+        }
+        
+        /**
+         * Checks if a thread has started running the task
+         * @return true if the task has been started
+         */
+        public synchronized boolean isStarted() {
+            return started;
+        }
+        
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) return;
+                started = true;
+            }
+            CURRENT_TASK.set(this);
+            try {
+                complete(callable.call());
+            } catch (Throwable ex) {
+                completeExceptionally(ex);
+            } finally {
+                CURRENT_TASK.remove();
+            }
+        }
+        
+    }
+    
+}
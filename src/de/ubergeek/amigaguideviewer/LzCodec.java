@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.Arrays;
+
+/**
+ * Fast LZ77 block codec in the style of LZ4.
+ * A block is a series of sequences: a token byte (high nibble: number of
+ * literals, low nibble: match length - 4; 15 means more length bytes of up
+ * to 255 follow), the literals, and a two byte little endian match offset.
+ * The last sequence only has literals. Matches are found with a single
+ * hash table probe, which trades some ratio for speed.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+final class LzCodec {
+
+    // <editor-fold desc="Properties">
+    
+    private static final int MIN_MATCH = 4;
+    
+    private static final int MAX_OFFSET = 65535;
+    
+    private static final int HASH_BITS = 12;
+    
+    /**
+     * The last bytes of a block are always literals, so matching never reads
+     * beyond the input
+     */
+    private static final int LAST_LITERALS = 5;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private LzCodec() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Compresses a block
+     * @param source Uncompressed data
+     * @return Compressed block
+     */
+    static byte[] compress(byte[] source) {
+        var output = new byte[source.length + source.length / 255 + 16];
+        var table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+        int out = 0, anchor = 0, position = 0;
+        var limit = source.length - LAST_LITERALS;
+        
+        while (position < limit - MIN_MATCH) {
+            var hash = hash(source, position);
+            var candidate = table[hash];
+            table[hash] = position;
+            if (candidate < 0 || position - candidate > MAX_OFFSET
+                    || readInt(source, candidate) != readInt(source, position)) {
+                position++;
+                continue;
+            }
+            var length = MIN_MATCH;
+            while (position + length < limit && source[candidate + length] == source[position + length]) {
+                length++;
+            }
+            out = writeSequence(output, out, source, anchor, position - anchor, length, position - candidate);
+            position += length;
+            anchor = position;
+        }
+        out = writeSequence(output, out, source, anchor, source.length - anchor, 0, 0);
+        return Arrays.copyOf(output, out);
+    }
+    
+    /**
+     * Decompresses a block
+     * @param source Compressed block
+     * @param length Uncompressed length
+     * @return Uncompressed data
+     * @throws IllegalArgumentException If the block is corrupt
+     */
+    static byte[] decompress(byte[] source, int length) {
+        var output = new byte[length];
+        int in = 0, out = 0;
+        try {
+            while (true) {
+                var token = source[in++] & 0xff;
+                var literals = token >>> 4;
+                if (literals == 15) {
+                    int value;
+                    do {
+                        value = source[in++] & 0xff;
+                        literals += value;
+                    } while (value == 255);
+                }
+                System.arraycopy(source, in, output, out, literals);
+                in += literals;
+                out += literals;
+                if (in >= source.length) break;
+                
+                var offset = (source[in] & 0xff) | ((source[in + 1] & 0xff) << 8);
+                in += 2;
+                var matchLength = token & 0x0f;
+                if (matchLength == 15) {
+                    int value;
+                    do {
+                        value = source[in++] & 0xff;
+                        matchLength += value;
+                    } while (value == 255);
+                }
+                matchLength += MIN_MATCH;
+                var from = out - offset;
+                if (offset == 0 || from < 0) throw new IllegalArgumentException("Corrupt block");
+                // Byte by byte: source and target may overlap
+                for (int i = 0; i < matchLength; i++) {
+                    output[out++] = output[from + i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Corrupt block", ex);
+        }
+        if (out != length) throw new IllegalArgumentException("Corrupt block");
+        return output;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private static int writeSequence(byte[] output, int out, byte[] source, int start, int literals, int matchLength, int offset) {
+        var tokenPosition = out++;
+        var literalNibble = Math.min(literals, 15);
+        out = writeLength(output, out, literals - 15);
+        System.arraycopy(source, start, output, out, literals);
+        out += literals;
+        if (matchLength == 0) {
+            output[tokenPosition] = (byte)(literalNibble << 4);
+            return out;
+        }
+        output[out++] = (byte)offset;
+        output[out++] = (byte)(offset >>> 8);
+        var matchNibble = Math.min(matchLength - MIN_MATCH, 15);
+        out = writeLength(output, out, matchLength - MIN_MATCH - 15);
+        output[tokenPosition] = (byte)((literalNibble << 4) | matchNibble);
+        return out;
+    }
+    
+    /**
+     * Writes the remainder of a length that did not fit into its nibble
+     */
+    private static int writeLength(byte[] output, int out, int remainder) {
+        if (remainder < 0) return out;
+        while (remainder >= 255) {
+            output[out++] = (byte)255;
+            remainder -= 255;
+        }
+        output[out++] = (byte)remainder;
+        return out;
+    }
+    
+    private static int readInt(byte[] data, int position) {
+        return (data[position] & 0xff) | ((data[position + 1] & 0xff) << 8)
+            | ((data[position + 2] & 0xff) << 16) | ((data[position + 3] & 0xff) << 24);
+    }
+    
+    private static int hash(byte[] data, int position) {
+        return (readInt(data, position) * -1640531535) >>> (32 - HASH_BITS);
+    }
+    
+    // </editor-fold>
+    
+}
@@ -17,6 +17,9 @@
  */
 package de.ubergeek.amigaguideviewer;
 
+import java.awt.Desktop;
+import java.awt.Point;
+import java.awt.Toolkit;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
@@ -26,16 +29,39 @@ import java.awt.dnd.DropTargetDragEvent;
 import java.awt.dnd.DropTargetDropEvent;
 import java.awt.dnd.DropTargetEvent;
 import java.awt.dnd.DropTargetListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.StringReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.AbstractAction;
+import javax.swing.DefaultListModel;
 import javax.swing.ImageIcon;
+import javax.swing.JComponent;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.HyperlinkEvent;
 import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.html.HTML;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
@@ -68,14 +94,115 @@ public class MainWindow extends javax.swing.JFrame {
     private Node selectedDocumentNode = null;
     
     /**
-     * View stack for navigation back
+     * Back and forward history of the shown document
      */
-    private final Stack<Node> viewStack = new Stack<>();
+    private NavigationHistory navigationHistory = new NavigationHistory();
+    
+    /**
+     * Node whose rendered model is shown in the content pane; null while
+     * the empty page is shown
+     */
+    private Node displayedNode = null;
+
+    /**
+     * Full-text index of the current document; null while it is being built
+     */
+    private volatile SearchIndex searchIndex = null;
+    
+    /**
+     * Background task that builds the full-text index
+     */
+    private LoadScheduler.Task<SearchIndex> indexTask = null;
+    
+    /**
+     * Maximum number of search results shown
+     */
+    private final static int MAX_SEARCH_HITS = 500;
+
+    /**
+     * Maximum number of matches collected by find in node
+     */
+    private final static int MAX_FIND_MATCHES = 100000;
+    
+    /**
+     * Highlights the matches of find in node
+     */
+    private MatchHighlighter matchHighlighter = null;
+    
+    /**
+     * Case folded copy of the displayed node text; created on first use
+     */
+    private TextFinder textFinder = null;
+
+    /**
+     * Watches the files of the open documents; null if file watching is
+     * not supported
+     */
+    private FileWatcher fileWatcher = null;
+    
+    /**
+     * Set while a reloaded document is installed, so that tree selection
+     * changes do not re-render the node
+     */
+    private boolean reloadingDocument = false;
+    
+    /**
+     * Background load that reparses the current document after it changed
+     */
+    private CompletableFuture<Document> pendingReload = null;
+    
+    /**
+     * Loads documents and caches the recently used ones
+     */
+    private final DocumentManager documentManager;
+    
+    /**
+     * Most recently requested document load; older loads are cancelled
+     */
+    private CompletableFuture<Document> pendingLoad = null;
+
+    /**
+     * Open documents of this window in the order of their tabs
+     */
+    private final List<DocumentTab> documentTabs = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Tab of the shown document; null if no document is open
+     */
+    private volatile DocumentTab currentTab = null;
+    
+    private final SearchIndexCache searchIndexCache = new SearchIndexCache();
+    
+    /**
+     * Set while tabs are added or removed, so that selection changes of the
+     * tab strip do not switch the shown document
+     */
+    private boolean updatingTabs = false;
+
+    /**
+     * Maximum number of linked guides loaded in advance per shown node
+     */
+    private final static int MAX_PREFETCHED_DOCUMENTS = 3;
+
+    /**
+     * Library dialog; created on first use
+     */
+    private LibraryDialog libraryDialog = null;
 
     /**
-     * Instance of JFileChooser for "Open file" command
+     * Instance of JFileChooser for "Open file" command; created on first use
+     */
+    private JFileChooser fileChooser = null;
+    
+    /**
+     * Refreshes the metrics panel while it is shown
+     */
+    private final Timer metricsTimer = new Timer(1000, ae -> updateMetricsPanel());
+    
+    /**
+     * Time needed for showing the last node (html and content pane)
      */
-    private final JFileChooser fileChooser = new JFileChooser();
+    private long lastDisplayNanos = 0;
             
     // </editor-fold>
     
@@ -87,55 +214,289 @@ public class MainWindow extends javax.swing.JFrame {
      * @param document The document to be shown
      */
     public void setDocument(Document document) {
+        var event = new DocumentInstallEvent();
+        event.begin();
+        // The document replaces the one that was being loaded into the tab
+        if (currentTab != null && currentTab.load != null) {
+            currentTab.load.cancel(true);
+            currentTab.load = null;
+        }
         currentDocument = document;
         documentNodesTree.setModel(createNodesList(currentDocument));
-        viewStack.clear();
+        navigationHistory.clear();
+        selectedDocumentNode = null;
+        updateBacklinksList();
+        startIndexing(currentDocument);
+        updateDocumentTab();
+        updateWatchedFiles();
         
         if (currentDocument != null && currentDocument.getTitleNode() != null) {
             cmdNavigateToToc();
         }
+        commitInstallEvent(event, false);
+    }
+    
+    /**
+     * Loads several AmigaGuides in the background and opens each of them in
+     * a new tab. The guides are parsed concurrently; the first one that has
+     * been loaded is shown, the others are rendered in the background.
+     * For archives the guide to be opened is chosen as in openDocumentFile().
+     * @param paths Paths of the files to be opened
+     */
+    public void openDocumentFiles(List<Path> paths) {
+        var files = new ArrayList<Path>();
+        for (var path : paths) {
+            if (GuideArchive.isArchiveFile(path) && Files.isRegularFile(path)) {
+                cmdOpenArchive(path);
+            } else {
+                files.add(path);
+            }
+        }
+        if (files.isEmpty()) return;
+        if (files.size() == 1) {
+            openDocumentFile(files.get(0));
+            return;
+        }
+        statusBarTextLabel.setText("Opening " + files.size() + " documents ...");
+        statusBarProgressBar.setVisible(true);
+        
+        var tabs = new ArrayList<DocumentTab>();
+        updatingTabs = true;
+        try {
+            for (var file : files) {
+                var tab = new DocumentTab(new NavigationHistory());
+                documentTabs.add(tab);
+                documentTabbedPane.addTab(file.getFileName().toString(), null);
+                documentTabbedPane.setToolTipTextAt(documentTabs.size() - 1, file.toString());
+                tabs.add(tab);
+            }
+            // The shown document stays in front until the first new one is ready
+            if (currentTab != null) documentTabbedPane.setSelectedIndex(documentTabs.indexOf(currentTab));
+        } finally {
+            updatingTabs = false;
+        }
+        documentTabbedPane.setVisible(documentTabs.size() > 1);
+        
+        var pending = new int[] { files.size() };
+        var focused = new boolean[] { false };
+        for (int i = 0; i < files.size(); i++) {
+            var file = files.get(i);
+            var tab = tabs.get(i);
+            var load = documentManager.load(file);
+            tab.load = load;
+            load.whenComplete((document, exception) -> SwingUtilities.invokeLater(() -> {
+                if (--pending[0] == 0) {
+                    statusBarTextLabel.setText(" ");
+                    statusBarProgressBar.setVisible(false);
+                }
+                // The tab has been closed or another document has been opened in it
+                if (tab.load != load) return;
+                tab.load = null;
+                
+                if (exception != null) {
+                    System.out.println("Error while opening file: " + exception.getMessage());
+                    closeDocumentTab(tab);
+                    statusBarTextLabel.setText("Could not open " + file.getFileName());
+                    return;
+                }
+                tab.document = document;
+                updateWatchedFiles();
+                if (!focused[0] || tab == currentTab) {
+                    focused[0] = true;
+                    selectDocumentTab(tab);
+                } else {
+                    updateDocumentTabTitle(tab);
+                    prerenderEntryNode(document);
+                }
+            }));
+        }
     }
     
     /**
-     * Loads a new AmigaGuide from given file name in a SwingWorker
+     * Loads a new AmigaGuide from given file name in the background
      * @param filePath Path of the file to be opened
      */
     public void openDocumentFile(Path filePath) {
+        openDocumentFile(filePath, null);
+    }
+    
+    /**
+     * Loads a new AmigaGuide from given file name in the background and shows
+     * the given node once the document has been loaded. Recently used
+     * documents are taken from the document manager's cache. A load that
+     * is still running for this window is cancelled.
+     * @param filePath Path of the file to be opened
+     * @param nodeIdentifier Identifier of the node to be shown; null shows the main node
+     */
+    public void openDocumentFile(Path filePath, String nodeIdentifier) {
+        if (GuideArchive.isArchiveFile(filePath) && Files.isRegularFile(filePath)) {
+            cmdOpenArchive(filePath);
+            return;
+        }
         statusBarTextLabel.setText("Opening document ...");
         statusBarProgressBar.setVisible(true);
         navOpenButton.setEnabled(false);
         
-        SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
+        // The new load is requested first, so that a load of the same file is shared
+        var load = documentManager.load(filePath);
+        if (pendingLoad != null) {
+            pendingLoad.cancel(true);
+        }
+        pendingLoad = load;
+        load.whenComplete((document, exception) -> SwingUtilities.invokeLater(() -> {
+            // A newer load has been started in the meantime
+            if (pendingLoad != load) return;
+            pendingLoad = null;
+            statusBarTextLabel.setText(" ");
+            statusBarProgressBar.setVisible(false);
+            navOpenButton.setEnabled(true);
+            
+            if (exception != null) {
+                System.out.println("Error while opening file: " + exception.getMessage());
+                statusBarTextLabel.setText("Could not open " + filePath.getFileName());
+                return;
+            }
+            if (document != currentDocument) {
+                setDocument(document);
+            }
+            if (nodeIdentifier != null) {
+                selectDocumentNodeByIdentifier(nodeIdentifier);
+            }
+        }));
+    }
+    
+    /**
+     * Returns the state of this window for the next start: the open
+     * documents with their history and the rendered shown node
+     * @return Session
+     */
+    public Session getSession() {
+        saveViewState();
+        var tabs = new ArrayList<Session.Tab>();
+        var selectedTab = -1;
+        for (var tab : documentTabs) {
+            var document = (tab == currentTab)? currentDocument : tab.document;
+            if (document == null || document.getFile() == null) {
+                // Still being loaded; keep the state of the previous session
+                if (tab.restoredState != null) tabs.add(tab.restoredState);
+                continue;
+            }
             
-            private Document loadedDocument = null;
-            private Exception loadingException = null;
+            var entries = new ArrayList<Session.HistoryEntry>();
+            var current = tab.history.getCurrent();
+            var historyPosition = -1;
+            for (var entry : tab.history.getEntries()) {
+                if (entry == current) historyPosition = entries.size();
+                var viewPosition = entry.getViewPosition();
+                entries.add(new Session.HistoryEntry(entry.getNode().getIdentifier(), entry.getCaretPosition(), viewPosition.x, viewPosition.y));
+            }
             
-            @Override
-            protected Boolean doInBackground() throws InterruptedException, IOException {
+            // The shown node is stored rendered, so that it can be shown before the document has been parsed
+            String html = null;
+            long fileSize = 0, lastModified = 0;
+            if (tab == currentTab && current != null && !tab.changed) {
+                var sourceFile = documentManager.getSourceFile(document.getFile());
                 try {
-                    var parser = new Parser();
-                    loadedDocument = parser.parseAmigaGuideFromFile(filePath);
+                    fileSize = Files.size(sourceFile);
+                    lastModified = Files.getLastModifiedTime(sourceFile).toMillis();
+                    html = current.getNode().toHtmlString();
                 } catch (IOException ex) {
-                    loadingException = ex;
-                    System.out.println("Error while opening file: " + ex.getMessage());
-                    System.out.println(ex.toString());
+                    // The file has been removed; the html is not needed anymore
                 }
-                return true;
             }
-            
-            @Override
-            protected void done() {
-                statusBarTextLabel.setText(" ");
-                statusBarProgressBar.setVisible(false);
-                navOpenButton.setEnabled(true);
-                
-                if (loadedDocument != null && loadingException == null) {
-                    setDocument(loadedDocument);
-                }
+            if (tab == currentTab) selectedTab = tabs.size();
+            tabs.add(new Session.Tab(document.getFile(), fileSize, lastModified, entries, historyPosition, html));
+        }
+        return new Session(tabs, selectedTab);
+    }
+    
+    /**
+     * Opens the documents of a previous session. The shown node of the
+     * selected document is shown right away from its stored html if the
+     * file did not change; the documents are loaded in the background and
+     * get their history and scroll positions back once they are ready.
+     * @param session Session of a previous start
+     */
+    public void restoreSession(Session session) {
+        if (session.getTabs().isEmpty()) return;
+        var tabs = new ArrayList<DocumentTab>();
+        updatingTabs = true;
+        try {
+            for (var state : session.getTabs()) {
+                var tab = new DocumentTab(new NavigationHistory());
+                tab.restoredState = state;
+                documentTabs.add(tab);
+                documentTabbedPane.addTab(state.getFile().getFileName().toString(), null);
+                documentTabbedPane.setToolTipTextAt(documentTabs.size() - 1, state.getFile().toString());
+                tabs.add(tab);
             }
-        };
+        } finally {
+            updatingTabs = false;
+        }
+        documentTabbedPane.setVisible(documentTabs.size() > 1);
+        
+        var selectedTab = tabs.get(session.getSelectedTab());
+        selectDocumentTab(selectedTab);
+        var state = selectedTab.restoredState;
+        var html = state.getHtml(documentManager.getSourceFile(state.getFile()));
+        if (html != null && state.getHistoryPosition() >= 0) {
+            var entry = state.getHistory().get(state.getHistoryPosition());
+            setContentHtml(html);
+            StartupTiming.firstNodeShown();
+            mainContentPane.setCaretPosition(Math.min(entry.getCaretPosition(), mainContentPane.getDocument().getLength()));
+            SwingUtilities.invokeLater(() -> jScrollPane1.getViewport().setViewPosition(new Point(entry.getViewX(), entry.getViewY())));
+        }
+        statusBarTextLabel.setText("Opening document ...");
+        statusBarProgressBar.setVisible(true);
         
-        worker.execute();
+        var pending = new int[] { tabs.size() };
+        for (var tab : tabs) {
+            var file = tab.restoredState.getFile();
+            var lane = (tab == selectedTab)? LoadScheduler.Lane.FOREGROUND : LoadScheduler.Lane.BACKGROUND;
+            var load = documentManager.load(file, lane);
+            tab.load = load;
+            load.whenComplete((document, exception) -> SwingUtilities.invokeLater(() -> {
+                if (--pending[0] == 0) {
+                    statusBarTextLabel.setText(" ");
+                    statusBarProgressBar.setVisible(false);
+                }
+                if (tab.load != load) return;
+                tab.load = null;
+                
+                if (exception != null) {
+                    System.out.println("Error while opening file: " + exception.getMessage());
+                    closeDocumentTab(tab);
+                    statusBarTextLabel.setText("Could not open " + file.getFileName());
+                    return;
+                }
+                tab.document = document;
+                restoreHistory(tab.history, document, tab.restoredState);
+                tab.restoredState = null;
+                updateWatchedFiles();
+                if (tab == currentTab) {
+                    showDocumentTab(tab);
+                } else {
+                    updateDocumentTabTitle(tab);
+                }
+            }));
+        }
+    }
+    
+    /**
+     * Writes the session of this window to the default session file
+     */
+    public void saveSession() {
+        try {
+            getSession().write(Session.getDefaultSessionFile());
+        } catch (IOException ex) {
+            System.out.println("Error while saving the session: " + ex.getMessage());
+        }
+    }
+    
+    @Override
+    public void dispose() {
+        MemoryGovernor.getShared().unregister(searchIndexCache);
+        super.dispose();
     }
     
     // </editor-fold>
@@ -143,6 +504,520 @@ public class MainWindow extends javax.swing.JFrame {
     
     // <editor-fold desc="Internal methods">
 
+    /**
+     * Reparses the current document after its file has been changed
+     */
+    private void reloadDocument() {
+        if (currentDocument == null || currentDocument.getFile() == null) return;
+        // The document manager notices the change and reparses incrementally
+        var file = currentDocument.getFile();
+        var reload = documentManager.load(file, LoadScheduler.Lane.BACKGROUND);
+        if (pendingReload != null) {
+            pendingReload.cancel(true);
+        }
+        pendingReload = reload;
+        reload.whenComplete((document, exception) -> SwingUtilities.invokeLater(() -> {
+            if (pendingReload != reload) return;
+            pendingReload = null;
+            if (currentDocument == null || !file.equals(currentDocument.getFile())) return;
+            if (exception != null) {
+                // File is being written or has been removed; keep the old version
+                System.out.println("Error while reloading file: " + exception.getMessage());
+                return;
+            }
+            applyReloadedDocument(document);
+        }));
+    }
+    
+    /**
+     * Replaces the current document by a newer version of the same file.
+     * The shown node, its scroll position and the navigation history are
+     * kept; the node is only rendered again if it has changed.
+     * @param document Reloaded document
+     */
+    private void applyReloadedDocument(Document document) {
+        var diff = DocumentDiff.compute(currentDocument, document);
+        if (diff.isEmpty()) return;
+        var event = new DocumentInstallEvent();
+        event.begin();
+        var previousIndex = searchIndex;
+        
+        var viewPosition = jScrollPane1.getViewport().getViewPosition();
+        var shownNode = (selectedDocumentNode == null)? null : document.getNodeByIdentifier(selectedDocumentNode.getIdentifier());
+        
+        currentDocument = document;
+        updateDocumentTab();
+        reloadingDocument = true;
+        try {
+            documentNodesTree.setModel(createNodesList(currentDocument));
+            if (shownNode != null) selectDocumentNode(shownNode);
+        } finally {
+            reloadingDocument = false;
+        }
+        startIndexing(currentDocument, previousIndex);
+        
+        if (shownNode == null) {
+            navigationHistory.clear();
+            selectedDocumentNode = null;
+            cmdNavigateToToc();
+            commitInstallEvent(event, true);
+            return;
+        }
+        
+        navigationHistory.remap((Node node) -> document.getNodeByIdentifier(node.getIdentifier()));
+        selectedDocumentNode = shownNode;
+        if (displayedNode != null) displayedNode = shownNode;
+        if (diff.isNodeChanged(shownNode.getIdentifier())) {
+            displayNodeHtml(shownNode);
+            textFinder = null;
+            updateFindMatches();
+            SwingUtilities.invokeLater(() -> {
+                var maxY = Math.max(0, mainContentPane.getHeight() - jScrollPane1.getViewport().getHeight());
+                viewPosition.y = Math.min(viewPosition.y, maxY);
+                jScrollPane1.getViewport().setViewPosition(viewPosition);
+            });
+        }
+        updateBacklinksList();
+        updateUserInterfaceState();
+        commitInstallEvent(event, true);
+    }
+    
+    private void commitInstallEvent(DocumentInstallEvent event, boolean reload) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.path = (currentDocument != null && currentDocument.getFile() != null)? currentDocument.getFile().toString() : "";
+        event.nodes = (currentDocument != null)? currentDocument.getNodeCount() : 0;
+        event.reload = reload;
+        event.commit();
+    }
+    
+    /**
+     * Puts the html of the node into the content pane
+     */
+    private void displayNodeHtml(Node node) {
+        var start = System.nanoTime();
+        var html = node.toHtmlString();
+        var event = new NodeDisplayEvent();
+        event.begin();
+        setContentHtml(html);
+        displayedNode = node;
+        StartupTiming.firstNodeShown();
+        if (event.shouldCommit()) {
+            event.node = node.getIdentifier();
+            event.htmlSize = html.length();
+            event.commit();
+        }
+        lastDisplayNanos = System.nanoTime() - start;
+    }
+    
+    /**
+     * Puts html into a new model of the content pane. Models of shown nodes
+     * are kept by the navigation history, so a model is never reused.
+     */
+    private void setContentHtml(String html) {
+        var kit = mainContentPane.getEditorKit();
+        var model = kit.createDefaultDocument();
+        try {
+            kit.read(new StringReader(html), model, 0);
+        } catch (IOException | BadLocationException ex) {
+            System.out.println("Error while showing node: " + ex.getMessage());
+        }
+        mainContentPane.setDocument(model);
+    }
+    
+    /**
+     * Stores the caret and scroll position and the rendered model of the
+     * shown node in its history entry
+     */
+    private void saveViewState() {
+        var entry = navigationHistory.getCurrent();
+        if (entry == null || entry.getNode() != displayedNode) return;
+        entry.setViewState(mainContentPane.getCaretPosition(), jScrollPane1.getViewport().getViewPosition());
+        navigationHistory.setModel(entry, mainContentPane.getDocument(), displayedNode.getLinkSignature());
+    }
+    
+    /**
+     * Shows the node of a history entry at its caret and scroll position.
+     * The rendered model of the entry is shown again if it is still valid,
+     * otherwise the node is rendered.
+     * @param entry Entry of the navigation history
+     */
+    private void showHistoryEntry(NavigationHistory.Entry entry) {
+        var node = entry.getNode();
+        reloadingDocument = true;
+        try {
+            selectDocumentNode(node);
+        } finally {
+            reloadingDocument = false;
+        }
+        selectedDocumentNode = node;
+        var model = entry.getModel(node.getLinkSignature());
+        if (model != null) {
+            var start = System.nanoTime();
+            mainContentPane.setDocument(model);
+            displayedNode = node;
+            lastDisplayNanos = System.nanoTime() - start;
+        } else {
+            displayNodeHtml(node);
+        }
+        mainContentPane.setCaretPosition(Math.min(entry.getCaretPosition(), mainContentPane.getDocument().getLength()));
+        var viewPosition = entry.getViewPosition();
+        SwingUtilities.invokeLater(() -> {
+            var maxY = Math.max(0, mainContentPane.getHeight() - jScrollPane1.getViewport().getHeight());
+            viewPosition.y = Math.min(viewPosition.y, maxY);
+            jScrollPane1.getViewport().setViewPosition(viewPosition);
+        });
+        textFinder = null;
+        updateFindMatches();
+        updateBacklinksList();
+        updateUserInterfaceState();
+    }
+    
+    private void setMetricsPanelVisible(boolean visible) {
+        statusBarMetricsLabel.setVisible(visible);
+        if (visible) {
+            updateMetricsPanel();
+            metricsTimer.start();
+        } else {
+            metricsTimer.stop();
+        }
+    }
+    
+    /**
+     * Shows the metrics of the current document and the caches in the
+     * status bar; details are shown as tool tip
+     */
+    private void updateMetricsPanel() {
+        var metrics = PerformanceMetrics.getShared();
+        var documentHits = metrics.getHitRatio(DocumentManager.DOCUMENT_CACHE);
+        var htmlHits = metrics.getHitRatio(ContentStore.RENDERED_HTML_CACHE);
+        var sb = new StringBuilder();
+        if (currentDocument != null) {
+            var parseTime = currentDocument.getParseTime();
+            sb.append("Parse ").append(formatMillis(parseTime));
+            if (parseTime > 0) {
+                sb.append(String.format(" (%.1f MB/s)", currentDocument.getSourceSize() / 1048576.0 / (parseTime / 1e9)));
+            }
+            sb.append(" | Node ").append(formatMillis(lastDisplayNanos));
+        }
+        sb.append(" | Hits: documents ").append(formatRatio(documentHits))
+            .append(", html ").append(formatRatio(htmlHits));
+        if (currentDocument != null) {
+            sb.append(" | ").append(currentDocument.getEstimatedSize() / 1024).append(" KB, ")
+                .append(currentDocument.getNodeCount()).append(" nodes, ")
+                .append(currentDocument.getLinkCount()).append(" links");
+        }
+        statusBarMetricsLabel.setText(sb.toString());
+        
+        var renderCount = metrics.getRenderCount();
+        statusBarMetricsLabel.setToolTipText("<html>"
+            + "Documents parsed: " + metrics.getParseCount() + ", " + (metrics.getParsedBytes() / 1024) + " KB in " + formatMillis(metrics.getParseNanos()) + "<br>"
+            + "Nodes rendered: " + renderCount + ", average " + formatMillis((renderCount > 0)? metrics.getRenderNanos() / renderCount : 0) + "<br>"
+            + "Cache hits: documents " + formatRatio(documentHits) + ", html " + formatRatio(htmlHits)
+            + ", decompressed contents " + formatRatio(metrics.getHitRatio(ContentStore.DECOMPRESSED_CACHE))
+            + "</html>");
+    }
+    
+    private static String formatMillis(long nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+    
+    private static String formatRatio(double ratio) {
+        return (ratio < 0)? "-" : Math.round(ratio * 100) + " %";
+    }
+
+    private void startIndexing(Document document) {
+        startIndexing(document, null);
+    }
+    
+    /**
+     * Builds the full-text index of the given document in the background
+     * @param document Document to be indexed
+     * @param previous Index of a previous version of the document whose
+     *                 postings are reused for unchanged nodes; may be null
+     */
+    private void startIndexing(Document document, SearchIndex previous) {
+        if (indexTask != null) {
+            indexTask.cancel(true);
+            indexTask = null;
+        }
+        searchIndex = null;
+        updateSearchResults();
+        if (document == null) return;
+        
+        var task = LoadScheduler.getShared().submit(LoadScheduler.Lane.BACKGROUND, () -> SearchIndex.build(document, previous));
+        indexTask = task;
+        task.whenComplete((index, exception) -> SwingUtilities.invokeLater(() -> {
+            if (indexTask != task) return;
+            indexTask = null;
+            if (exception != null) {
+                System.out.println("Error while building search index: " + exception.getMessage());
+            } else {
+                searchIndex = index;
+            }
+            updateSearchResults();
+        }));
+    }
+    
+    private void updateSearchResults() {
+        var model = new DefaultListModel<SearchHit>();
+        var query = searchTextField.getText();
+        if (searchIndex != null && searchIndex.getDocument() == currentDocument && !query.isBlank()) {
+            model.addAll(searchIndex.search(query, MAX_SEARCH_HITS));
+        }
+        searchResultsList.setModel(model);
+    }
+
+    /**
+     * Loads the first guides linked from the given node in the background
+     * lane, so that following these links does not have to wait for parsing
+     * @param node Shown node
+     */
+    private void prefetchLinkedDocuments(Node node) {
+        var document = node.getDocument();
+        var targets = new ArrayList<String>();
+        for (var link : document.getLinksOfNode(node)) {
+            if (link.getStatus() == LinkStatus.EXTERNAL_DOCUMENT && !targets.contains(link.getTarget())) {
+                targets.add(link.getTarget());
+                if (targets.size() == MAX_PREFETCHED_DOCUMENTS) break;
+            }
+        }
+        if (targets.isEmpty() || document.getFile() == null) return;
+        
+        // Resolving the targets accesses the file system, so it is done in the background as well
+        LoadScheduler.getShared().submit(LoadScheduler.Lane.BACKGROUND, () -> {
+            for (var target : targets) {
+                var resolved = documentManager.resolveLink(document.getFile(), target);
+                if (resolved != null && documentManager.isAmigaGuideFile(resolved.getFile())) {
+                    documentManager.prefetch(resolved.getFile());
+                }
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Updates the tab of the shown document; the first tab is created when
+     * the first document is shown. The tab strip is only shown for two or
+     * more tabs.
+     */
+    private void updateDocumentTab() {
+        if (currentTab == null) {
+            if (currentDocument == null) return;
+            currentTab = new DocumentTab(navigationHistory);
+            updatingTabs = true;
+            try {
+                documentTabs.add(currentTab);
+                documentTabbedPane.addTab("", null);
+                documentTabbedPane.setSelectedIndex(documentTabs.size() - 1);
+            } finally {
+                updatingTabs = false;
+            }
+        }
+        currentTab.document = currentDocument;
+        updateDocumentTabTitle(currentTab);
+        documentTabbedPane.setVisible(documentTabs.size() > 1);
+    }
+    
+    private void updateDocumentTabTitle(DocumentTab tab) {
+        var index = documentTabs.indexOf(tab);
+        if (index < 0 || tab.document == null) return;
+        var file = tab.document.getFile();
+        var title = (tab.document.getTitleNode() != null)? tab.document.getTitleNode().getTitle() : null;
+        if (file != null) {
+            documentTabbedPane.setTitleAt(index, file.getFileName().toString());
+        } else if (title != null) {
+            documentTabbedPane.setTitleAt(index, title);
+        }
+        documentTabbedPane.setToolTipTextAt(index, (file != null)? file.toString() : title);
+    }
+    
+    /**
+     * Selects the given tab in the tab strip and shows its document
+     * @param tab Tab to be shown
+     */
+    private void selectDocumentTab(DocumentTab tab) {
+        updatingTabs = true;
+        try {
+            documentTabbedPane.setSelectedIndex(documentTabs.indexOf(tab));
+        } finally {
+            updatingTabs = false;
+        }
+        showDocumentTab(tab);
+    }
+    
+    /**
+     * Shows the document of a tab with the node, scroll position, history
+     * and search index it had when the tab was left. The document is not
+     * loaded again; if its file changed in the meantime, it is reloaded in
+     * the background.
+     * @param tab Tab to be shown; null shows no document
+     */
+    private void showDocumentTab(DocumentTab tab) {
+        // Keep the state of the tab that is left
+        if (currentTab != null && currentTab != tab) {
+            saveViewState();
+            // Only the model of the shown node is kept for tabs in the background
+            navigationHistory.trimModels(1);
+            currentTab.document = currentDocument;
+            currentTab.searchIndex = searchIndex;
+            currentTab.lastShown = System.nanoTime();
+        }
+        currentTab = tab;
+        navigationHistory = (tab != null)? tab.history : new NavigationHistory();
+        var document = (tab != null)? tab.document : null;
+        if (document == null) {
+            // Not loaded yet
+            currentDocument = null;
+            documentNodesTree.setModel(createNodesList(null));
+            selectedDocumentNode = null;
+            startIndexing(null);
+            showDefaultDocument();
+            updateBacklinksList();
+            updateUserInterfaceState();
+            return;
+        }
+        
+        var event = new DocumentInstallEvent();
+        event.begin();
+        currentDocument = document;
+        reloadingDocument = true;
+        try {
+            documentNodesTree.setModel(createNodesList(document));
+        } finally {
+            reloadingDocument = false;
+        }
+        // The index may have been evicted by the memory governor meanwhile
+        var tabIndex = tab.searchIndex;
+        tab.searchIndex = null;
+        if (tabIndex != null && tabIndex.getDocument() == document) {
+            if (indexTask != null) {
+                indexTask.cancel(true);
+                indexTask = null;
+            }
+            searchIndex = tabIndex;
+            updateSearchResults();
+        } else {
+            startIndexing(document);
+        }
+        
+        var entry = navigationHistory.getCurrent();
+        if (entry == null) {
+            selectedDocumentNode = null;
+            showDefaultDocument();
+            updateBacklinksList();
+            updateUserInterfaceState();
+            cmdNavigateToToc();
+        } else {
+            showHistoryEntry(entry);
+        }
+        updateDocumentTabTitle(tab);
+        commitInstallEvent(event, false);
+        
+        if (tab.changed) {
+            tab.changed = false;
+            reloadDocument();
+        }
+    }
+    
+    /**
+     * Closes a tab; closing the shown tab shows its neighbour
+     * @param tab Tab to be closed
+     */
+    private void closeDocumentTab(DocumentTab tab) {
+        var index = documentTabs.indexOf(tab);
+        if (index < 0) return;
+        if (tab.load != null) {
+            tab.load.cancel(true);
+            tab.load = null;
+        }
+        updatingTabs = true;
+        try {
+            documentTabs.remove(index);
+            documentTabbedPane.removeTabAt(index);
+        } finally {
+            updatingTabs = false;
+        }
+        documentTabbedPane.setVisible(documentTabs.size() > 1);
+        updateWatchedFiles();
+        if (tab != currentTab) return;
+        
+        currentTab = null;
+        if (documentTabs.isEmpty()) {
+            setDocument(null);
+            showDefaultDocument();
+            updateUserInterfaceState();
+        } else {
+            selectDocumentTab(documentTabs.get(Math.min(index, documentTabs.size() - 1)));
+        }
+    }
+    
+    /**
+     * Watches the files of the documents of all tabs
+     */
+    private void updateWatchedFiles() {
+        if (fileWatcher == null) return;
+        var files = new ArrayList<Path>();
+        for (var tab : documentTabs) {
+            if (tab.document != null && tab.document.getFile() != null) {
+                files.add(documentManager.getSourceFile(tab.document.getFile()));
+            }
+        }
+        fileWatcher.setFiles(files);
+    }
+    
+    /**
+     * Reloads the shown document if its file changed; documents of other
+     * tabs are reloaded when their tab is shown again
+     * @param files Changed files
+     */
+    private void documentFilesChanged(Set<Path> files) {
+        for (var tab : documentTabs) {
+            if (tab.document == null || tab.document.getFile() == null) continue;
+            var file = documentManager.getSourceFile(tab.document.getFile()).toAbsolutePath().normalize();
+            // The folder is reported if events have been lost
+            if (files.contains(file) || files.contains(file.getParent())) {
+                tab.changed = true;
+            }
+        }
+        if (currentTab != null && currentTab.changed) {
+            currentTab.changed = false;
+            reloadDocument();
+        }
+    }
+    
+    /**
+     * Fills a history with the nodes of a history from a previous session;
+     * nodes that do not exist anymore are skipped
+     */
+    private static void restoreHistory(NavigationHistory history, Document document, Session.Tab state) {
+        NavigationHistory.Entry current = null;
+        var entries = state.getHistory();
+        for (int i = 0; i < entries.size(); i++) {
+            var node = document.getNodeByIdentifier(entries.get(i).getNodeIdentifier());
+            if (node == null) continue;
+            var entry = history.push(node);
+            entry.setViewState(entries.get(i).getCaretPosition(), new Point(entries.get(i).getViewX(), entries.get(i).getViewY()));
+            if (i <= state.getHistoryPosition()) current = entry;
+        }
+        while (history.canGoBack() && history.getCurrent() != current) {
+            history.back();
+        }
+    }
+    
+    /**
+     * Renders the node that is shown first when the document is opened in
+     * the background lane, so that switching to its tab takes no time
+     * @param document Document in a background tab
+     */
+    private void prerenderEntryNode(Document document) {
+        var nodeIdentifier = document.getTocNodeIdentifier();
+        if (nodeIdentifier == null && document.getTitleNode() != null) nodeIdentifier = document.getTitleNode().getIdentifier();
+        var node = (nodeIdentifier != null)? document.getNodeByIdentifier(nodeIdentifier) : null;
+        if (node == null) return;
+        LoadScheduler.getShared().submit(LoadScheduler.Lane.BACKGROUND, node::toHtmlString);
+    }
+    
     private TreeModel createNodesList(Document document) {
         var treeTopNode = new DefaultMutableTreeNode("Contents");
         
@@ -156,17 +1031,30 @@ public class MainWindow extends javax.swing.JFrame {
     }
     
     private void renderDocumentNode(Node node) {
-        if (currentDocument != null && node != null && currentDocument.getNodesList().contains(node)) {
+        if (currentDocument != null && node != null && node.getDocument() == currentDocument) {
+            saveViewState();
             selectedDocumentNode = node;
-            mainContentPane.setText(selectedDocumentNode.toHtmlString());
+            displayNodeHtml(selectedDocumentNode);
             mainContentPane.setCaretPosition(0);
-            viewStack.push(node);
+            navigationHistory.push(node);
+            textFinder = null;
+            updateFindMatches();
+            updateBacklinksList();
             updateUserInterfaceState();
+            prefetchLinkedDocuments(node);
         } else {
             showDefaultDocument();
         }
     }
     
+    private void updateBacklinksList() {
+        var model = new DefaultListModel<Node>();
+        if (currentDocument != null && selectedDocumentNode != null) {
+            model.addAll(currentDocument.getBacklinks(selectedDocumentNode));
+        }
+        backlinksList.setModel(model);
+    }
+    
     private boolean selectDocumentNode(Node node) {
         var treeNode = findTreeNodeByDocumentNode(node);
         if (treeNode == null) return false;
@@ -181,20 +1069,20 @@ public class MainWindow extends javax.swing.JFrame {
     }
     
     private void showDefaultDocument() {
-        mainContentPane.setText("<html><body></body></html>");
+        setContentHtml("<html><body></body></html>");
+        displayedNode = null;
     }
     
     private TreeNode[] findTreeNodeByDocumentNode(Node node) {
         var model = documentNodesTree.getModel();
         var root = (DefaultMutableTreeNode)model.getRoot();
         
-        var count = root.getChildCount();
-        
-        for (var i = 0; i < count; i++) {
-            var treeNode = (DefaultMutableTreeNode)root.getChildAt(i);
-            if (treeNode.getUserObject() == node) {
-                return treeNode.getPath();
-            }
+        // Tree entries are created in node order
+        var ordinal = node.getOrdinal();
+        if (ordinal < 0 || ordinal >= root.getChildCount()) return null;
+        var treeNode = (DefaultMutableTreeNode)root.getChildAt(ordinal);
+        if (treeNode.getUserObject() == node) {
+            return treeNode.getPath();
         }
         return null;
     }
@@ -204,7 +1092,8 @@ public class MainWindow extends javax.swing.JFrame {
         navIndexButton.setEnabled(getIndexNodeIdentifier() != null);
         navPreviousButton.setEnabled(getPreviousNodeIdentifier() != null);
         navNextButton.setEnabled(getNextNodeIdentifier() != null);
-        navBackButton.setEnabled(currentDocument != null && viewStack.size() >= 2);
+        navBackButton.setEnabled(currentDocument != null && navigationHistory.canGoBack());
+        navForwardButton.setEnabled(currentDocument != null && navigationHistory.canGoForward());
         if (selectedDocumentNode != null) {
             setTitle(TITLE_PREFIX + " - " + selectedDocumentNode.getTitle());
         } else {
@@ -213,15 +1102,62 @@ public class MainWindow extends javax.swing.JFrame {
     }
     
     private void cmdOpenFileDialog() {
+        if (fileChooser == null) {
+            fileChooser = new JFileChooser();
+            fileChooser.setMultiSelectionEnabled(true);
+        }
         int returnValue = fileChooser.showOpenDialog(this);
         if (returnValue == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
-            if (file != null) {
-                openDocumentFile(file.toPath());
+            var files = new ArrayList<Path>();
+            for (File file : fileChooser.getSelectedFiles()) {
+                files.add(file.toPath());
+            }
+            if (!files.isEmpty()) {
+                openDocumentFiles(files);
             }
         }
     }
     
+    /**
+     * Lets the user choose a guide of an archive and opens it. Only the
+     * archive directory is read; the chosen guide is read from its entry.
+     * @param archiveFile Path of the archive
+     */
+    private void cmdOpenArchive(Path archiveFile) {
+        statusBarTextLabel.setText("Opening archive ...");
+        statusBarProgressBar.setVisible(true);
+        new SwingWorker<List<GuideArchive.Entry>, Void>() {
+            @Override
+            protected List<GuideArchive.Entry> doInBackground() throws IOException {
+                return documentManager.getArchiveEntries(archiveFile);
+            }
+
+            @Override
+            protected void done() {
+                statusBarTextLabel.setText(" ");
+                statusBarProgressBar.setVisible(false);
+                List<GuideArchive.Entry> entries;
+                try {
+                    entries = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    System.out.println("Error while opening archive: " + ex.getMessage());
+                    statusBarTextLabel.setText("Could not open " + archiveFile.getFileName());
+                    return;
+                }
+                if (entries.isEmpty()) {
+                    statusBarTextLabel.setText("No guides in " + archiveFile.getFileName());
+                    return;
+                }
+                var entry = (entries.size() == 1)? entries.get(0) : (GuideArchive.Entry)JOptionPane.showInputDialog(
+                    MainWindow.this, "Guide:", archiveFile.getFileName().toString(),
+                    JOptionPane.PLAIN_MESSAGE, null, entries.toArray(), entries.get(0));
+                if (entry != null) {
+                    openDocumentFile(archiveFile.resolve(entry.getName()));
+                }
+            }
+        }.execute();
+    }
+    
     private String getPreviousNodeIdentifier() {
         if (currentDocument == null || selectedDocumentNode == null) return null;
         return selectedDocumentNode.getPreviousNodeIdentifier();
@@ -262,13 +1198,72 @@ public class MainWindow extends javax.swing.JFrame {
     }
     
     private void cmdNavigateBack() {
-        if (currentDocument != null && viewStack.size() >= 2) {
-            viewStack.pop();
-            var node = viewStack.pop();
-            selectDocumentNode(node);
+        if (currentDocument != null && navigationHistory.canGoBack()) {
+            saveViewState();
+            showHistoryEntry(navigationHistory.back());
+        }
+    }
+    
+    private void cmdNavigateForward() {
+        if (currentDocument != null && navigationHistory.canGoForward()) {
+            saveViewState();
+            showHistoryEntry(navigationHistory.forward());
+        }
+    }
+    
+    private void cmdFollowLink(String linkIndex) {
+        if (currentDocument == null || selectedDocumentNode == null) return;
+        
+        Link link;
+        try {
+            link = currentDocument.getLink(selectedDocumentNode, Integer.parseInt(linkIndex));
+        } catch (NumberFormatException ex) {
+            return;
+        }
+        if (link == null) return;
+
+        if (link.isResolved()) {
+            selectDocumentNode(currentDocument.getNodeByOrdinal(link.getTargetNodeOrdinal()));
+        } else if (link.getStatus() == LinkStatus.EXTERNAL_DOCUMENT) {
+            cmdFollowExternalLink(link);
         }
     }
     
+    /**
+     * Opens the target of a link into another file. Guides are opened within
+     * this application, other files with the system's default application.
+     * @param link Link with an external target
+     */
+    private void cmdFollowExternalLink(Link link) {
+        var baseFile = currentDocument.getFile();
+        var isGuide = new AtomicBoolean();
+        statusBarTextLabel.setText("Opening " + link.getTarget() + " ...");
+        
+        // Resolving the target accesses the file system (directory scans,
+        // archives), so it is done in the foreground lane of the scheduler
+        var task = LoadScheduler.getShared().submit(LoadScheduler.Lane.FOREGROUND, () -> {
+            var target = documentManager.resolveLink(baseFile, link.getTarget());
+            if (target != null) isGuide.set(documentManager.isAmigaGuideFile(target.getFile()));
+            return target;
+        });
+        task.whenComplete((target, exception) -> SwingUtilities.invokeLater(() -> {
+            if (exception != null || target == null) {
+                statusBarTextLabel.setText("File not found: " + link.getTarget());
+                return;
+            }
+            statusBarTextLabel.setText(" ");
+            if (isGuide.get()) {
+                openDocumentFile(target.getFile(), target.getNodeIdentifier());
+            } else if (Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.OPEN)) {
+                try {
+                    Desktop.getDesktop().open(target.getFile().toFile());
+                } catch (IOException ex) {
+                    statusBarTextLabel.setText("Could not open " + target.getFile().getFileName());
+                }
+            }
+        }));
+    }
+    
     private void cmdNavigateToToc() {
         var nodeIdentifier = getTocNodeIdentifier();
         if (nodeIdentifier != null) {
@@ -283,25 +1278,355 @@ public class MainWindow extends javax.swing.JFrame {
         }
     }
     
+    private void cmdShowFindBar() {
+        findPanel.setVisible(true);
+        findTextField.selectAll();
+        findTextField.requestFocusInWindow();
+        updateFindMatches();
+    }
+    
+    private void cmdCloseFindBar() {
+        findPanel.setVisible(false);
+        matchHighlighter.clear();
+        findStatusLabel.setText(" ");
+    }
+    
+    private void cmdFindNextMatch() {
+        var count = matchHighlighter.getMatchCount();
+        if (count == 0) return;
+        matchHighlighter.selectMatch((matchHighlighter.getCurrentMatch() + 1) % count);
+        updateFindStatus();
+    }
+    
+    private void cmdFindPreviousMatch() {
+        var count = matchHighlighter.getMatchCount();
+        if (count == 0) return;
+        matchHighlighter.selectMatch((matchHighlighter.getCurrentMatch() + count - 1) % count);
+        updateFindStatus();
+    }
+    
+    private void updateFindMatches() {
+        var pattern = findTextField.getText();
+        if (!findPanel.isVisible() || pattern.isEmpty()) {
+            matchHighlighter.clear();
+            findStatusLabel.setText(" ");
+            return;
+        }
+        
+        if (textFinder == null) {
+            var document = mainContentPane.getDocument();
+            try {
+                textFinder = new TextFinder(document.getText(0, document.getLength()));
+            } catch (BadLocationException ex) {
+                return;
+            }
+        }
+        
+        // Offsets within the displayed text are document offsets, so the
+        // matches can be highlighted directly
+        matchHighlighter.setMatches(textFinder.findAll(pattern, MAX_FIND_MATCHES), pattern.length());
+        var viewStart = mainContentPane.viewToModel2D(jScrollPane1.getViewport().getViewPosition());
+        matchHighlighter.selectMatchAtOrAfter(Math.max(0, viewStart));
+        updateFindStatus();
+    }
+    
+    private void updateFindStatus() {
+        var count = matchHighlighter.getMatchCount();
+        if (count == 0) {
+            findStatusLabel.setText("No matches");
+        } else {
+            findStatusLabel.setText((matchHighlighter.getCurrentMatch() + 1) + " of " + count
+                + (count == MAX_FIND_MATCHES? "+" : ""));
+        }
+    }
+    
+    private void cmdOpenLibrary() {
+        if (libraryDialog == null) {
+            libraryDialog = new LibraryDialog(this);
+            libraryDialog.setDefaultCloseOperation(javax.swing.WindowConstants.HIDE_ON_CLOSE);
+        }
+        libraryDialog.setVisible(true);
+    }
+    
+    private void cmdCloseDocumentTab() {
+        if (currentTab != null) {
+            closeDocumentTab(currentTab);
+        }
+    }
+    
+    private void cmdOpenMemoryDialog() {
+        var dialog = new MemoryDialog(this);
+        dialog.setVisible(true);
+    }
+    
+    private void cmdToggleMetricsPanel() {
+        Settings.setMetricsPanelVisible(!statusBarMetricsLabel.isVisible());
+        setMetricsPanelVisible(Settings.isMetricsPanelVisible());
+    }
+    
     private void cmdOpenAboutDialog() {
         var dialog = new AboutDialog(this, true);
         dialog.setVisible(true);
     }
     
+    /**
+     * An open document and the state of its view while its tab is not shown
+     */
+    private static final class DocumentTab {
+        
+        /**
+         * Document; null while it is being loaded
+         */
+        private Document document;
+        
+        /**
+         * Load of the document; null once it has been loaded
+         */
+        private CompletableFuture<Document> load;
+        
+        private final NavigationHistory history;
+        
+        /**
+         * Search index while the tab is not shown; null if it has not been
+         * built yet or has been evicted
+         */
+        private volatile SearchIndex searchIndex;
+        
+        /**
+         * Time when the tab was left (System.nanoTime())
+         */
+        private volatile long lastShown;
+        
+        /**
+         * Set if the file changed while the tab was not shown
+         */
+        private boolean changed;
+        
+        /**
+         * State from the previous session; applied once the document has been loaded
+         */
+        private Session.Tab restoredState;
+
+        DocumentTab(NavigationHistory history) {
+            this.history = history;
+        }
+        
+    }
+    
+    /**
+     * Reports the search indexes of all tabs to the memory governor. The
+     * index of the shown tab is never evicted; the indexes of the other tabs
+     * are rebuilt when their tab is shown again.
+     */
+    private final class SearchIndexCache implements MemoryGovernor.Cache {
+        
+        @Override
+        public String getName() {
+            return "Search index";
+        }
+
+        @Override
+        public int getEntryCount() {
+            var count = 0;
+            for (var tab : documentTabs) {
+                if (getSearchIndex(tab) != null) count++;
+            }
+            return count;
+        }
+
+        @Override
+        public long getSize() {
+            long size = 0;
+            for (var tab : documentTabs) {
+                var index = getSearchIndex(tab);
+                if (index != null) size += index.getEstimatedSize();
+            }
+            return size;
+        }
+
+        @Override
+        public MemoryGovernor.Candidate getEvictionCandidate() {
+            DocumentTab oldest = null;
+            SearchIndex oldestIndex = null;
+            var shown = currentTab;
+            for (var tab : documentTabs) {
+                var index = tab.searchIndex;
+                if (tab == shown || index == null) continue;
+                if (oldest == null || tab.lastShown - oldest.lastShown < 0) {
+                    oldest = tab;
+                    oldestIndex = index;
+                }
+            }
+            if (oldest == null) return null;
+            return new MemoryGovernor.Candidate(oldest, oldestIndex.getEstimatedSize(), oldest.lastShown, oldestIndex.getBuildTime());
+        }
+
+        @Override
+        public long evict(MemoryGovernor.Candidate candidate) {
+            var tab = (DocumentTab)candidate.getKey();
+            var index = tab.searchIndex;
+            if (tab == currentTab || index == null || tab.lastShown != candidate.getLastAccess()) return 0;
+            tab.searchIndex = null;
+            return index.getEstimatedSize();
+        }
+        
+        private SearchIndex getSearchIndex(DocumentTab tab) {
+            return (tab == currentTab)? searchIndex : tab.searchIndex;
+        }
+        
+    }
+    
     // </editor-fold>
 
     /**
      * Creates new form MainWindow
      */
     public MainWindow() {
+        this(new DocumentManager(DocumentManager.DEFAULT_MEMORY_BUDGET));
+    }
+    
+    /**
+     * Creates new form MainWindow that loads its documents with the given
+     * document manager, so that loads started before the window was
+     * created are shared
+     * @param documentManager Document manager
+     */
+    public MainWindow(DocumentManager documentManager) {
+        this.documentManager = documentManager;
         initComponents();
 
-        setIconImage(
-            new ImageIcon(getClass().getResource("/de/ubergeek/amigaguideviewer/res/book_picture.png")).getImage()
-        );
+        // Same image as the library button
+        setIconImage(((ImageIcon)navLibraryButton.getIcon()).getImage());
         
         statusBarProgressBar.setVisible(false);
         
+        // Reload documents when their files are changed
+        try {
+            fileWatcher = new FileWatcher("Document watcher", (Set<Path> files) -> {
+                SwingUtilities.invokeLater(() -> documentFilesChanged(files));
+            });
+        } catch (IOException ex) {
+            System.out.println("File watching is not supported: " + ex.getMessage());
+        }
+        
+        // Search indexes of tabs in the background are evicted when memory is short
+        MemoryGovernor.getShared().register(searchIndexCache);
+        
+        // Memory diagnostics (Ctrl+Shift+M)
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_M, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | KeyEvent.SHIFT_DOWN_MASK), "memory"
+        );
+        getRootPane().getActionMap().put("memory", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cmdOpenMemoryDialog();
+            }
+        });
+        
+        // Metrics panel in the status bar (Ctrl+Shift+P)
+        setMetricsPanelVisible(Settings.isMetricsPanelVisible());
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_P, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | KeyEvent.SHIFT_DOWN_MASK), "metrics"
+        );
+        getRootPane().getActionMap().put("metrics", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cmdToggleMetricsPanel();
+            }
+        });
+        
+        // The open documents are restored on the next start
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent we) {
+                saveSession();
+            }
+        });
+        
+        // Back and forward in the navigation history (Alt+Left, Alt+Right)
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, KeyEvent.ALT_DOWN_MASK), "back"
+        );
+        getRootPane().getActionMap().put("back", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cmdNavigateBack();
+            }
+        });
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT, KeyEvent.ALT_DOWN_MASK), "forward"
+        );
+        getRootPane().getActionMap().put("forward", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cmdNavigateForward();
+            }
+        });
+        
+        // Tabs of open documents; Ctrl+W or a middle click closes a tab
+        documentTabbedPane.setVisible(false);
+        documentTabbedPane.addChangeListener((var ce) -> {
+            if (updatingTabs) return;
+            var index = documentTabbedPane.getSelectedIndex();
+            var tab = (index >= 0)? documentTabs.get(index) : null;
+            if (tab != currentTab) showDocumentTab(tab);
+        });
+        documentTabbedPane.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent me) {
+                var index = documentTabbedPane.indexAtLocation(me.getX(), me.getY());
+                if (index >= 0 && SwingUtilities.isMiddleMouseButton(me)) {
+                    closeDocumentTab(documentTabs.get(index));
+                }
+            }
+        });
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_W, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "closeTab"
+        );
+        getRootPane().getActionMap().put("closeTab", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cmdCloseDocumentTab();
+            }
+        });
+
+        // Find in node (Ctrl+F)
+        matchHighlighter = new MatchHighlighter(mainContentPane, jScrollPane1.getViewport());
+        findPanel.setVisible(false);
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+            KeyStroke.getKeyStroke(KeyEvent.VK_F, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "find"
+        );
+        getRootPane().getActionMap().put("find", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cmdShowFindBar();
+            }
+        });
+        findTextField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "closeFind");
+        findTextField.getActionMap().put("closeFind", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cmdCloseFindBar();
+            }
+        });
+        findTextField.addActionListener((var ae) -> cmdFindNextMatch());
+        findTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent de) {
+                updateFindMatches();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent de) {
+                updateFindMatches();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent de) {
+                updateFindMatches();
+            }
+        });
+        
         // Event handler for clicked links
         mainContentPane.setDropTarget(null);
         mainContentPane.addHyperlinkListener((HyperlinkEvent he) -> {
@@ -311,20 +1636,9 @@ public class MainWindow extends javax.swing.JFrame {
                 var attrSet = element.getAttributes();
                 
                 String href = ((AttributeSet)attrSet.getAttribute(HTML.Tag.A)).getAttribute(HTML.Attribute.HREF).toString();
-                var parts = java.net.URLDecoder.decode(href, Charset.defaultCharset()).split("\\:\\/\\/");
-
-                if (parts.length == 2) {
-                    if (parts[0].equals("link")) {
-                        selectDocumentNodeByIdentifier(parts[1]);
-                        
-                        // TODO It could be possible to link to external files
-                        // If another amiga guide file is linked it should be opened
-                        // within this application; otherwise it should be opened
-                        // within the system's default application
-                        
-                        // Desktop.getDesktop().open(...);
-                    }
-                }                
+                if (href.startsWith("link:")) {
+                    cmdFollowLink(href.substring(5));
+                }
             }
         });
         showDefaultDocument();
@@ -332,6 +1646,7 @@ public class MainWindow extends javax.swing.JFrame {
         // Event handler for selection changes in the content tree
         documentNodesTree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
         documentNodesTree.addTreeSelectionListener((var tse) -> {
+            if (reloadingDocument) return;
             
             // No node selected
             if (tse.getNewLeadSelectionPath() == null) {
@@ -351,6 +1666,42 @@ public class MainWindow extends javax.swing.JFrame {
             }
         });
         
+        // Event handler for selections in the backlinks list
+        backlinksList.addListSelectionListener((var lse) -> {
+            if (lse.getValueIsAdjusting()) return;
+            var node = backlinksList.getSelectedValue();
+            if (node != null) {
+                selectDocumentNode(node);
+            }
+        });
+        
+        // Search as you type
+        searchTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent de) {
+                updateSearchResults();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent de) {
+                updateSearchResults();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent de) {
+                updateSearchResults();
+            }
+        });
+        
+        // Event handler for selections in the search results
+        searchResultsList.addListSelectionListener((var lse) -> {
+            if (lse.getValueIsAdjusting()) return;
+            var hit = searchResultsList.getSelectedValue();
+            if (hit != null) {
+                selectDocumentNode(hit.getNode());
+            }
+        });
+        
         // Support for dragging files onto application window
         new DropTarget(this, DnDConstants.ACTION_COPY_OR_MOVE, new DropTargetListener() {
             @Override
@@ -381,8 +1732,12 @@ public class MainWindow extends javax.swing.JFrame {
                             
                             @SuppressWarnings(value = "unchecked")
                             java.util.List<File> files = (java.util.List<File>)tr.getTransferData(flavor);
-                            if (files.size() == 1) {
-                                openDocumentFile(files.get(0).toPath());
+                            var paths = new ArrayList<Path>();
+                            for (var file : files) {
+                                paths.add(file.toPath());
+                            }
+                            if (!paths.isEmpty()) {
+                                openDocumentFiles(paths);
                             }
 
                             dtde.dropComplete(true);
@@ -411,22 +1766,41 @@ public class MainWindow extends javax.swing.JFrame {
         jPanel1 = new javax.swing.JPanel();
         mainToolBar = new javax.swing.JToolBar();
         navOpenButton = new javax.swing.JButton();
+        navLibraryButton = new javax.swing.JButton();
         jSeparator1 = new javax.swing.JToolBar.Separator();
         navIndexButton = new javax.swing.JButton();
         navContentsButton = new javax.swing.JButton();
         navPreviousButton = new javax.swing.JButton();
         navNextButton = new javax.swing.JButton();
         navBackButton = new javax.swing.JButton();
+        navForwardButton = new javax.swing.JButton();
         jSeparator2 = new javax.swing.JToolBar.Separator();
         navAboutButton = new javax.swing.JButton();
         jSplitPane1 = new javax.swing.JSplitPane();
+        sidebarTabbedPane = new javax.swing.JTabbedPane();
         jScrollPane2 = new javax.swing.JScrollPane();
         documentNodesTree = new javax.swing.JTree();
+        backlinksScrollPane = new javax.swing.JScrollPane();
+        backlinksList = new javax.swing.JList<>();
+        searchPanel = new javax.swing.JPanel();
+        searchTextField = new javax.swing.JTextField();
+        searchResultsScrollPane = new javax.swing.JScrollPane();
+        searchResultsList = new javax.swing.JList<>();
+        contentPanel = new javax.swing.JPanel();
+        documentTabbedPane = new javax.swing.JTabbedPane();
         jScrollPane1 = new javax.swing.JScrollPane();
         mainContentPane = new javax.swing.JEditorPane();
+        findPanel = new javax.swing.JPanel();
+        findLabel = new javax.swing.JLabel();
+        findTextField = new javax.swing.JTextField();
+        findPreviousMatchButton = new javax.swing.JButton();
+        findNextMatchButton = new javax.swing.JButton();
+        findStatusLabel = new javax.swing.JLabel();
+        findCloseButton = new javax.swing.JButton();
         statusBarPanel = new javax.swing.JPanel();
         statusBarTextLabel = new javax.swing.JLabel();
         statusBarProgressBar = new javax.swing.JProgressBar();
+        statusBarMetricsLabel = new javax.swing.JLabel();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setLocationByPlatform(true);
@@ -447,6 +1821,18 @@ public class MainWindow extends javax.swing.JFrame {
             }
         });
         mainToolBar.add(navOpenButton);
+
+        navLibraryButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/de/ubergeek/amigaguideviewer/res/book_picture.png"))); // NOI18N
+        navLibraryButton.setText("Library");
+        navLibraryButton.setFocusable(false);
+        navLibraryButton.setHorizontalTextPosition(javax.swing.SwingConstants.CENTER);
+        navLibraryButton.setVerticalTextPosition(javax.swing.SwingConstants.BOTTOM);
+        navLibraryButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                navLibraryButtonActionPerformed(evt);
+            }
+        });
+        mainToolBar.add(navLibraryButton);
         mainToolBar.add(jSeparator1);
 
         navIndexButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/de/ubergeek/amigaguideviewer/res/bookmark.png"))); // NOI18N
@@ -505,6 +1891,18 @@ public class MainWindow extends javax.swing.JFrame {
             }
         });
         mainToolBar.add(navBackButton);
+
+        navForwardButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/de/ubergeek/amigaguideviewer/res/arrow_redo.png"))); // NOI18N
+        navForwardButton.setText("Forward");
+        navForwardButton.setFocusable(false);
+        navForwardButton.setHorizontalTextPosition(javax.swing.SwingConstants.CENTER);
+        navForwardButton.setVerticalTextPosition(javax.swing.SwingConstants.BOTTOM);
+        navForwardButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                navForwardButtonActionPerformed(evt);
+            }
+        });
+        mainToolBar.add(navForwardButton);
         mainToolBar.add(jSeparator2);
 
         navAboutButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/de/ubergeek/amigaguideviewer/res/info_rhombus.png"))); // NOI18N
@@ -527,7 +1925,29 @@ public class MainWindow extends javax.swing.JFrame {
         documentNodesTree.setModel(new javax.swing.tree.DefaultTreeModel(treeNode1));
         jScrollPane2.setViewportView(documentNodesTree);
 
-        jSplitPane1.setLeftComponent(jScrollPane2);
+        sidebarTabbedPane.addTab("Contents", jScrollPane2);
+
+        backlinksList.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        backlinksScrollPane.setViewportView(backlinksList);
+
+        sidebarTabbedPane.addTab("Linked from", backlinksScrollPane);
+
+        searchPanel.setLayout(new java.awt.BorderLayout());
+
+        searchTextField.setToolTipText("Search all nodes of the document");
+        searchPanel.add(searchTextField, java.awt.BorderLayout.PAGE_START);
+
+        searchResultsList.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        searchResultsScrollPane.setViewportView(searchResultsList);
+
+        searchPanel.add(searchResultsScrollPane, java.awt.BorderLayout.CENTER);
+
+        sidebarTabbedPane.addTab("Search", searchPanel);
+
+        jSplitPane1.setLeftComponent(sidebarTabbedPane);
+
+        contentPanel.setLayout(new java.awt.BorderLayout());
+        contentPanel.add(documentTabbedPane, java.awt.BorderLayout.PAGE_START);
 
         mainContentPane.setEditable(false);
         mainContentPane.setBackground(new java.awt.Color(255, 255, 255));
@@ -535,7 +1955,49 @@ public class MainWindow extends javax.swing.JFrame {
         mainContentPane.setText("");
         jScrollPane1.setViewportView(mainContentPane);
 
-        jSplitPane1.setRightComponent(jScrollPane1);
+        contentPanel.add(jScrollPane1, java.awt.BorderLayout.CENTER);
+
+        findPanel.setLayout(new java.awt.FlowLayout(java.awt.FlowLayout.LEFT));
+
+        findLabel.setText("Find:");
+        findPanel.add(findLabel);
+
+        findTextField.setColumns(20);
+        findPanel.add(findTextField);
+
+        findPreviousMatchButton.setText("Previous");
+        findPreviousMatchButton.setFocusable(false);
+        findPreviousMatchButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                findPreviousMatchButtonActionPerformed(evt);
+            }
+        });
+        findPanel.add(findPreviousMatchButton);
+
+        findNextMatchButton.setText("Next");
+        findNextMatchButton.setFocusable(false);
+        findNextMatchButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                findNextMatchButtonActionPerformed(evt);
+            }
+        });
+        findPanel.add(findNextMatchButton);
+
+        findStatusLabel.setText(" ");
+        findPanel.add(findStatusLabel);
+
+        findCloseButton.setText("Close");
+        findCloseButton.setFocusable(false);
+        findCloseButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                findCloseButtonActionPerformed(evt);
+            }
+        });
+        findPanel.add(findCloseButton);
+
+        contentPanel.add(findPanel, java.awt.BorderLayout.PAGE_END);
+
+        jSplitPane1.setRightComponent(contentPanel);
 
         javax.swing.GroupLayout jPanel1Layout = new javax.swing.GroupLayout(jPanel1);
         jPanel1.setLayout(jPanel1Layout);
@@ -543,9 +2005,7 @@ public class MainWindow extends javax.swing.JFrame {
             jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(jPanel1Layout.createSequentialGroup()
                 .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-                    .addGroup(jPanel1Layout.createSequentialGroup()
-                        .addComponent(mainToolBar, javax.swing.GroupLayout.PREFERRED_SIZE, 513, javax.swing.GroupLayout.PREFERRED_SIZE)
-                        .addGap(0, 228, Short.MAX_VALUE))
+                    .addComponent(mainToolBar, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addGroup(jPanel1Layout.createSequentialGroup()
                         .addContainerGap()
                         .addComponent(jSplitPane1)))
@@ -569,6 +2029,10 @@ public class MainWindow extends javax.swing.JFrame {
         statusBarProgressBar.setIndeterminate(true);
         statusBarPanel.add(statusBarProgressBar);
 
+        statusBarMetricsLabel.setForeground(new java.awt.Color(102, 102, 102));
+        statusBarMetricsLabel.setText(" ");
+        statusBarPanel.add(statusBarMetricsLabel);
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -599,6 +2063,10 @@ public class MainWindow extends javax.swing.JFrame {
         cmdNavigateBack();
     }//GEN-LAST:event_navBackButtonActionPerformed
 
+    private void navForwardButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_navForwardButtonActionPerformed
+        cmdNavigateForward();
+    }//GEN-LAST:event_navForwardButtonActionPerformed
+
     private void navIndexButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_navIndexButtonActionPerformed
         cmdNavigateToIndex();
     }//GEN-LAST:event_navIndexButtonActionPerformed
@@ -611,12 +2079,39 @@ public class MainWindow extends javax.swing.JFrame {
         cmdOpenFileDialog();
     }//GEN-LAST:event_navOpenButtonActionPerformed
 
+    private void navLibraryButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_navLibraryButtonActionPerformed
+        cmdOpenLibrary();
+    }//GEN-LAST:event_navLibraryButtonActionPerformed
+
     private void navAboutButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_navAboutButtonActionPerformed
         cmdOpenAboutDialog();
     }//GEN-LAST:event_navAboutButtonActionPerformed
 
+    private void findPreviousMatchButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_findPreviousMatchButtonActionPerformed
+        cmdFindPreviousMatch();
+    }//GEN-LAST:event_findPreviousMatchButtonActionPerformed
+
+    private void findNextMatchButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_findNextMatchButtonActionPerformed
+        cmdFindNextMatch();
+    }//GEN-LAST:event_findNextMatchButtonActionPerformed
+
+    private void findCloseButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_findCloseButtonActionPerformed
+        cmdCloseFindBar();
+    }//GEN-LAST:event_findCloseButtonActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JList<Node> backlinksList;
+    private javax.swing.JScrollPane backlinksScrollPane;
+    private javax.swing.JPanel contentPanel;
     private javax.swing.JTree documentNodesTree;
+    private javax.swing.JTabbedPane documentTabbedPane;
+    private javax.swing.JButton findCloseButton;
+    private javax.swing.JLabel findLabel;
+    private javax.swing.JButton findNextMatchButton;
+    private javax.swing.JPanel findPanel;
+    private javax.swing.JButton findPreviousMatchButton;
+    private javax.swing.JLabel findStatusLabel;
+    private javax.swing.JTextField findTextField;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JScrollPane jScrollPane2;
@@ -628,10 +2123,18 @@ public class MainWindow extends javax.swing.JFrame {
     private javax.swing.JButton navAboutButton;
     private javax.swing.JButton navBackButton;
     private javax.swing.JButton navContentsButton;
+    private javax.swing.JButton navForwardButton;
     private javax.swing.JButton navIndexButton;
+    private javax.swing.JButton navLibraryButton;
     private javax.swing.JButton navNextButton;
     private javax.swing.JButton navOpenButton;
     private javax.swing.JButton navPreviousButton;
+    private javax.swing.JPanel searchPanel;
+    private javax.swing.JList<SearchHit> searchResultsList;
+    private javax.swing.JScrollPane searchResultsScrollPane;
+    private javax.swing.JTextField searchTextField;
+    private javax.swing.JTabbedPane sidebarTabbedPane;
+    private javax.swing.JLabel statusBarMetricsLabel;
     private javax.swing.JPanel statusBarPanel;
     private javax.swing.JProgressBar statusBarProgressBar;
     private javax.swing.JLabel statusBarTextLabel;
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.swing.JViewport;
+import javax.swing.event.ChangeListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Highlighter;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Highlights search matches in a text component that is shown in a viewport.
+ * Only matches within the visible area are highlighted; further matches are
+ * added lazily while the user scrolls, and highlights that have been
+ * scrolled far out of view are removed again. The number of highlights
+ * added per pass and the number of highlights kept are bounded, so even
+ * nodes with a huge number of matches do not block the event dispatch
+ * thread.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public class MatchHighlighter {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Maximum number of highlights added in a single pass
+     */
+    private static final int MAX_HIGHLIGHTS_PER_PASS = 500;
+    
+    /**
+     * Number of matches before and after the visible ones whose highlights
+     * are kept, so that scrolling back a little does not add them again
+     */
+    private static final int KEPT_MATCHES_MARGIN = 500;
+    
+    /**
+     * Maximum number of highlights kept at the same time
+     */
+    private static final int MAX_HIGHLIGHTS = 4000;
+    
+    private static final Highlighter.HighlightPainter MATCH_PAINTER =
+        new DefaultHighlighter.DefaultHighlightPainter(new Color(0xff, 0xee, 0x88));
+    
+    private static final Highlighter.HighlightPainter CURRENT_MATCH_PAINTER =
+        new DefaultHighlighter.DefaultHighlightPainter(new Color(0xff, 0xaa, 0x33));
+    
+    private final JTextComponent textComponent;
+    
+    private final JViewport viewport;
+    
+    private final ChangeListener viewportListener = (var ce) -> highlightVisibleMatches();
+    
+    private int[] matches = new int[0];
+    
+    private int matchLength;
+    
+    private int currentMatch = -1;
+    
+    private Object currentMatchTag;
+    
+    private final BitSet highlightedMatches = new BitSet();
+    
+    /**
+     * Highlight tags of the highlighted matches, indexed like matches
+     */
+    private Object[] highlightTags = new Object[0];
+    
+    private int highlightCount = 0;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the number of matches
+     * @return Number of matches
+     */
+    public int getMatchCount() {
+        return matches.length;
+    }
+    
+    /**
+     * Returns the index of the current match
+     * @return Index of the current match or -1
+     */
+    public int getCurrentMatch() {
+        return currentMatch;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a highlighter for the given text component
+     * @param textComponent Text component
+     * @param viewport The viewport that shows the text component
+     */
+    public MatchHighlighter(JTextComponent textComponent, JViewport viewport) {
+        this.textComponent = textComponent;
+        this.viewport = viewport;
+        viewport.addChangeListener(viewportListener);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Replaces the current matches.
+     * @param matches Sorted match offsets within the text component's document
+     * @param matchLength Length of each match
+     */
+    public void setMatches(int[] matches, int matchLength) {
+        clear();
+        this.matches = matches;
+        this.matchLength = matchLength;
+        highlightTags = new Object[matches.length];
+        highlightVisibleMatches();
+    }
+    
+    /**
+     * Removes all highlights and matches
+     */
+    public void clear() {
+        textComponent.getHighlighter().removeAllHighlights();
+        highlightedMatches.clear();
+        highlightTags = new Object[0];
+        highlightCount = 0;
+        matches = new int[0];
+        currentMatch = -1;
+        currentMatchTag = null;
+    }
+    
+    /**
+     * Selects the first match at or after the given offset as current match
+     * and scrolls it into view.
+     * @param offset Document offset
+     * @return Index of the selected match or -1 if there are no matches
+     */
+    public int selectMatchAtOrAfter(int offset) {
+        if (matches.length == 0) return -1;
+        var index = Arrays.binarySearch(matches, offset);
+        if (index < 0) index = -index - 1;
+        if (index >= matches.length) index = 0;
+        selectMatch(index);
+        return index;
+    }
+    
+    /**
+     * Selects the given match as current match and scrolls it into view.
+     * @param index Index of the match
+     */
+    public void selectMatch(int index) {
+        if (index < 0 || index >= matches.length) return;
+        var highlighter = textComponent.getHighlighter();
+        if (currentMatchTag != null) {
+            highlighter.removeHighlight(currentMatchTag);
+            currentMatchTag = null;
+        }
+        currentMatch = index;
+        try {
+            currentMatchTag = highlighter.addHighlight(matches[index], matches[index] + matchLength, CURRENT_MATCH_PAINTER);
+            var rectangle = textComponent.modelToView2D(matches[index]);
+            if (rectangle != null) {
+                textComponent.scrollRectToVisible(rectangle.getBounds());
+            }
+        } catch (BadLocationException ex) {
+            // Offsets may be out of date if the document has been replaced
+        }
+        highlightVisibleMatches();
+    }
+    
+    /**
+     * Detaches the highlighter from the viewport
+     */
+    public void dispose() {
+        viewport.removeChangeListener(viewportListener);
+        clear();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private void highlightVisibleMatches() {
+        if (matches.length == 0) return;
+        
+        var view = viewport.getViewRect();
+        var start = textComponent.viewToModel2D(new Point(view.x, view.y));
+        var end = textComponent.viewToModel2D(new Point(view.x + view.width, view.y + view.height));
+        if (start < 0 || end < 0) return;
+        
+        var first = Arrays.binarySearch(matches, Math.max(0, start - matchLength));
+        if (first < 0) first = -first - 1;
+        var last = Arrays.binarySearch(matches, end + 1);
+        if (last < 0) last = -last - 1;
+        
+        removeHighlightsOutside(first - KEPT_MATCHES_MARGIN, last + KEPT_MATCHES_MARGIN);
+        
+        var highlighter = textComponent.getHighlighter();
+        var added = 0;
+        for (int i = first; i < last && added < MAX_HIGHLIGHTS_PER_PASS && highlightCount < MAX_HIGHLIGHTS; i++) {
+            if (highlightedMatches.get(i)) continue;
+            try {
+                highlightTags[i] = highlighter.addHighlight(matches[i], matches[i] + matchLength, MATCH_PAINTER);
+                highlightedMatches.set(i);
+                highlightCount++;
+                added++;
+            } catch (BadLocationException ex) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Removes the highlights of all matches outside the given index range;
+     * only the highlighted matches are visited
+     */
+    private void removeHighlightsOutside(int first, int last) {
+        var highlighter = textComponent.getHighlighter();
+        for (int i = highlightedMatches.nextSetBit(0); i >= 0; i = highlightedMatches.nextSetBit(i + 1)) {
+            if (i >= first && i < last) {
+                // Skip to the end of the kept range
+                i = Math.max(i, last - 1);
+                continue;
+            }
+            highlighter.removeHighlight(highlightTags[i]);
+            highlightTags[i] = null;
+            highlightedMatches.clear(i);
+            highlightCount--;
+        }
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.List;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Simple AmigaGuide viewer - memory diagnostics dialog.
+ * Shows the caches registered with the memory governor, their sizes and
+ * the heap usage; refreshed every second while the dialog is open.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public class MemoryDialog extends javax.swing.JDialog {
+
+    // <editor-fold desc="Properties">
+    
+    private static final int REFRESH_INTERVAL = 1000;
+    
+    private final CacheTableModel tableModel = new CacheTableModel();
+    
+    private final Timer refreshTimer;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates new form MemoryDialog
+     * @param parent Parent frame
+     */
+    public MemoryDialog(java.awt.Frame parent) {
+        super(parent, false);
+        initComponents();
+        compressCheckBox.setSelected(ContentStore.getShared().isCompressionEnabled());
+        refresh();
+        refreshTimer = new Timer(REFRESH_INTERVAL, ae -> refresh());
+        refreshTimer.start();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private void refresh() {
+        var governor = MemoryGovernor.getShared();
+        var runtime = Runtime.getRuntime();
+        var contents = ContentStore.getShared();
+        tableModel.setCaches(governor.getCaches());
+        summaryLabel.setText("<html>Caches: " + formatSize(governor.getTotalSize())
+            + " of " + formatSize(governor.getBudget())
+            + " &nbsp; Heap: " + formatSize(runtime.totalMemory() - runtime.freeMemory())
+            + " of " + formatSize(runtime.maxMemory())
+            + "<br>Node contents: " + contents.getEntryCount() + " unique, " + formatSize(contents.getUniqueSize())
+            + " &nbsp; Evicted: " + governor.getEvictionCount() + " entries, " + formatSize(governor.getEvictedSize())
+            + "</html>");
+    }
+    
+    private static String formatSize(long size) {
+        if (size < 1024 * 1024) return (size / 1024) + " KB";
+        return String.format("%.1f MB", size / (1024.0 * 1024.0));
+    }
+    
+    // </editor-fold>
+
+    /**
+     * This method is called from within the constructor to initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is always
+     * regenerated by the Form Editor.
+     */
+    @SuppressWarnings("unchecked")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        summaryPanel = new javax.swing.JPanel();
+        summaryLabel = new javax.swing.JLabel();
+        cachesScrollPane = new javax.swing.JScrollPane();
+        cachesTable = new javax.swing.JTable();
+        buttonPanel = new javax.swing.JPanel();
+        compressCheckBox = new javax.swing.JCheckBox();
+        trimButton = new javax.swing.JButton();
+        closeButton = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+        setTitle("Memory");
+        setLocationByPlatform(true);
+        setPreferredSize(new java.awt.Dimension(560, 320));
+
+        summaryPanel.setLayout(new java.awt.FlowLayout(java.awt.FlowLayout.LEFT));
+
+        summaryLabel.setText(" ");
+        summaryPanel.add(summaryLabel);
+
+        getContentPane().add(summaryPanel, java.awt.BorderLayout.PAGE_START);
+
+        cachesTable.setModel(tableModel);
+        cachesTable.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        cachesScrollPane.setViewportView(cachesTable);
+
+        getContentPane().add(cachesScrollPane, java.awt.BorderLayout.CENTER);
+
+        buttonPanel.setLayout(new java.awt.FlowLayout(java.awt.FlowLayout.RIGHT));
+
+        compressCheckBox.setText("Keep node contents compressed");
+        compressCheckBox.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                compressCheckBoxActionPerformed(evt);
+            }
+        });
+        buttonPanel.add(compressCheckBox);
+
+        trimButton.setText("Trim caches");
+        trimButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                trimButtonActionPerformed(evt);
+            }
+        });
+        buttonPanel.add(trimButton);
+
+        closeButton.setText("Close");
+        closeButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                closeButtonActionPerformed(evt);
+            }
+        });
+        buttonPanel.add(closeButton);
+
+        getContentPane().add(buttonPanel, java.awt.BorderLayout.PAGE_END);
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    private void compressCheckBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_compressCheckBoxActionPerformed
+        // Applies to documents that are parsed from now on
+        Settings.setContentCompressionEnabled(compressCheckBox.isSelected());
+        ContentStore.getShared().setCompressionEnabled(compressCheckBox.isSelected());
+    }//GEN-LAST:event_compressCheckBoxActionPerformed
+
+    private void trimButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_trimButtonActionPerformed
+        var governor = MemoryGovernor.getShared();
+        governor.trim(governor.getTotalSize());
+        refresh();
+    }//GEN-LAST:event_trimButtonActionPerformed
+
+    private void closeButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_closeButtonActionPerformed
+        setVisible(false);
+        dispose();
+    }//GEN-LAST:event_closeButtonActionPerformed
+
+    /**
+     * Table model for the registered caches
+     */
+    private static class CacheTableModel extends AbstractTableModel {
+        
+        private static final String[] COLUMNS = { "Cache", "Entries", "Size" };
+        
+        private List<MemoryGovernor.Cache> caches = List.of();
+        
+        void setCaches(List<MemoryGovernor.Cache> caches) {
+            this.caches = caches;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return caches.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return (column == 1)? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            var cache = caches.get(row);
+            return switch (column) {
+                case 0 -> cache.getName();
+                case 1 -> cache.getEntryCount();
+                default -> formatSize(cache.getSize());
+            };
+        }
+        
+    }
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JPanel buttonPanel;
+    private javax.swing.JScrollPane cachesScrollPane;
+    private javax.swing.JTable cachesTable;
+    private javax.swing.JButton closeButton;
+    private javax.swing.JCheckBox compressCheckBox;
+    private javax.swing.JLabel summaryLabel;
+    private javax.swing.JPanel summaryPanel;
+    private javax.swing.JButton trimButton;
+    // End of variables declaration//GEN-END:variables
+}
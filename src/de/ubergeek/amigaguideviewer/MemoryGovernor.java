@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the memory used by all caches within a budget.
+ * <p>
+ * Caches (parsed documents, rendered html, decompressed contents, search
+ * indexes ...) register with the governor and report their approximate
+ * size. When the sum exceeds the budget, or the used heap exceeds a share
+ * of the maximum heap, entries are evicted. Each cache offers its least
+ * recently used entry as candidate; among the candidates the one that is
+ * cheapest to recreate per byte and least recently used goes first.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class MemoryGovernor {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Default budget: half of the heap, at most 512 MB
+     */
+    public static final long DEFAULT_BUDGET = Math.min(512L << 20, Runtime.getRuntime().maxMemory() / 2);
+    
+    /**
+     * Default share of the maximum heap above which caches are trimmed
+     */
+    public static final double DEFAULT_HEAP_THRESHOLD = 0.85;
+    
+    /**
+     * Share of the cached size that is freed when the heap is too full;
+     * the heap usage only drops after the next garbage collection
+     */
+    private static final int HEAP_TRIM_DIVISOR = 4;
+    
+    private static final long HEAP_CHECK_INTERVAL = 2000;
+    
+    private static final MemoryGovernor SHARED = new MemoryGovernor(DEFAULT_BUDGET, DEFAULT_HEAP_THRESHOLD);
+    
+    private final List<Cache> caches = new CopyOnWriteArrayList<>();
+    
+    private final AtomicBoolean enforcing = new AtomicBoolean();
+    
+    private final AtomicLong evictionCount = new AtomicLong();
+    
+    private final AtomicLong evictedSize = new AtomicLong();
+    
+    private volatile long budget;
+    
+    private volatile double heapThreshold;
+    
+    private volatile long lastHeapTrim;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the governor used by the application's caches
+     * @return Shared governor
+     */
+    public static MemoryGovernor getShared() {
+        return SHARED;
+    }
+    
+    /**
+     * Returns the budget for all caches
+     * @return Budget in bytes
+     */
+    public long getBudget() {
+        return budget;
+    }
+    
+    /**
+     * Sets the budget for all caches
+     * @param budget Budget in bytes
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+        check();
+    }
+    
+    /**
+     * Returns the share of the maximum heap above which caches are trimmed
+     * @return Threshold between 0 and 1
+     */
+    public double getHeapThreshold() {
+        return heapThreshold;
+    }
+    
+    /**
+     * Sets the share of the maximum heap above which caches are trimmed
+     * @param heapThreshold Threshold between 0 and 1
+     */
+    public void setHeapThreshold(double heapThreshold) {
+        this.heapThreshold = heapThreshold;
+    }
+    
+    /**
+     * Returns the registered caches
+     * @return Unmodifiable list of caches
+     */
+    public List<Cache> getCaches() {
+        return List.copyOf(caches);
+    }
+    
+    /**
+     * Returns the approximate size of all registered caches
+     * @return Size in bytes
+     */
+    public long getTotalSize() {
+        long size = 0;
+        for (var cache : caches) {
+            size += cache.getSize();
+        }
+        return size;
+    }
+    
+    /**
+     * Returns the number of entries evicted by the governor
+     * @return Number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+    
+    /**
+     * Returns the approximate size of all entries evicted by the governor
+     * @return Size in bytes
+     */
+    public long getEvictedSize() {
+        return evictedSize.get();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a governor. The heap usage is checked periodically by a
+     * daemon thread.
+     * @param budget Budget for all caches in bytes
+     * @param heapThreshold Share of the maximum heap above which caches are trimmed
+     */
+    public MemoryGovernor(long budget, double heapThreshold) {
+        this.budget = budget;
+        this.heapThreshold = heapThreshold;
+        var executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "Memory governor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::check, HEAP_CHECK_INTERVAL, HEAP_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Registers a cache
+     * @param cache Cache to be governed
+     */
+    public void register(Cache cache) {
+        caches.add(cache);
+    }
+    
+    /**
+     * Removes a cache
+     * @param cache Registered cache
+     */
+    public void unregister(Cache cache) {
+        caches.remove(cache);
+    }
+    
+    /**
+     * Evicts entries if the caches exceed the budget or the heap is too
+     * full. Caches call this after they have grown; it returns immediately
+     * if another thread is already evicting.
+     */
+    public void check() {
+        var total = getTotalSize();
+        var toFree = total - budget;
+        
+        var runtime = Runtime.getRuntime();
+        var usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        var now = System.currentTimeMillis();
+        if (usedHeap > runtime.maxMemory() * heapThreshold && now - lastHeapTrim >= HEAP_CHECK_INTERVAL) {
+            lastHeapTrim = now;
+            toFree = Math.max(toFree, total / HEAP_TRIM_DIVISOR);
+        }
+        if (toFree > 0) trim(toFree);
+    }
+    
+    /**
+     * Evicts entries until the given number of bytes has been freed or no
+     * cache offers further candidates
+     * @param size Number of bytes to free
+     * @return Number of bytes freed
+     */
+    public long trim(long size) {
+        if (!enforcing.compareAndSet(false, true)) return 0;
+        long freed = 0;
+        try {
+            var now = System.nanoTime();
+            var misses = 0;
+            while (freed < size) {
+                Cache victimCache = null;
+                Candidate victim = null;
+                var victimScore = Double.MAX_VALUE;
+                for (var cache : caches) {
+                    var candidate = cache.getEvictionCandidate();
+                    if (candidate == null) continue;
+                    var score = candidate.getScore(now);
+                    if (score < victimScore) {
+                        victimCache = cache;
+                        victim = candidate;
+                        victimScore = score;
+                    }
+                }
+                if (victim == null) break;
+                var evicted = victimCache.evict(victim);
+                // Entries that are in use again are skipped; give up if that keeps happening
+                if (evicted == 0) {
+                    if (++misses > 16) break;
+                    continue;
+                }
+                freed += evicted;
+                evictionCount.incrementAndGet();
+                evictedSize.addAndGet(evicted);
+            }
+        } finally {
+            enforcing.set(false);
+        }
+        return freed;
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * A cache that is governed by the memory governor
+     */
+    public interface Cache {
+        
+        /**
+         * Returns the display name
+         * @return Name of the cache
+         */
+        String getName();
+        
+        /**
+         * Returns the number of entries
+         * @return Number of entries
+         */
+        int getEntryCount();
+        
+        /**
+         * Returns the approximate heap size of all entries
+         * @return Size in bytes
+         */
+        long getSize();
+        
+        /**
+         * Returns the entry that this cache would evict next
+         * @return Candidate or null if nothing can be evicted
+         */
+        Candidate getEvictionCandidate();
+        
+        /**
+         * Evicts an entry returned by getEvictionCandidate(). Nothing is
+         * evicted if the entry has been removed or used in the meantime.
+         * @param candidate Candidate of this cache
+         * @return Number of bytes freed
+         */
+        long evict(Candidate candidate);
+        
+    }
+    
+    
+    /**
+     * An entry that could be evicted
+     */
+    public static final class Candidate {
+        
+        private final Object key;
+        
+        private final long size;
+        
+        private final long lastAccess;
+        
+        private final long cost;
+
+        /**
+         * Creates a candidate
+         * @param key Key of the entry within its cache
+         * @param size Approximate size in bytes
+         * @param lastAccess Time of the last access (System.nanoTime())
+         * @param cost Time needed to recreate the entry in nanoseconds
+         */
+        public Candidate(Object key, long size, long lastAccess, long cost) {
+            this.key = key;
+            this.size = size;
+            this.lastAccess = lastAccess;
+            this.cost = cost;
+        }
+
+        /**
+         * Returns the key of the entry within its cache
+         * @return Key
+         */
+        public Object getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the approximate size
+         * @return Size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the time of the last access
+         * @return Time as returned by System.nanoTime()
+         */
+        public long getLastAccess() {
+            return lastAccess;
+        }
+
+        /**
+         * Returns the time needed to recreate the entry
+         * @return Time in nanoseconds
+         */
+        public long getCost() {
+            return cost;
+        }
+        
+        /**
+         * Value of keeping the entry: recreation cost per byte, divided by
+         * the time since the last access. Lower values are evicted first.
+         */
+        double getScore(long now) {
+            var age = Math.max(1, now - lastAccess) / 1e6;
+            return (cost + 1.0) / Math.max(1, size) / age;
+        }
+        
+    }
+    
+}
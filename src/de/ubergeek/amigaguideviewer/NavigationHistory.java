@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Back and forward history of the shown nodes.
+ * <p>
+ * The history is a ring buffer of a fixed capacity; once it is full, the
+ * oldest entry is dropped. Each entry keeps the caret and scroll position
+ * of its node and may keep the rendered model (the text document of the
+ * content pane), so that going back and forward does not render the node
+ * again. Only a few entries next to the current one keep their models.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class NavigationHistory {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Default maximum number of entries
+     */
+    public static final int DEFAULT_CAPACITY = 100;
+    
+    /**
+     * Default maximum number of entries with a rendered model
+     */
+    public static final int DEFAULT_MODEL_CAPACITY = 8;
+    
+    private final Entry[] entries;
+    
+    private final int modelCapacity;
+    
+    /**
+     * Index of the oldest entry in the ring buffer
+     */
+    private int first = 0;
+    
+    private int size = 0;
+    
+    /**
+     * Position of the current entry, counted from the oldest entry; -1 if
+     * the history is empty
+     */
+    private int position = -1;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the number of entries
+     * @return Number of entries
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the maximum number of entries
+     * @return Capacity
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+    
+    /**
+     * Returns the current entry
+     * @return Current entry or null if the history is empty
+     */
+    public Entry getCurrent() {
+        return (position >= 0)? get(position) : null;
+    }
+    
+    /**
+     * Checks if there is an entry before the current one
+     * @return true if back() can be called
+     */
+    public boolean canGoBack() {
+        return position > 0;
+    }
+    
+    /**
+     * Checks if there is an entry after the current one
+     * @return true if forward() can be called
+     */
+    public boolean canGoForward() {
+        return position < size - 1;
+    }
+    
+    /**
+     * Returns the number of entries that keep a rendered model
+     * @return Number of models
+     */
+    public int getModelCount() {
+        var count = 0;
+        for (int i = 0; i < size; i++) {
+            if (get(i).model != null) count++;
+        }
+        return count;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a history with the default capacities
+     */
+    public NavigationHistory() {
+        this(DEFAULT_CAPACITY, DEFAULT_MODEL_CAPACITY);
+    }
+    
+    /**
+     * Creates a history
+     * @param capacity Maximum number of entries
+     * @param modelCapacity Maximum number of entries with a rendered model
+     */
+    public NavigationHistory(int capacity, int modelCapacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        this.entries = new Entry[capacity];
+        this.modelCapacity = modelCapacity;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Adds a node after the current entry and makes it the current entry.
+     * Entries after the current one are dropped, as is the oldest entry
+     * if the history is full.
+     * @param node Shown node
+     * @return The new entry
+     */
+    public Entry push(Node node) {
+        // Drop the forward entries
+        for (int i = position + 1; i < size; i++) {
+            entries[index(i)] = null;
+        }
+        size = position + 1;
+        
+        if (size == entries.length) {
+            entries[first] = null;
+            first = (first + 1) % entries.length;
+            size--;
+        }
+        var entry = new Entry(node);
+        entries[index(size)] = entry;
+        size++;
+        position = size - 1;
+        trimModels(modelCapacity);
+        return entry;
+    }
+    
+    /**
+     * Makes the previous entry the current one
+     * @return The new current entry
+     * @throws IllegalStateException If there is no previous entry
+     */
+    public Entry back() {
+        if (!canGoBack()) throw new IllegalStateException("No previous entry");
+        position--;
+        return get(position);
+    }
+    
+    /**
+     * Makes the next entry the current one
+     * @return The new current entry
+     * @throws IllegalStateException If there is no next entry
+     */
+    public Entry forward() {
+        if (!canGoForward()) throw new IllegalStateException("No next entry");
+        position++;
+        return get(position);
+    }
+    
+    /**
+     * Stores the rendered model of an entry; models of the entries farthest
+     * from the current one are dropped if there are too many
+     * @param entry Entry of this history
+     * @param model Rendered model
+     * @param linkSignature Link signature of the node when it was rendered
+     */
+    public void setModel(Entry entry, javax.swing.text.Document model, long linkSignature) {
+        entry.model = model;
+        entry.linkSignature = linkSignature;
+        trimModels(modelCapacity);
+    }
+    
+    /**
+     * Drops rendered models until at most the given number is left; the
+     * models of the entries next to the current one are kept
+     * @param maxModels Maximum number of models to be kept
+     */
+    public void trimModels(int maxModels) {
+        var count = getModelCount();
+        while (count > maxModels) {
+            var farthest = -1;
+            for (int i = 0; i < size; i++) {
+                if (get(i).model != null && (farthest < 0 || Math.abs(i - position) > Math.abs(farthest - position))) {
+                    farthest = i;
+                }
+            }
+            get(farthest).model = null;
+            count--;
+        }
+    }
+    
+    /**
+     * Replaces the nodes of all entries, for example by the nodes of a
+     * reloaded document. Entries whose node is mapped to null are removed;
+     * rendered models are dropped.
+     * @param mapping Returns the new node of a node or null
+     */
+    public void remap(Function<Node, Node> mapping) {
+        var remapped = new ArrayList<Entry>(size);
+        var newPosition = -1;
+        for (int i = 0; i < size; i++) {
+            var entry = get(i);
+            var node = mapping.apply(entry.node);
+            if (node != null) {
+                var newEntry = new Entry(node);
+                newEntry.caretPosition = entry.caretPosition;
+                newEntry.viewPosition = entry.viewPosition;
+                remapped.add(newEntry);
+            }
+            if (i <= position) newPosition = remapped.size() - 1;
+        }
+        clear();
+        for (var entry : remapped) {
+            entries[index(size++)] = entry;
+        }
+        position = (size > 0)? Math.max(newPosition, 0) : -1;
+    }
+    
+    /**
+     * Returns all entries, the oldest first
+     * @return Entries
+     */
+    public List<Entry> getEntries() {
+        var list = new ArrayList<Entry>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+    
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            entries[index(i)] = null;
+        }
+        first = 0;
+        size = 0;
+        position = -1;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private int index(int offset) {
+        return (first + offset) % entries.length;
+    }
+    
+    private Entry get(int offset) {
+        return entries[index(offset)];
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * A shown node and the state of its view
+     */
+    public static final class Entry {
+        
+        private final Node node;
+        
+        private int caretPosition = 0;
+        
+        private Point viewPosition = new Point();
+        
+        private javax.swing.text.Document model;
+        
+        private long linkSignature;
+
+        Entry(Node node) {
+            this.node = node;
+        }
+
+        /**
+         * Returns the shown node
+         * @return Node
+         */
+        public Node getNode() {
+            return node;
+        }
+
+        /**
+         * Returns the caret position in the content pane
+         * @return Caret position
+         */
+        public int getCaretPosition() {
+            return caretPosition;
+        }
+
+        /**
+         * Returns the scroll position of the content pane
+         * @return View position
+         */
+        public Point getViewPosition() {
+            return new Point(viewPosition);
+        }
+        
+        /**
+         * Stores the caret and scroll position of the content pane
+         * @param caretPosition Caret position
+         * @param viewPosition View position
+         */
+        public void setViewState(int caretPosition, Point viewPosition) {
+            this.caretPosition = caretPosition;
+            this.viewPosition = new Point(viewPosition);
+        }
+        
+        /**
+         * Returns the rendered model if it is still valid for the node's links
+         * @param linkSignature Current link signature of the node
+         * @return Rendered model or null if it has been dropped or is outdated
+         */
+        public javax.swing.text.Document getModel(long linkSignature) {
+            return (model != null && this.linkSignature == linkSignature)? model : null;
+        }
+        
+    }
+    
+}
@@ -17,7 +17,7 @@
  */
 package de.ubergeek.amigaguideviewer;
 
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -30,13 +30,57 @@ public final class Node {
     
     private final Document document;
 
+    private int ordinal = -1;
+    
+    private int firstLinkId = -1;
+    
+    private int linkCount;
+
     private String identifier;
     
     private String title;
     
-    private String content = "";
+    /**
+     * Content until it has been moved to the content store
+     */
+    private volatile String content = "";
     
-    private final Map<String, String> attributes;
+    /**
+     * Hash of title and content; computed on first use
+     */
+    private long contentHash;
+    
+    private boolean contentHashValid;
+    
+    /**
+     * Hash of the node's source section as seen by the parser; 0 if the
+     * section can not be reused on a reparse
+     */
+    private long sectionHash;
+    
+    /**
+     * Entry of the content in the content store; also holds the render
+     * cache. Assigned when the node has been parsed or is first rendered.
+     */
+    private volatile ContentStore.Entry sharedContent;
+    
+    /**
+     * Values of the well-known attributes, indexed by NodeAttribute ordinal.
+     * Allocated on first use.
+     */
+    private String[] knownAttributes;
+
+    /**
+     * Bit mask of the well-known attributes that have been set (values may
+     * legitimately be null)
+     */
+    private int knownAttributesMask;
+
+    /**
+     * Fallback for attributes that are not covered by NodeAttribute.
+     * Allocated on first use.
+     */
+    private Map<String, String> otherAttributes;
 
     // </editor-fold>
     
@@ -51,6 +95,31 @@ public final class Node {
         return document;
     }
     
+    /**
+     * Returns the position of this node within the document
+     * @return Node ordinal
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+    
+    /**
+     * Returns the id of the first link (see Document.getLink()) contained
+     * in this node
+     * @return Link id or -1 if the node does not contain any links
+     */
+    public int getFirstLinkId() {
+        return firstLinkId;
+    }
+    
+    /**
+     * Returns the number of links contained in this node
+     * @return Number of links
+     */
+    public int getLinkCount() {
+        return linkCount;
+    }
+    
     /**
      * Return the node's identification string.
      * This identification string is case insensitive and has to be unique
@@ -88,6 +157,7 @@ public final class Node {
         } else {
             this.title = title;
         }
+        contentHashValid = false;
     }
     
     /**
@@ -95,15 +165,18 @@ public final class Node {
      * @return Content
      */
     public String getContent() {
-        return content;
+        var value = content;
+        return (value != null)? value : sharedContent.getText();
     }
     
     /**
      * Replaces the node's content with the given string
      * @param content New content
      */
-    public void setContent(String content) {
+    public synchronized void setContent(String content) {
         this.content = content;
+        contentHashValid = false;
+        sharedContent = null;
     }
 
     /**
@@ -114,6 +187,23 @@ public final class Node {
         this.setContent(getContent().concat(content));
     }
     
+    /**
+     * Returns a 64 bit hash (FNV-1a) of the node's title and content.
+     * Used to detect changed nodes when a document is reloaded.
+     * @return Content hash
+     */
+    public long getContentHash() {
+        if (!contentHashValid) {
+            var hash = 0xcbf29ce484222325L;
+            hash = hashChars(hash, title);
+            hash = hashChars(hash, "\n");
+            hash = hashChars(hash, getContent());
+            contentHash = hash;
+            contentHashValid = true;
+        }
+        return contentHash;
+    }
+    
     /**
      * Setes a node attribute.
      * @param name Attribute name
@@ -121,7 +211,27 @@ public final class Node {
      */
     public void setAttribute(String name, String value) {
         if (name == null || name.isBlank()) return;
-        attributes.put(name.toLowerCase(), value);
+        var lowerCaseName = name.toLowerCase();
+        var attribute = NodeAttribute.fromName(lowerCaseName);
+        if (attribute != null) {
+            setAttribute(attribute, value);
+        } else {
+            if (otherAttributes == null) otherAttributes = new HashMap<>(4);
+            otherAttributes.put(lowerCaseName, value);
+        }
+    }
+    
+    /**
+     * Sets a well-known node attribute.
+     * @param attribute Attribute
+     * @param value Value
+     */
+    public void setAttribute(NodeAttribute attribute, String value) {
+        if (knownAttributes == null) {
+            knownAttributes = new String[NodeAttribute.values().length];
+        }
+        knownAttributes[attribute.ordinal()] = value;
+        knownAttributesMask |= 1 << attribute.ordinal();
     }
     
     /**
@@ -131,12 +241,27 @@ public final class Node {
      */
     public String getAttributeValue(String name) {
         if (name == null || name.isBlank()) return null;
-        if (attributes.containsKey(name.toLowerCase())) {
-            return attributes.get(name);
+        var lowerCaseName = name.toLowerCase();
+        var attribute = NodeAttribute.fromName(lowerCaseName);
+        if (attribute != null) {
+            return getAttributeValue(attribute);
+        }
+        if (otherAttributes != null) {
+            return otherAttributes.get(lowerCaseName);
         }
         return null;
     }
     
+    /**
+     * Returns the value of a well-known node attribute or null
+     * @param attribute Attribute
+     * @return The attribute value or null
+     */
+    public String getAttributeValue(NodeAttribute attribute) {
+        if (knownAttributes == null) return null;
+        return knownAttributes[attribute.ordinal()];
+    }
+    
     /**
      * Checks if a node attribute is defined
      * @param name Name of the attribute
@@ -144,7 +269,21 @@ public final class Node {
      */
     public boolean isAttributeSet(String name) {
         if (name == null || name.isBlank()) return false;
-        return attributes.containsKey(name.toLowerCase());
+        var lowerCaseName = name.toLowerCase();
+        var attribute = NodeAttribute.fromName(lowerCaseName);
+        if (attribute != null) {
+            return isAttributeSet(attribute);
+        }
+        return otherAttributes != null && otherAttributes.containsKey(lowerCaseName);
+    }
+    
+    /**
+     * Checks if a well-known node attribute is defined
+     * @param attribute Attribute
+     * @return true if the attribute is defined for this node
+     */
+    public boolean isAttributeSet(NodeAttribute attribute) {
+        return (knownAttributesMask & (1 << attribute.ordinal())) != 0;
     }
     
     /**
@@ -155,8 +294,8 @@ public final class Node {
      * @return Identifier for the toc node or null
      */
     public String getTocNodeIdentifier() {
-        if (isAttributeSet("toc")) {
-            return getAttributeValue("toc");
+        if (isAttributeSet(NodeAttribute.TOC)) {
+            return getAttributeValue(NodeAttribute.TOC);
         }
         return document.getTocNodeIdentifier();
     }
@@ -168,8 +307,8 @@ public final class Node {
      * @return Identifier for the index node or null
      */
     public String getIndexNodeIdentifier() {
-        if (isAttributeSet("index")) {
-            return getAttributeValue("index");
+        if (isAttributeSet(NodeAttribute.INDEX)) {
+            return getAttributeValue(NodeAttribute.INDEX);
         }
         return document.getIndexNodeIdentifier();
     }
@@ -179,7 +318,7 @@ public final class Node {
      * @return Identifier for the next node or null
      */
     public String getPreviousNodeIdentifier() {
-        return getAttributeValue("prev");
+        return getAttributeValue(NodeAttribute.PREV);
     }
     
     /**
@@ -187,7 +326,57 @@ public final class Node {
      * @return Identifier for the previous node or null
      */
     public String getNextNodeIdentifier() {
-        return getAttributeValue("next");
+        return getAttributeValue(NodeAttribute.NEXT);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal accessors">
+    
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+    
+    void setFirstLinkId(int firstLinkId) {
+        this.firstLinkId = firstLinkId;
+    }
+    
+    void setLinkCount(int linkCount) {
+        this.linkCount = linkCount;
+    }
+    
+    long getSectionHash() {
+        return sectionHash;
+    }
+    
+    void setSectionHash(long sectionHash) {
+        this.sectionHash = sectionHash;
+    }
+    
+    /**
+     * Returns the entry of the content in the shared content store. The
+     * node's own content string is dropped, so that duplicates can be
+     * collected and compressed contents are not kept decompressed.
+     * @return Store entry
+     */
+    synchronized ContentStore.Entry getSharedContent() {
+        var entry = sharedContent;
+        if (entry == null) {
+            entry = ContentStore.getShared().intern(content);
+            sharedContent = entry;
+            content = null;
+        }
+        return entry;
+    }
+    
+    /**
+     * Returns the store entry if the content has already been moved to the
+     * content store
+     * @return Store entry or null
+     */
+    ContentStore.Entry peekSharedContent() {
+        return sharedContent;
     }
     
     // </editor-fold>
@@ -205,7 +394,6 @@ public final class Node {
         this.document = document;
         setIdentifier(identifier);
         setTitle(title);
-        attributes = new LinkedHashMap<>();
     }
 
     /**
@@ -240,12 +428,72 @@ public final class Node {
     }
     
     /**
-     * Returns an html representation of the node contents
+     * Returns an html representation of the node contents.
+     * The result is cached with the shared content until the state of the
+     * node's links changes; nodes with equal content and link states share
+     * the cached html.
      * @return Node contents rendered to html
      */
     public String toHtmlString() {
-        var nodeHtmlConverter = new NodeHtmlConverter(this);
-        return nodeHtmlConverter.toHtml();
+        var signature = getLinkSignature();
+        var entry = getSharedContent();
+        var html = entry.getRenderedHtml(signature);
+        PerformanceMetrics.getShared().recordCacheLookup(ContentStore.RENDERED_HTML_CACHE, identifier, html != null);
+        if (html == null) {
+            var start = System.nanoTime();
+            var nodeHtmlConverter = new NodeHtmlConverter(this);
+            html = nodeHtmlConverter.toHtml();
+            entry.setRenderedHtml(signature, html, System.nanoTime() - start);
+        }
+        return html;
+    }
+    
+    /**
+     * Returns a signature of the node's links: their number and which of
+     * them are broken. The rendered html only depends on the content and
+     * on this signature.
+     * @return Link signature
+     */
+    public long getLinkSignature() {
+        var signature = 0xcbf29ce484222325L ^ linkCount;
+        for (var link : document.getLinksOfNode(this)) {
+            signature = (signature ^ (link.isBroken()? 1 : 2)) * 0x100000001b3L;
+        }
+        return signature;
+    }
+    
+    /**
+     * Creates a copy of this node for a new version of the document.
+     * Content, attributes and caches are shared or copied; ordinal and link
+     * table position are assigned by the new document.
+     * @param newDocument Document the copy belongs to
+     * @return The copy
+     */
+    Node copyFor(Document newDocument) {
+        var copy = new Node(newDocument, identifier, title);
+        copy.content = content;
+        copy.contentHash = contentHash;
+        copy.contentHashValid = contentHashValid;
+        copy.sectionHash = sectionHash;
+        copy.sharedContent = sharedContent;
+        copy.knownAttributesMask = knownAttributesMask;
+        if (knownAttributes != null) copy.knownAttributes = knownAttributes.clone();
+        if (otherAttributes != null) copy.otherAttributes = new HashMap<>(otherAttributes);
+        return copy;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private static long hashChars(long hash, String value) {
+        if (value == null) return hash;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
     
     // </editor-fold>
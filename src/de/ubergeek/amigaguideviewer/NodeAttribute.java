@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+/**
+ * Well-known node attributes.
+ * Each attribute has a fixed slot within the node so that the common
+ * attributes do not need a map per node.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public enum NodeAttribute {
+
+    PREV("prev"),
+    NEXT("next"),
+    TOC("toc"),
+    INDEX("index"),
+    HELP("help"),
+    FONT("font"),
+    WORDWRAP("wordwrap"),
+    SMARTWRAP("smartwrap"),
+    KEYWORDS("keywords");
+
+    private static final NodeAttribute[] VALUES = values();
+
+    private final String name;
+
+    NodeAttribute(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the (lower case) attribute name as used in the guide source
+     * @return Attribute name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Looks up the well-known attribute with the given (lower case) name.
+     * @param name Lower case attribute name
+     * @return The matching attribute or null if the name is unknown
+     */
+    public static NodeAttribute fromName(String name) {
+        for (var attribute : VALUES) {
+            if (attribute.name.equals(name)) return attribute;
+        }
+        return null;
+    }
+
+}
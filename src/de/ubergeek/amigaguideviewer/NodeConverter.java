@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+
+/**
+ * Base class of the converters that render document nodes.
+ * <p>
+ * Reads the node contents token by token, resolves escapes, commands and
+ * links and passes them to the output methods of the subclass; the
+ * subclasses only decide how text, styles and links are written.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public abstract class NodeConverter {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Colors (pens) that can be selected with @{fg} and @{bg}
+     */
+    protected enum Pen {
+        TEXT, SHINE, SHADOW, FILL, FILLTEXT, BACKGROUND, HIGHLIGHT
+    }
+    
+    /**
+     * The node that is rendered
+     */
+    protected Node node;
+    
+    private Tokenizer tokenizer;
+    
+    private int linkIndex = 0;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the number of links written so far
+     * @return Number of links
+     */
+    public int getLinkCount() {
+        return linkIndex;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * This constructor takes the node that should be rendered as an argument
+     * @param node The document node to be rendered / converted; may be null
+     */
+    protected NodeConverter(Node node) {
+        this.node = node;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public interface">
+
+    /**
+     * Sets the node that should be rendered.
+     * @param node Reference to the node that should be rendered
+     */
+    public void setNode(Node node) {
+        this.node = node;
+        tokenizer = null;
+        linkIndex = 0;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Starts reading the node contents from the beginning
+     */
+    protected void beginConversion() {
+        tokenizer = (node == null)? null : new Tokenizer(node.getContent());
+        linkIndex = 0;
+    }
+    
+    /**
+     * Reads the next token and passes it to the output methods
+     * @return false if the end of the node has been reached
+     * @throws IOException if an output method could not write
+     */
+    protected boolean convertNextToken() throws IOException {
+        if (tokenizer == null) return false;
+        if (!tokenizer.parseNextToken()) {
+            tokenizer = null;
+            return false;
+        }
+        var token = tokenizer.getToken();
+        
+        // Single @ sign (neither quoted nor part of a command)
+        if (token.equals("@")) {
+            appendText(token);
+        }
+
+        // Escaped back slash
+        else if (token.equals("\\\\")) {
+            appendText("\\");
+        }
+
+        // Escaped @ sign
+        else if (token.equals("\\@")) {
+            appendText("@");
+        }
+
+        // Commands
+        else if (token.startsWith("@{")) {
+            if (convertSimpleCommand(token)) return true;
+            if (convertLinkCommand(token)) return true;
+            if (convertColorCommand(token)) return true;
+            appendUnknownCommand(token);
+        }
+
+        // Normal content
+        else {
+            appendText(token);
+        }
+        return true;
+    }
+    
+    /**
+     * Writes content text
+     * @param text Text without commands
+     * @throws IOException if the text could not be written
+     */
+    protected abstract void appendText(String text) throws IOException;
+    
+    /**
+     * Writes a command without arguments (b, ub, i, ui, u, uu, plain, body,
+     * code, amigaguide ...)
+     * @param name Lower case name of the command
+     * @return false if the command is not supported
+     * @throws IOException if the output could not be written
+     */
+    protected abstract boolean appendCommand(String name) throws IOException;
+    
+    /**
+     * Writes a color change
+     * @param foreground true for @{fg}, false for @{bg}
+     * @param pen Selected color
+     * @throws IOException if the output could not be written
+     */
+    protected abstract void appendColor(boolean foreground, Pen pen) throws IOException;
+    
+    /**
+     * Writes a link
+     * @param link Link from the link table of the document; if the node is
+     *             not part of a link table the link is parsed from the command
+     * @param index Index of the link within the node, beginning with 0
+     * @throws IOException if the output could not be written
+     */
+    protected abstract void appendLink(Link link, int index) throws IOException;
+    
+    /**
+     * Handles a command that is not supported; it is dropped by default
+     * @param token The complete command
+     * @throws IOException if the output could not be written
+     */
+    protected void appendUnknownCommand(String token) throws IOException {
+    }
+    
+    private boolean convertSimpleCommand(String token) throws IOException {
+        var end = token.length() - 1;
+        if (end < 3 || end > 12 || token.charAt(end) != '}') return false;
+        return appendCommand(token.substring(2, end).toLowerCase());
+    }
+    
+    private boolean convertLinkCommand(String token) throws IOException {
+        var link = Link.parseCommandToken(token);
+        if (link == null) return false;
+        
+        // Links are referenced by their index within the node; the index
+        // matches the order in which the parser has filled the link table
+        var documentLink = node.getDocument().getLink(node, linkIndex);
+        if (documentLink != null) link = documentLink;
+        
+        appendLink(link, linkIndex++);
+        return true;
+    }
+    
+    /**
+     * Converts @{fg color} and @{bg color}; the color name is everything
+     * after the white space following fg or bg
+     */
+    private boolean convertColorCommand(String token) throws IOException {
+        var end = token.length() - 1;
+        if (end < 6 || token.charAt(end) != '}' || !Tokenizer.isWhitespace(token.charAt(4))) return false;
+        var command = token.substring(2, 4).toLowerCase();
+        if (!command.equals("fg") && !command.equals("bg")) return false;
+        if (token.indexOf('}', 2) != end) return false;
+        
+        // At least one character is left for the color name
+        var nameStart = 5;
+        while (nameStart < end - 1 && Tokenizer.isWhitespace(token.charAt(nameStart))) nameStart++;
+        
+        appendColor(command.equals("fg"), getPen(token.substring(nameStart, end)));
+        return true;
+    }
+    
+    /**
+     * Maps a color name to a pen; unknown names select the text color
+     */
+    private static Pen getPen(String name) {
+        return switch (name.toLowerCase()) {
+            case "shine" -> Pen.SHINE;
+            case "shadow" -> Pen.SHADOW;
+            case "fill" -> Pen.FILL;
+            case "filltext" -> Pen.FILLTEXT;
+            case "background", "back" -> Pen.BACKGROUND;
+            case "highlight" -> Pen.HIGHLIGHT;
+            default -> Pen.TEXT;
+        };
+    }
+    
+    // </editor-fold>
+    
+}
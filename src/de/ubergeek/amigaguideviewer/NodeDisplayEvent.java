@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event: the html of a node has been put into the content
+ * pane on the event dispatch thread
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+@Name("de.ubergeek.amigaguideviewer.NodeDisplay")
+@Label("Node Display")
+@Category({ "AmigaGuide Viewer", "User Interface" })
+@StackTrace(false)
+final class NodeDisplayEvent extends jdk.jfr.Event {
+
+    @Label("Node")
+    String node;
+    
+    @Label("Html Size")
+    @DataAmount
+    long htmlSize;
+    
+}
@@ -17,19 +17,17 @@
  */
 package de.ubergeek.amigaguideviewer;
 
-import java.net.URLEncoder;
-import java.nio.charset.Charset;
-import java.util.regex.Pattern;
+import java.io.IOException;
 
 /**
  * Generates html code from document nodes
  * @author André Gewert <agewert@ubergeek.de>
  */
-public class NodeHtmlConverter {
+public class NodeHtmlConverter extends NodeConverter {
 
     // <editor-fold desc="Properties">
     
-    private Node node;
+    private StringBuilder sb;
     
     private boolean isIOpen = false;
     
@@ -58,7 +56,7 @@ public class NodeHtmlConverter {
      * @param node The document node to be rendered / converted
      */
     public NodeHtmlConverter(Node node) {
-        this.node = node;
+        super(node);
     }
     
     // </editor-fold>
@@ -66,14 +64,6 @@ public class NodeHtmlConverter {
     
     // <editor-fold desc="Public interface">
 
-    /**
-     * Sets the node that should be rendered.
-     * @param node Reference to the node that should be rendered
-     */
-    public void setNode(Node node) {
-        this.node = node;
-    }
-    
     /**
      * Renders the node contents to html and returns the results as a string
      * @return HTML representation of the node contents
@@ -81,47 +71,43 @@ public class NodeHtmlConverter {
     public String toHtml() {
         if (node == null) return "";
         
-        var sb = new StringBuilder();
-        var tokenizer = new Tokenizer(node.getContent());
+        var event = new RenderEvent();
+        event.begin();
+        var start = System.nanoTime();
+        sb = new StringBuilder();
+        isIOpen = false;
+        isBOpen = false;
+        isUOpen = false;
+        isCodeOpen = false;
+        openFontTags = 0;
+        var content = node.getContent();
 
-        sb.append("<html><head><style type=\"text/css\">a { background-color: #eeeeee !important; color: #486fb5 !important; } span.code { }</style></head><body><a name=\"top\"></a><pre>");
+        sb.append("<html><head><style type=\"text/css\">a { background-color: #eeeeee !important; color: #486fb5 !important; } a.broken { color: #b54848 !important; } span.code { }</style></head><body><a name=\"top\"></a><pre>");
 
         // Translate content to html
-        while (tokenizer.parseNextToken()) {
-            var token = tokenizer.getToken();
-            
-            // Single @ sign (neither quoted nor part of a command)
-            if (token.equals("@")) {
-                sb.append(token);
-            }
-            
-            // Escaped back slash
-            else if (token.equals("\\\\")) {
-                sb.append("\\");
-            }
-            
-            // Escaped @ sign
-            else if (token.equals("\\@")) {
-                sb.append("@");
-            }
-            
-            // Commands
-            else if (token.length() > 1 && token.substring(0, 2).equals("@{")) {
-                if (replaceSimpleCommands(token, sb)) continue;
-                if (replaceLinkCommand(token, sb)) continue;
-                if (replaceColorCommand(token, sb)) continue;
-                System.out.println("Unknown command: " + token);
-            }
-            
-            // Normal content
-            else {
-                sb.append(escapeHtmlChars(token));
+        beginConversion();
+        try {
+            while (convertNextToken()) {
             }
+        } catch (IOException ex) {
+            // StringBuilder does not throw
         }
         
-        closeFontTags(sb);
+        closeFontTags();
         sb.append("</pre></body></html>");
-        return sb.toString();
+        var html = sb.toString();
+        sb = null;
+        PerformanceMetrics.getShared().recordRender(System.nanoTime() - start);
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.node = node.getIdentifier();
+            event.contentSize = content.length();
+            event.outputSize = html.length();
+            event.links = getLinkCount();
+            event.commit();
+        }
+        return html;
     }
     
     // </editor-fold>
@@ -129,134 +115,64 @@ public class NodeHtmlConverter {
     
     // <editor-fold desc="Internal methods">
 
+    @Override
+    protected void appendText(String text) {
+        sb.append(escapeHtmlChars(text));
+    }
+    
+    @Override
+    protected void appendUnknownCommand(String token) {
+        System.out.println("Unknown command: " + token);
+    }
+    
     private String escapeHtmlChars(String input) {
         input = input.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
         return input;
     }
     
-    private boolean replaceColorCommand(String token, StringBuilder currentStringBuilder) {
-        var colorPattern = Pattern.compile("^@\\{(bg|fg)\\s+([^\\}]+)\\}$", Pattern.CASE_INSENSITIVE);
-        var matcher = colorPattern.matcher(token);
-        if (!matcher.matches()) return false;
-
-        var htmlColor = replaceColorNameByColorCode(matcher.group(2));
-        
-        switch (matcher.group(1).toLowerCase()) {
-            case "fg" -> {
-                currentStringBuilder.append("<font color=\"")
-                    .append(htmlColor)
-                    .append("\">");
-            }
-            
-            case "bg" -> {
-                currentStringBuilder.append("<font bgcolor=\"")
-                    .append(htmlColor)
-                    .append("\">");
-            }
-        }
+    @Override
+    protected void appendColor(boolean foreground, Pen pen) {
+        sb.append(foreground? "<font color=\"" : "<font bgcolor=\"")
+            .append(getColorCode(pen))
+            .append("\">");
         openFontTags++;
-        return true;
     }
     
-    private void closeFontTags(StringBuilder currentStringBuilder) {
+    private void closeFontTags() {
         while (openFontTags > 0) {
-            currentStringBuilder.append("</font>");
+            sb.append("</font>");
             openFontTags--;
         }
     }
     
-    private boolean replaceLinkCommand(String token, StringBuilder currentStringBuilder) {
-        var linkPattern = Pattern.compile("^@\\{(\\\"([^\\\"]*)\\\"|\\S+?)\\s+(alink|link|close|rx|rxs|system|quit)(\\s+(\\\"([^\\\"]*)\\\"|\\S+?)(\\s+\\d+)?)?\\s*\\}$", Pattern.CASE_INSENSITIVE);
-        var matcher = linkPattern.matcher(token);
-        if (!matcher.matches()) return false;
-        
-        String htmlClass = "link";
-        String target;
-        String label;
-        String protocol;
-        
-        switch (matcher.group(3).toLowerCase()) {
-            
-            // Remark: optional target line number is ignored atm
-            case "link", "alink", "rx", "rxs", "system" -> {
-
-                protocol = matcher.group(3).toLowerCase();
-                if (matcher.group(2) != null) {
-                    label = matcher.group(2);
-                } else {
-                    label = matcher.group(1);
-                }
-                if (matcher.group(6) != null) {
-                    target = matcher.group(6);
-                } else {
-                    target = matcher.group(5);
-                }
-            }
-            
-            default -> {
-                protocol = "quit";
-                target = "";
-                label = matcher.group(2);
-            }
-        }
-        
-        currentStringBuilder.append("<a href=\"")
-            .append(protocol)
-            .append("://")
-            .append(URLEncoder.encode(target, Charset.defaultCharset()))
+    @Override
+    protected void appendLink(Link link, int index) {
+        sb.append("<a href=\"link:")
+            .append(index)
             .append("\" class=\"")
-            .append(htmlClass)
+            .append(link.isBroken()? "broken" : "link")
             .append("\">")
-            .append(escapeHtmlChars(label))
+            .append(escapeHtmlChars(link.getLabel()))
             .append("</a>");
-        
-        return true;
     }
     
-    private String replaceColorNameByColorCode(String code) {
-        switch (code.toLowerCase()) {
-            case "text" -> {
-                return "#000000";
-            }
-            
-            case "shine" -> {
-                //return "#ffffff";
-                return "#aaaaaa";
-            }
-            
-            case "shadow" -> {
-                return "#7c7b7b";
-            }
-            
-            case "fill" -> {
-                return "#486fb5";
-            }
-            
-            case "filltext" -> {
-                return "#ffffff";
-            }
-            
-            case "background", "back" -> {
-                return "#ffffff";
-            }
-            
-            case "highlight" -> {
-                return "#486fb5";
-            }
-        }
-        return "#000000";
+    private String getColorCode(Pen pen) {
+        return switch (pen) {
+            case TEXT -> "#000000";
+            case SHINE -> "#aaaaaa";
+            case SHADOW -> "#7c7b7b";
+            case FILL, HIGHLIGHT -> "#486fb5";
+            case FILLTEXT, BACKGROUND -> "#ffffff";
+        };
     }
     
-    private boolean replaceSimpleCommands(String token, StringBuilder currentStringBuilder) {
-        var simpleCommandPattern = Pattern.compile("^@\\{(i|ui|b|ub|u|uu|plain|amigaguide|body|code)\\}$", Pattern.CASE_INSENSITIVE);
-        var matcher = simpleCommandPattern.matcher(token);
-
-        if (!matcher.matches()) return false;
-        switch (matcher.group(1).toLowerCase()) {
+    @Override
+    protected boolean appendCommand(String name) {
+        switch (name) {
             // Italic text
             case "i" -> {
                 if (!isIOpen) {
-                    currentStringBuilder.append("<i>");
+                    sb.append("<i>");
                     isIOpen = true;
                 }
             }
@@ -264,7 +180,7 @@ public class NodeHtmlConverter {
             // End italic text
             case "ui" -> {
                 if (isIOpen) {
-                    currentStringBuilder.append("</i>");
+                    sb.append("</i>");
                     isIOpen = false;
                 }
             }
@@ -272,7 +188,7 @@ public class NodeHtmlConverter {
             // Begin bold text
             case "b" -> {
                 if (!isBOpen) {
-                    currentStringBuilder.append("<b>");
+                    sb.append("<b>");
                     isBOpen = true;
                 }
             }
@@ -280,7 +196,7 @@ public class NodeHtmlConverter {
             // End bold text
             case "ub" -> {
                 if (isBOpen) {
-                    currentStringBuilder.append("</b>");
+                    sb.append("</b>");
                     isBOpen = false;
                 }
             }
@@ -288,7 +204,7 @@ public class NodeHtmlConverter {
             // Begin underlined text
             case "u" -> {
                 if (!isUOpen) {
-                    currentStringBuilder.append("<u>");
+                    sb.append("<u>");
                     isUOpen = true;
                 }
             }
@@ -296,45 +212,49 @@ public class NodeHtmlConverter {
             // End underlined text
             case "uu" -> {
                 if (isUOpen) {
-                    currentStringBuilder.append("</u>");
+                    sb.append("</u>");
                     isUOpen = false;
                 }
             }
             
             case "amigaguide" -> {
-                currentStringBuilder.append("<font style=\"font-variant: small-caps; font-weight: bold\">AmigaGuide&reg;</font>");
+                sb.append("<font style=\"font-variant: small-caps; font-weight: bold\">AmigaGuide&reg;</font>");
             }
             
             // Close all formattings
             case "plain", "body" -> {
                 // TODO we should remember the order of the opening tags!
                 if (isBOpen) {
-                    currentStringBuilder.append("</b>");
+                    sb.append("</b>");
                     isBOpen = false;
                 }
                 if (isIOpen) {
-                    currentStringBuilder.append("</i>");
+                    sb.append("</i>");
                     isIOpen = false;
                 }
                 if (isUOpen) {
-                    currentStringBuilder.append("</u>");
+                    sb.append("</u>");
                     isUOpen = false;
                 }
                 if (isCodeOpen) {
-                    currentStringBuilder.append("</span>");
+                    sb.append("</span>");
                     isCodeOpen = false;
                 }
-                closeFontTags(currentStringBuilder);
+                closeFontTags();
             }
             
             // Code blocks
             case "code" -> {
                 if (!isCodeOpen) {
-                    closeFontTags(currentStringBuilder);
-                    currentStringBuilder.append("<span class=\"code\">");
+                    closeFontTags();
+                    sb.append("<span class=\"code\">");
                     isCodeOpen = true;
                 }
             }
+            
+            default -> {
+                return false;
+            }
         }
         return true;
     }
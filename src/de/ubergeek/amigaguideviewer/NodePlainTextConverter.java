@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+
+/**
+ * Generates plain text (without any markup) from document nodes.
+ * Link commands are replaced by their labels; all other commands are removed.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public class NodePlainTextConverter extends NodeConverter {
+
+    // <editor-fold desc="Properties">
+    
+    private StringBuilder sb;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Empty constructor
+     */
+    public NodePlainTextConverter() {
+        this(null);
+    }
+
+    /**
+     * This constructor takes the node that should be converted as an argument
+     * @param node The document node to be converted
+     */
+    public NodePlainTextConverter(Node node) {
+        super(node);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public interface">
+    
+    /**
+     * Converts the node contents to plain text
+     * @return Plain text representation of the node contents
+     */
+    public String toPlainText() {
+        if (node == null) return "";
+        
+        sb = new StringBuilder(node.getContent().length());
+        beginConversion();
+        try {
+            while (convertNextToken()) {
+            }
+        } catch (IOException ex) {
+            // StringBuilder does not throw
+        }
+        var text = sb.toString();
+        sb = null;
+        return text;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    @Override
+    protected void appendText(String text) {
+        sb.append(text);
+    }
+    
+    @Override
+    protected boolean appendCommand(String name) {
+        return false;
+    }
+    
+    @Override
+    protected void appendColor(boolean foreground, Pen pen) {
+    }
+    
+    @Override
+    protected void appendLink(Link link, int index) {
+        sb.append(link.getLabel());
+    }
+    
+    // </editor-fold>
+    
+}
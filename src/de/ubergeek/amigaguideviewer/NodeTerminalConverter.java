@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+
+/**
+ * Generates text for terminals from document nodes.
+ * <p>
+ * The output is either plain text or text with ANSI escape sequences (SGR)
+ * for bold, italic, underlined and colored text. Links are numbered in the
+ * order of the link table of the node, beginning with 1, and are written as
+ * [number]label. The node is written token by token to an Appendable, so
+ * the first lines of a huge node are written before the rest of it has
+ * been tokenized.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public class NodeTerminalConverter extends NodeConverter {
+
+    // <editor-fold desc="Properties">
+    
+    private static final String CSI = "\u001b[";
+    
+    private Appendable out;
+    
+    private boolean ansiEnabled;
+    
+    private boolean isIOpen = false;
+    
+    private boolean isBOpen = false;
+    
+    private boolean isUOpen = false;
+    
+    private int foregroundCode = 0;
+    
+    private int backgroundCode = 0;
+    
+    private boolean isStyled = false;
+    
+    private boolean isFinished = false;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Checks if ANSI escape sequences are written
+     * @return true if the text is styled with escape sequences
+     */
+    public boolean isAnsiEnabled() {
+        return ansiEnabled;
+    }
+    
+    /**
+     * Enables or disables ANSI escape sequences
+     * @param ansiEnabled true to write styled text, false for plain text
+     */
+    public void setAnsiEnabled(boolean ansiEnabled) {
+        this.ansiEnabled = ansiEnabled;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Empty constructor
+     */
+    public NodeTerminalConverter() {
+        this(null, false);
+    }
+
+    /**
+     * This constructor takes the node that should be rendered as an argument
+     * @param node The document node to be rendered / converted
+     * @param ansiEnabled true to write styled text, false for plain text
+     */
+    public NodeTerminalConverter(Node node, boolean ansiEnabled) {
+        super(node);
+        this.ansiEnabled = ansiEnabled;
+        setNode(node);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public interface">
+
+    /**
+     * Sets the node that should be rendered and starts at its beginning.
+     * @param node Reference to the node that should be rendered
+     */
+    @Override
+    public final void setNode(Node node) {
+        super.setNode(node);
+        beginConversion();
+        isIOpen = false;
+        isBOpen = false;
+        isUOpen = false;
+        foregroundCode = 0;
+        backgroundCode = 0;
+        isStyled = false;
+        isFinished = false;
+    }
+    
+    /**
+     * Writes the (rest of the) node contents
+     * @param out Destination of the text
+     * @throws IOException if the destination could not be written
+     */
+    public void render(Appendable out) throws IOException {
+        while (renderNextToken(out)) {
+        }
+    }
+    
+    /**
+     * Renders the node contents and returns the results as a string
+     * @return Text representation of the node contents
+     */
+    public String toText() {
+        if (node == null) return "";
+        
+        var sb = new StringBuilder(node.getContent().length());
+        try {
+            render(sb);
+        } catch (IOException ex) {
+            // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Writes the next token of the node contents. When the end of the node
+     * is reached the text style is reset.
+     * @param out Destination of the text
+     * @return false if the end of the node has been reached
+     * @throws IOException if the destination could not be written
+     */
+    public boolean renderNextToken(Appendable out) throws IOException {
+        if (isFinished) return false;
+        this.out = out;
+        if (convertNextToken()) return true;
+        
+        isFinished = true;
+        if (isStyled) out.append(CSI).append("0m");
+        isStyled = false;
+        return false;
+    }
+    
+    /**
+     * Returns the escape sequence that selects the current text style. It
+     * always starts with a reset, so it restores the style after other
+     * output has been written in between.
+     * @return Escape sequence or an empty string if ANSI output is disabled
+     */
+    public String getStyleSequence() {
+        if (!ansiEnabled) return "";
+        
+        var sb = new StringBuilder(CSI).append('0');
+        if (isBOpen) sb.append(";1");
+        if (isIOpen) sb.append(";3");
+        if (isUOpen) sb.append(";4");
+        if (foregroundCode != 0) sb.append(';').append(foregroundCode);
+        if (backgroundCode != 0) sb.append(';').append(backgroundCode);
+        return sb.append('m').toString();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+
+    /**
+     * Appends content text; escape characters of the guide are not passed
+     * to the terminal
+     */
+    @Override
+    protected void appendText(String text) throws IOException {
+        if (text.indexOf('\u001b') < 0) {
+            out.append(text);
+        } else {
+            out.append(text.replace('\u001b', '?'));
+        }
+    }
+    
+    private void updateStyle() throws IOException {
+        if (!ansiEnabled) return;
+        out.append(getStyleSequence());
+        isStyled = isBOpen || isIOpen || isUOpen || foregroundCode != 0 || backgroundCode != 0;
+    }
+    
+    @Override
+    protected void appendColor(boolean foreground, Pen pen) throws IOException {
+        if (foreground) {
+            foregroundCode = getColorCode(pen, 30);
+        } else {
+            backgroundCode = getColorCode(pen, 40);
+        }
+        updateStyle();
+    }
+    
+    @Override
+    protected void appendLink(Link link, int index) throws IOException {
+        if (ansiEnabled) {
+            out.append(CSI).append(link.isBroken()? "0;4;31m" : "0;4;34m");
+        }
+        out.append('[').append(Integer.toString(index + 1)).append(']');
+        appendText(link.getLabel());
+        if (ansiEnabled) {
+            out.append(getStyleSequence());
+        }
+    }
+    
+    /**
+     * Maps the pens to the colors of the terminal; text and background use
+     * the default colors of the terminal
+     * @param base 30 for the foreground, 40 for the background
+     * @return SGR color parameter or 0 for the default color
+     */
+    private int getColorCode(Pen pen, int base) {
+        return switch (pen) {
+            case SHINE -> base + 67;
+            case SHADOW -> base + 60;
+            case FILL, HIGHLIGHT -> base + 4;
+            case FILLTEXT -> base + 7;
+            case TEXT, BACKGROUND -> 0;
+        };
+    }
+    
+    @Override
+    protected boolean appendCommand(String name) throws IOException {
+        switch (name) {
+            case "i" -> isIOpen = true;
+            case "ui" -> isIOpen = false;
+            case "b" -> isBOpen = true;
+            case "ub" -> isBOpen = false;
+            case "u" -> isUOpen = true;
+            case "uu" -> isUOpen = false;
+            
+            case "amigaguide" -> {
+                if (ansiEnabled) out.append(CSI).append("1m");
+                out.append("AmigaGuide(R)");
+                if (ansiEnabled) out.append(getStyleSequence());
+                return true;
+            }
+            
+            // Close all formattings
+            case "plain", "body" -> {
+                isIOpen = false;
+                isBOpen = false;
+                isUOpen = false;
+                foregroundCode = 0;
+                backgroundCode = 0;
+            }
+            
+            // Code blocks are written without colors
+            case "code" -> {
+                foregroundCode = 0;
+                backgroundCode = 0;
+            }
+            
+            default -> {
+                return false;
+            }
+        }
+        updateStyle();
+        return true;
+    }
+    
+    // </editor-fold>
+    
+}
@@ -18,20 +18,38 @@
 package de.ubergeek.amigaguideviewer;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 /**
  * Simple AmigaGuide viewer - parser component
+ * <p>
+ * Parsing can be cancelled by cancelling the LoadScheduler task or by
+ * interrupting the parsing thread: the parser checks for cancellation
+ * regularly and throws a CancellationException.
  * @author André Gewert <agewert@ubergeek.de>
  * @todo Parse should check if file starts with @database command
  */
 public class Parser {
 
+    // <editor-fold desc="Properties">
+    
+    private static final long SECTION_HASH_SEED = 0xcbf29ce484222325L;
+    
+    /**
+     * Number of lines parsed between two checks for cancellation
+     */
+    private static final int CANCELLATION_CHECK_INTERVAL = 1024;
+    
+    // </editor-fold>
+    
+    
     // <editor-fold desc="Public methods">
     
     /**
@@ -44,8 +62,10 @@ public class Parser {
      * @throws IOException If the file could not be read
      */
     public Document parseAmigaGuideFromFile(Path file) throws IOException {
-        String contents = Files.readString(file, StandardCharsets.ISO_8859_1);
-        return parseAmigaGuide(contents);
+        String contents = readFile(file);
+        var document = parseAmigaGuide(contents);
+        document.setFile(file);
+        return document;
     }
 
     /**
@@ -54,46 +74,236 @@ public class Parser {
      * @return Parsed document
      */
     public Document parseAmigaGuide(String content) {
-        var lines = new ArrayList<String>(Arrays.asList(content.split("\\n")));
+        var event = new ParseEvent();
+        event.begin();
+        var start = System.nanoTime();
+        var document = parse(content, true, null);
+        buildLinkTable(document, Map.of());
+        shareContents(document, Map.of());
+        finishParse(event, start, content, document, 0, false);
+        return document;
+    }
+    
+    /**
+     * Parses a new version of an already parsed AmigaGuide file.
+     * @see #reparseAmigaGuide(de.ubergeek.amigaguideviewer.Document, java.lang.String) 
+     * @param previous Previously parsed version of the file
+     * @param file Path to the file
+     * @return Parsed document
+     * @throws IOException If the file could not be read
+     */
+    public Document reparseAmigaGuideFromFile(Document previous, Path file) throws IOException {
+        String contents = readFile(file);
+        var document = reparseAmigaGuide(previous, contents);
+        document.setFile(file);
+        return document;
+    }
+    
+    /**
+     * Parses a new version of an already parsed AmigaGuide file.
+     * The source section of each node (from its @node line up to the next
+     * @node line) is hashed; sections whose hash matches a node of the
+     * previous version are not parsed again. Their nodes are copied
+     * including content, attributes, links and rendered html, so the cost of
+     * a reparse is mainly that of the changed nodes. The previous document is
+     * not modified.
+     * @param previous Previously parsed version of the file
+     * @param content The file content as a string
+     * @return Parsed document
+     */
+    public Document reparseAmigaGuide(Document previous, String content) {
+        var event = new ParseEvent();
+        event.begin();
+        var start = System.nanoTime();
+        var reusedNodes = new IdentityHashMap<Node, Node>();
+        var document = parse(content, true, previous, reusedNodes);
+        buildLinkTable(document, reusedNodes);
+        shareContents(document, reusedNodes);
+        finishParse(event, start, content, document, reusedNodes.size(), false);
+        return document;
+    }
+    
+    /**
+     * Parses an AmigaGuide file from a stream, e.g. an archive entry.
+     * The stream is read to its end but not closed.
+     * @param input Stream with the file content
+     * @return Parsed document
+     * @throws IOException If the stream could not be read
+     */
+    public Document parseAmigaGuideFromStream(InputStream input) throws IOException {
+        return parseAmigaGuide(readStream(input));
+    }
+    
+    /**
+     * Parses a new version of an already parsed AmigaGuide file from a stream.
+     * The stream is read to its end but not closed.
+     * @see #reparseAmigaGuide(de.ubergeek.amigaguideviewer.Document, java.lang.String) 
+     * @param previous Previously parsed version of the file
+     * @param input Stream with the file content
+     * @return Parsed document
+     * @throws IOException If the stream could not be read
+     */
+    public Document reparseAmigaGuideFromStream(Document previous, InputStream input) throws IOException {
+        return reparseAmigaGuide(previous, readStream(input));
+    }
+    
+    /**
+     * Parses only the header-level data of an AmigaGuide file: global
+     * attributes (@database, @author, @(c), @master ...) and the nodes with
+     * their identifiers, titles and attributes. Node bodies are skipped and
+     * no link table is built.
+     * @param file Path to the file
+     * @return Document with empty nodes
+     * @throws IOException If the file could not be read
+     */
+    public Document parseAmigaGuideHeaderFromFile(Path file) throws IOException {
+        String contents = readFile(file);
+        var event = new ParseEvent();
+        event.begin();
+        var start = System.nanoTime();
+        var document = parse(contents, false, null);
+        finishParse(event, start, contents, document, 0, true);
+        document.setFile(file);
+        return document;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private String readFile(Path file) throws IOException {
+        var event = new FileReadEvent();
+        event.begin();
+        var contents = Files.readString(file, StandardCharsets.ISO_8859_1);
+        if (event.shouldCommit()) {
+            event.path = file.toString();
+            event.bytes = contents.length();
+            event.commit();
+        }
+        return contents;
+    }
+    
+    private String readStream(InputStream input) throws IOException {
+        var event = new FileReadEvent();
+        event.begin();
+        var contents = new String(input.readAllBytes(), StandardCharsets.ISO_8859_1);
+        if (event.shouldCommit()) {
+            event.path = "";
+            event.bytes = contents.length();
+            event.commit();
+        }
+        return contents;
+    }
+    
+    /**
+     * Stores the parse time in the document and the metrics and commits the
+     * parse event if a recording wants it
+     */
+    private void finishParse(ParseEvent event, long start, String content, Document document, int reusedNodes, boolean headerOnly) {
+        event.end();
+        var nanos = System.nanoTime() - start;
+        document.setParseStatistics(content.length(), nanos);
+        if (!headerOnly) PerformanceMetrics.getShared().recordParse(content.length(), nanos);
+        if (!event.shouldCommit()) return;
+        event.bytes = content.length();
+        event.nodes = document.getNodeCount();
+        event.links = document.getLinkCount();
+        event.reusedNodes = reusedNodes;
+        event.headerOnly = headerOnly;
+        event.commit();
+    }
+    
+    private Document parse(String content, boolean includeBodies, Document previous) {
+        return parse(content, includeBodies, previous, new IdentityHashMap<>());
+    }
+    
+    private Document parse(String content, boolean includeBodies, Document previous, Map<Node, Node> reusedNodes) {
+        var lines = content.split("\\n");
         var document = new Document();
         
+        // Unchanged sections of the previous version, by section hash
+        var reusableNodes = new HashMap<Long, Node>();
+        if (previous != null) {
+            for (var node : previous.getNodesList()) {
+                if (node.getSectionHash() != 0) reusableNodes.putIfAbsent(node.getSectionHash(), node);
+            }
+        }
+        
         Node currentNode = null;
+        var body = new StringBuilder();
+        var sectionHash = SECTION_HASH_SEED;
+        var sectionReusable = false;
 
-        for (String line : lines) {
+        for (int i = 0; i < lines.length; i++) {
+            if (i % CANCELLATION_CHECK_INTERVAL == 0) checkCancelled();
+            var line = lines[i];
+            
+            if (isNodeLine(line)) {
+                finishBody(currentNode, body);
+                finishSection(currentNode, sectionHash, sectionReusable);
+                sectionHash = SECTION_HASH_SEED;
+                sectionReusable = includeBodies;
+                
+                if (!reusableNodes.isEmpty()) {
+                    var end = findSectionEnd(lines, i);
+                    var reusableNode = reusableNodes.remove(hashLines(lines, i, end));
+                    if (reusableNode != null) {
+                        currentNode = document.addNode(reusableNode.copyFor(document));
+                        reusedNodes.put(currentNode, reusableNode);
+                        sectionReusable = false;
+                        i = end - 1;
+                        continue;
+                    }
+                }
+            }
+            sectionHash = hashLine(sectionHash, line);
             
             // Line commands
-            if (line.matches("^@(\\w+).*")) {
+            if (isCommandLine(line)) {
                 var command = parseCommandLine(line);
+                if (command.getName() == null) continue;
                  
                 switch (command.getName()) {
                     
                     // Start new node
                     case "node" -> {
+                        finishBody(currentNode, body);
+                        if (command.getArgument(0) == null) {
+                            currentNode = null;
+                            continue;
+                        }
                         currentNode = document.createAndAddNode(
                             command.getArgument(0), command.getArgument(1)
                         );
                     }
 
                     // No need to do anything (for now)                    
-                    case "endnode", "database" -> {
+                    case "endnode" -> {
                     }
                     
-                    // Remarks should be ignored
-                    case "rem", "remark" -> {
+                    // Remarks and the version string should be ignored
+                    case "rem", "remark", "$ver" -> {
                     }
                     
                     // Global attributes
-                    case "master", "width", "author", "(c)" -> {
-                        System.out.println(command.getName());
-                        document.setAttribute(command.getName(), command.getArgument(1));
+                    case "database", "master", "width" -> {
+                        document.setAttribute(command.getName(), command.getArgument(0));
+                        sectionReusable = false;
+                    }
+                    
+                    // Global attributes which take the whole line as value
+                    case "author", "(c)" -> {
+                        document.setAttribute(command.getName(), command.getArgumentString());
+                        sectionReusable = false;
                     }
                     
                     // Local OR global attributes
-                    case "prev", "next", "toc", "index" -> {
+                    case "prev", "next", "toc", "index", "help", "font", "wordwrap", "smartwrap" -> {
                         if (currentNode != null) {
-                            currentNode.setAttribute(command.getName(), command.getArgument(1));
+                            currentNode.setAttribute(command.getName(), command.getArgument(0));
                         } else {
-                            document.setAttribute(command.getName(), command.getArgument(1));
+                            document.setAttribute(command.getName(), command.getArgument(0));
                         }
                     }
                     
@@ -106,45 +316,244 @@ public class Parser {
             
             // Content lines
             else {
-                if (currentNode != null) {
-                    currentNode.appendContent(line + System.lineSeparator());
+                if (currentNode != null && includeBodies) {
+                    body.append(line).append(System.lineSeparator());
                 }
             }
         }
+        finishBody(currentNode, body);
+        finishSection(currentNode, sectionHash, sectionReusable);
         
         return document;
     }
     
-    // </editor-fold>
+    /**
+     * Moves the bodies of new nodes to the content store, where they are
+     * shared with equal nodes of other documents. Done after the link table
+     * has been built so that compressed contents are not decompressed again.
+     */
+    private void shareContents(Document document, Map<Node, Node> reusedNodes) {
+        for (var node : document.getNodesList()) {
+            if (!reusedNodes.containsKey(node)) node.getSharedContent();
+        }
+    }
     
+    /**
+     * Appends the collected content lines to the node. Lines are collected
+     * per node so that building the content takes linear time.
+     */
+    private void finishBody(Node node, StringBuilder body) {
+        if (node != null && body.length() > 0) node.appendContent(body.toString());
+        body.setLength(0);
+    }
     
-    // <editor-fold desc="Internal methods">
+    /**
+     * Stores the section hash of a parsed node so that a later reparse can
+     * reuse the node. Sections with global commands are never reused because
+     * their side effects on the document would be lost.
+     */
+    private void finishSection(Node node, long sectionHash, boolean reusable) {
+        if (node == null || !reusable || node.getSectionHash() != 0) return;
+        node.setSectionHash(sectionHash == 0 ? 1 : sectionHash);
+    }
+    
+    private static boolean isNodeLine(String line) {
+        return line.regionMatches(true, 0, "@node", 0, 5)
+            && (line.length() == 5 || Character.isWhitespace(line.charAt(5)));
+    }
+    
+    private static int findSectionEnd(String[] lines, int start) {
+        int end = start + 1;
+        while (end < lines.length && !isNodeLine(lines[end])) end++;
+        return end;
+    }
+    
+    private static long hashLines(String[] lines, int start, int end) {
+        var hash = SECTION_HASH_SEED;
+        for (int i = start; i < end; i++) {
+            hash = hashLine(hash, lines[i]);
+        }
+        return hash;
+    }
+    
+    /**
+     * FNV-1a over the characters of the line and a line break
+     */
+    private static long hashLine(long hash, String line) {
+        for (int i = 0; i < line.length(); i++) {
+            hash = (hash ^ line.charAt(i)) * 0x100000001b3L;
+        }
+        return (hash ^ '\n') * 0x100000001b3L;
+    }
+    
+    /**
+     * Throws a CancellationException if the parsing has been cancelled
+     */
+    private static void checkCancelled() {
+        if (LoadScheduler.isCancellationRequested()) {
+            throw new CancellationException("Parsing has been cancelled");
+        }
+    }
+    
+    private void buildLinkTable(Document document, Map<Node, Node> reusedNodes) {
+        var tokenizer = new Tokenizer();
+        for (int i = 0; i < document.getNodeCount(); i++) {
+            checkCancelled();
+            var node = document.getNodeByOrdinal(i);
+            
+            // Links of unchanged nodes are taken from the previous version
+            var previousNode = reusedNodes.get(node);
+            if (previousNode != null) {
+                for (var link : previousNode.getDocument().getLinksOfNode(previousNode)) {
+                    document.addLink(node, new Link(link.getLabel(), link.getType(), link.getTarget(), link.getLine()));
+                }
+                continue;
+            }
+            
+            tokenizer.setContent(node.getContent());
+            while (tokenizer.parseNextToken()) {
+                var token = tokenizer.getToken();
+                if (token.length() > 1 && token.startsWith("@{")) {
+                    var link = Link.parseCommandToken(token);
+                    if (link != null) {
+                        document.addLink(node, link);
+                    }
+                }
+            }
+        }
+        document.resolveLinks();
+    }
     
+    /**
+     * Checks if the line starts with a command name (@ followed by word
+     * characters, parentheses or $) and contains no line terminators.
+     * Unlike plain word characters this also accepts @(c) and @$VER: as
+     * line commands, so the copyright can be stored as a document attribute.
+     */
+    private static boolean isCommandLine(String line) {
+        if (line.length() < 2 || line.charAt(0) != '@' || !isNameChar(line.charAt(1))) return false;
+        for (int i = 2; i < line.length(); i++) {
+            if (isLineTerminator(line.charAt(i))) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Parses a line command: the command name followed by up to two
+     * arguments, each of them quoted or a single word. The first argument
+     * is the first word or quoted string that is followed by a valid rest
+     * of the line, the second argument is the quoted string or word at the
+     * end of the line. Each candidate is checked in constant time, so the
+     * line is parsed in linear time without backtracking.
+     * If the line is malformed a command without name is returned.
+     */
     private Command parseCommandLine(String line) {
         var command = new Command();
-        var lineCommandPattern = Pattern.compile("^@([\\w\\(\\)\\$]+)(.+?(\\\"([^\\\"]*)\\\"|\\S+)(.+?(\\\"([^\\\"]*)\\\"|\\w+))?)?$", Pattern.CASE_INSENSITIVE);
-        var matcher = lineCommandPattern.matcher(line);
+        var length = line.length();
+        var nameEnd = 1;
+        while (nameEnd < length && isNameChar(line.charAt(nameEnd))) nameEnd++;
+        if (nameEnd == 1) return command;
+        if (nameEnd == length) {
+            command.setName(line.substring(1));
+            return command;
+        }
         
-        if (matcher.matches()) {
-            
-            command.setName(matcher.group(1));
+        // The second argument ends the line: either a quoted string or a
+        // run of word characters; it has to start after the first argument
+        var lastArgumentStart = -1;
+        var lastArgumentQuoted = false;
+        var last = line.charAt(length - 1);
+        if (last == '"') {
+            lastArgumentStart = line.lastIndexOf('"', length - 2);
+            lastArgumentQuoted = true;
+        } else if (isWordChar(last)) {
+            lastArgumentStart = length - 1;
+            while (lastArgumentStart > nameEnd && isWordChar(line.charAt(lastArgumentStart - 1))) lastArgumentStart--;
+        }
+        
+        // The first argument starts at least one character after the name
+        var quoteEnd = nameEnd;
+        var wordEnd = nameEnd;
+        for (int start = nameEnd + 1; start < length; start++) {
+            var c = line.charAt(start);
             
-            if (matcher.group(4) != null) {
-                command.addArgument(matcher.group(4));
-            } else if (matcher.group(3) != null) {
-                command.addArgument(matcher.group(3));
+            // Quoted argument, followed by the end of the line or the second argument
+            if (c == '"') {
+                if (quoteEnd <= start) {
+                    quoteEnd = line.indexOf('"', start + 1);
+                    if (quoteEnd < 0) quoteEnd = length;
+                }
+                if (quoteEnd < length) {
+                    var end = quoteEnd + 1;
+                    var secondStart = findSecondArgument(line, end, lastArgumentStart, lastArgumentQuoted);
+                    if (end == length || secondStart >= 0) {
+                        return createCommand(line, nameEnd, line.substring(start + 1, quoteEnd), secondStart, lastArgumentQuoted);
+                    }
+                }
             }
             
-            if (matcher.group(7) != null) {
-                command.addArgument(matcher.group(7));
-            } else if (matcher.group(6) != null) {
-                command.addArgument(matcher.group(6));
+            // Single word, the longest one that is followed by the end of
+            // the line or the second argument
+            if (Tokenizer.isWhitespace(c)) continue;
+            if (wordEnd <= start) {
+                wordEnd = start + 1;
+                while (wordEnd < length && !Tokenizer.isWhitespace(line.charAt(wordEnd))) wordEnd++;
+            }
+            if (wordEnd == length) {
+                return createCommand(line, nameEnd, line.substring(start), -1, false);
+            }
+            var end = Math.min(wordEnd, maxSecondArgumentOffset(lastArgumentStart, lastArgumentQuoted));
+            if (end > start) {
+                var secondStart = findSecondArgument(line, end, lastArgumentStart, lastArgumentQuoted);
+                return createCommand(line, nameEnd, line.substring(start, end), secondStart, lastArgumentQuoted);
             }
         }
-        
         return command;
     }
     
+    /**
+     * Returns the start of the second argument if it can follow an argument
+     * ending at the given position (at least one separating character),
+     * otherwise -1
+     */
+    private static int findSecondArgument(String line, int end, int lastArgumentStart, boolean lastArgumentQuoted) {
+        if (lastArgumentStart < 0 || end >= line.length()) return -1;
+        var start = lastArgumentQuoted? lastArgumentStart : Math.max(lastArgumentStart, end + 1);
+        return (start >= end + 1 && start < line.length())? start : -1;
+    }
+    
+    /**
+     * Returns the largest end position of a first argument that can be
+     * followed by the second argument
+     */
+    private static int maxSecondArgumentOffset(int lastArgumentStart, boolean lastArgumentQuoted) {
+        if (lastArgumentStart < 0) return -1;
+        return lastArgumentQuoted? lastArgumentStart - 1 : Integer.MAX_VALUE;
+    }
+    
+    private Command createCommand(String line, int nameEnd, String firstArgument, int secondStart, boolean secondQuoted) {
+        var command = new Command();
+        command.setName(line.substring(1, nameEnd));
+        command.setArgumentString(line.substring(nameEnd).trim());
+        command.addArgument(firstArgument);
+        if (secondStart >= 0) {
+            command.addArgument(secondQuoted? line.substring(secondStart + 1, line.length() - 1) : line.substring(secondStart));
+        }
+        return command;
+    }
+    
+    private static boolean isNameChar(char c) {
+        return isWordChar(c) || c == '(' || c == ')' || c == '$';
+    }
+    
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+    
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+    
     // </editor-fold>
     
 }
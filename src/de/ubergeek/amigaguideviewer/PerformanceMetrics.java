@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the metrics panel of the main window.
+ * The counters are updated by the background workers (parsing, rendering,
+ * cache lookups) without locks and read by the user interface.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class PerformanceMetrics {
+
+    // <editor-fold desc="Properties">
+    
+    private static final PerformanceMetrics SHARED = new PerformanceMetrics();
+    
+    private final LongAdder parseCount = new LongAdder();
+    
+    private final LongAdder parseNanos = new LongAdder();
+    
+    private final LongAdder parsedBytes = new LongAdder();
+    
+    private final LongAdder renderCount = new LongAdder();
+    
+    private final LongAdder renderNanos = new LongAdder();
+    
+    private final Map<String, CacheCounter> caches = new ConcurrentHashMap<>();
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the metrics shared by all windows
+     * @return Shared metrics
+     */
+    public static PerformanceMetrics getShared() {
+        return SHARED;
+    }
+    
+    public long getParseCount() {
+        return parseCount.sum();
+    }
+    
+    /**
+     * Returns the time spent parsing over all documents
+     * @return Time in nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+    
+    public long getParsedBytes() {
+        return parsedBytes.sum();
+    }
+    
+    public long getRenderCount() {
+        return renderCount.sum();
+    }
+    
+    /**
+     * Returns the time spent rendering nodes to html
+     * @return Time in nanoseconds
+     */
+    public long getRenderNanos() {
+        return renderNanos.sum();
+    }
+    
+    /**
+     * Returns the share of lookups in the given cache that were hits
+     * @param cache Cache name
+     * @return Hit ratio (0..1) or -1 if there were no lookups yet
+     */
+    public double getHitRatio(String cache) {
+        var counter = caches.get(cache);
+        if (counter == null) return -1;
+        var hits = counter.hits.sum();
+        var total = hits + counter.misses.sum();
+        return (total == 0)? -1 : (double)hits / total;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private PerformanceMetrics() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Counts a parsed document
+     * @param bytes Size of the guide source
+     * @param nanos Parse time in nanoseconds
+     */
+    public void recordParse(long bytes, long nanos) {
+        parseCount.increment();
+        parsedBytes.add(bytes);
+        parseNanos.add(nanos);
+    }
+    
+    /**
+     * Counts a node rendered to html
+     * @param nanos Render time in nanoseconds
+     */
+    public void recordRender(long nanos) {
+        renderCount.increment();
+        renderNanos.add(nanos);
+    }
+    
+    /**
+     * Counts a cache lookup and reports it to the flight recorder
+     * @param cache Cache name
+     * @param key Looked up key; only used for the flight recorder
+     * @param hit true if the value has been found
+     */
+    public void recordCacheLookup(String cache, String key, boolean hit) {
+        var counter = caches.computeIfAbsent(cache, name -> new CacheCounter());
+        (hit? counter.hits : counter.misses).increment();
+        CacheLookupEvent.emit(cache, key, hit);
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * Hits and misses of one cache
+     */
+    private static final class CacheCounter {
+        
+        private final LongAdder hits = new LongAdder();
+        
+        private final LongAdder misses = new LongAdder();
+        
+    }
+    
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+/**
+ * A single result of a full-text search
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class SearchHit {
+
+    // <editor-fold desc="Properties">
+    
+    private final Node node;
+    
+    private final float score;
+    
+    private final int offset;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+
+    /**
+     * Returns the matching node
+     * @return Node
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * Returns the relevance score (higher is better)
+     * @return Score
+     */
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the offset of the first match within the node's plain text
+     * @return Offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a new search hit
+     * @param node Matching node
+     * @param score Relevance score
+     * @param offset Offset of the first match within the node's plain text
+     */
+    public SearchHit(Node node, float score, int offset) {
+        this.node = node;
+        this.score = score;
+        this.offset = offset;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Returns the node's display title; used by the search results list
+     * @return String representation
+     */
+    @Override
+    public String toString() {
+        return node.toString();
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Full-text index over the plain text of all nodes of a document.
+ * The index maps each term to a compressed postings list. For every node
+ * containing the term the list holds the node ordinal (delta to the previous
+ * node), the number of occurrences and the occurrence offsets within the
+ * node's plain text (delta coded).
+ * Instances are immutable and can be shared between threads once built.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class SearchIndex {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Longer terms are not indexed
+     */
+    static final int MAX_TERM_LENGTH = 64;
+    
+    /**
+     * Maximum number of index terms a prefix query is expanded to
+     */
+    private static final int MAX_PREFIX_EXPANSION = 512;
+    
+    private final Document document;
+    
+    private final String[] terms;
+    
+    private final byte[][] postings;
+    
+    private final int[] documentFrequencies;
+    
+    private final long buildTime;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the indexed document
+     * @return Document
+     */
+    public Document getDocument() {
+        return document;
+    }
+    
+    /**
+     * Returns the number of distinct terms
+     * @return Number of terms
+     */
+    public int getTermCount() {
+        return terms.length;
+    }
+    
+    /**
+     * Returns the time that was needed to build the index
+     * @return Time in nanoseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private SearchIndex(Document document, String[] terms, byte[][] postings, int[] documentFrequencies, long buildTime) {
+        this.document = document;
+        this.terms = terms;
+        this.postings = postings;
+        this.documentFrequencies = documentFrequencies;
+        this.buildTime = buildTime;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Builds the index for the given document.
+     * The build checks for cancellation of the current LoadScheduler task
+     * or thread after each node and throws a CancellationException.
+     * @param document Document to be indexed
+     * @return The index
+     */
+    public static SearchIndex build(Document document) {
+        return build(document, null);
+    }
+    
+    /**
+     * Builds the index for a new version of an already indexed document.
+     * The postings of nodes whose identifier and content hash did not change
+     * are copied from the previous index (with the node ordinals remapped);
+     * only the other nodes are converted to plain text and split into terms.
+     * @param document Document to be indexed
+     * @param previous Index of the previous version; null builds from scratch
+     * @return The index
+     */
+    public static SearchIndex build(Document document, SearchIndex previous) {
+        var start = System.nanoTime();
+        var builders = new HashMap<String, TermPostingsBuilder>();
+        var touched = new ArrayList<TermPostingsBuilder>();
+        var converter = new NodePlainTextConverter();
+        
+        // Old ordinal -> new ordinal for unchanged nodes
+        var reusedOrdinals = new int[0];
+        var reused = new boolean[document.getNodeCount()];
+        if (previous != null) {
+            var previousDocument = previous.document;
+            reusedOrdinals = new int[previousDocument.getNodeCount()];
+            for (int ordinal = 0; ordinal < reusedOrdinals.length; ordinal++) {
+                var oldNode = previousDocument.getNodeByOrdinal(ordinal);
+                var newNode = document.getNodeByIdentifier(oldNode.getIdentifier());
+                if (newNode != null && !reused[newNode.getOrdinal()] && newNode.getContentHash() == oldNode.getContentHash()) {
+                    reusedOrdinals[ordinal] = newNode.getOrdinal();
+                    reused[newNode.getOrdinal()] = true;
+                } else {
+                    reusedOrdinals[ordinal] = -1;
+                }
+            }
+        }
+        
+        // Collect the postings of the unchanged nodes per new ordinal, so
+        // that they can be fed to the builders in ordinal order
+        var reusedPostings = new ArrayList<List<int[]>>(document.getNodeCount());
+        for (int ordinal = 0; ordinal < document.getNodeCount(); ordinal++) {
+            reusedPostings.add(reused[ordinal]? new ArrayList<>() : null);
+        }
+        if (previous != null) {
+            for (int t = 0; t < previous.terms.length; t++) {
+                var reader = new CompressedIntList.Reader(previous.postings[t], 0, previous.postings[t].length);
+                int oldOrdinal = 0;
+                while (reader.hasNext()) {
+                    oldOrdinal += reader.next();
+                    var frequency = reader.next();
+                    // Term index followed by the occurrence offsets
+                    var offsets = new int[frequency + 1];
+                    offsets[0] = t;
+                    int offset = 0;
+                    for (int i = 1; i <= frequency; i++) {
+                        offset += reader.next();
+                        offsets[i] = offset;
+                    }
+                    var newOrdinal = reusedOrdinals[oldOrdinal];
+                    if (newOrdinal >= 0) {
+                        reusedPostings.get(newOrdinal).add(offsets);
+                    }
+                }
+            }
+        }
+        
+        for (int ordinal = 0; ordinal < document.getNodeCount(); ordinal++) {
+            if (LoadScheduler.isCancellationRequested()) {
+                throw new CancellationException("Indexing has been cancelled");
+            }
+            
+            final int nodeOrdinal = ordinal;
+            if (reused[ordinal]) {
+                for (var entry : reusedPostings.get(ordinal)) {
+                    var builder = builders.computeIfAbsent(previous.terms[entry[0]], term -> new TermPostingsBuilder());
+                    for (int i = 1; i < entry.length; i++) {
+                        builder.addOccurrence(nodeOrdinal, entry[i]);
+                    }
+                    builder.flush();
+                }
+                reusedPostings.set(ordinal, null);
+                continue;
+            }
+            
+            converter.setNode(document.getNodeByOrdinal(ordinal));
+            forEachTerm(converter.toPlainText(), (term, offset) -> {
+                var builder = builders.get(term);
+                if (builder == null) {
+                    builder = new TermPostingsBuilder();
+                    builders.put(term, builder);
+                }
+                if (builder.addOccurrence(nodeOrdinal, offset)) {
+                    touched.add(builder);
+                }
+            });
+            
+            for (var builder : touched) {
+                builder.flush();
+            }
+            touched.clear();
+        }
+        
+        var terms = builders.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        var postings = new byte[terms.length][];
+        var documentFrequencies = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            var builder = builders.get(terms[i]);
+            postings[i] = builder.postings.toByteArray();
+            documentFrequencies[i] = builder.documentFrequency;
+        }
+        return new SearchIndex(document, terms, postings, documentFrequencies, System.nanoTime() - start);
+    }
+    
+    /**
+     * Searches for nodes containing all terms of the given query.
+     * The last query term is treated as a prefix unless the query ends with
+     * a non-term character, which allows search-as-you-type.
+     * Hits are ranked by tf-idf.
+     * @param query Query string
+     * @param maxHits Maximum number of hits to be returned
+     * @return Ranked hits (best first)
+     */
+    public List<SearchHit> search(String query, int maxHits) {
+        if (query == null) return List.of();
+        var queryTerms = new ArrayList<String>();
+        forEachTerm(query, (term, offset) -> queryTerms.add(term));
+        if (queryTerms.isEmpty() || terms.length == 0) return List.of();
+        
+        var lastIsPrefix = isTermChar(query.charAt(query.length() - 1));
+        var nodeCount = document.getNodeCount();
+        var scores = new float[nodeCount];
+        var matchedTerms = new int[nodeCount];
+        var firstOffsets = new int[nodeCount];
+        Arrays.fill(firstOffsets, -1);
+        
+        for (int q = 0; q < queryTerms.size(); q++) {
+            var term = queryTerms.get(q);
+            int from, to;
+            if (q == queryTerms.size() - 1 && lastIsPrefix) {
+                from = lowerBound(term);
+                to = from;
+                while (to < terms.length && to - from < MAX_PREFIX_EXPANSION && terms[to].startsWith(term)) to++;
+            } else {
+                from = Arrays.binarySearch(terms, term);
+                if (from < 0) return List.of();
+                to = from + 1;
+            }
+            if (from == to) return List.of();
+            
+            for (int t = from; t < to; t++) {
+                var idf = (float)Math.log(1.0 + (double)nodeCount / documentFrequencies[t]);
+                var reader = new CompressedIntList.Reader(postings[t], 0, postings[t].length);
+                int ordinal = 0;
+                while (reader.hasNext()) {
+                    ordinal += reader.next();
+                    var frequency = reader.next();
+                    var offset = reader.next();
+                    for (int i = 1; i < frequency; i++) reader.next();
+                    
+                    // Only count each query term once per node
+                    if (matchedTerms[ordinal] == q) {
+                        matchedTerms[ordinal] = q + 1;
+                        if (q == 0 || offset < firstOffsets[ordinal]) firstOffsets[ordinal] = offset;
+                    }
+                    if (matchedTerms[ordinal] == q + 1) {
+                        scores[ordinal] += (1.0f + (float)Math.log(frequency)) * idf;
+                    }
+                }
+            }
+        }
+        
+        var hits = new ArrayList<SearchHit>();
+        for (int ordinal = 0; ordinal < nodeCount; ordinal++) {
+            if (matchedTerms[ordinal] == queryTerms.size()) {
+                hits.add(new SearchHit(document.getNodeByOrdinal(ordinal), scores[ordinal], firstOffsets[ordinal]));
+            }
+        }
+        hits.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+        if (hits.size() > maxHits) {
+            return new ArrayList<>(hits.subList(0, maxHits));
+        }
+        return hits;
+    }
+    
+    /**
+     * Returns the approximate heap size of the index in bytes
+     * @return Size estimate
+     */
+    public long getEstimatedSize() {
+        long size = 64L + terms.length * 16L;
+        for (int i = 0; i < terms.length; i++) {
+            size += 56 + terms[i].length() + postings[i].length;
+        }
+        return size;
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Receives the terms found by forEachTerm()
+     */
+    interface TermConsumer {
+        void accept(String term, int offset);
+    }
+    
+    /**
+     * Splits the given text into lower case terms (runs of letters and
+     * digits). Terms longer than MAX_TERM_LENGTH are skipped.
+     * @param text Text to be split
+     * @param consumer Receives each term with its offset within the text
+     */
+    static void forEachTerm(CharSequence text, TermConsumer consumer) {
+        var length = text.length();
+        var buffer = new char[MAX_TERM_LENGTH];
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTermChar(text.charAt(i))) i++;
+            var start = i;
+            while (i < length && isTermChar(text.charAt(i))) {
+                if (i - start < MAX_TERM_LENGTH) {
+                    buffer[i - start] = Character.toLowerCase(text.charAt(i));
+                }
+                i++;
+            }
+            var termLength = i - start;
+            if (termLength > 0 && termLength <= MAX_TERM_LENGTH) {
+                consumer.accept(new String(buffer, 0, termLength), start);
+            }
+        }
+    }
+    
+    static boolean isTermChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+    
+    private int lowerBound(String term) {
+        int low = 0, high = terms.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (terms[middle].compareTo(term) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Collects the postings of a single term while the nodes are scanned in
+     * ordinal order. Offsets of the current node are buffered until the node
+     * is finished because the occurrence count precedes them.
+     */
+    private static final class TermPostingsBuilder {
+        
+        private final CompressedIntList postings = new CompressedIntList();
+        
+        private int documentFrequency;
+        
+        private int lastFlushedOrdinal;
+        
+        private int currentOrdinal = -1;
+        
+        private int[] offsets = new int[4];
+        
+        private int offsetCount;
+        
+        /**
+         * Records an occurrence
+         * @return true if this is the first occurrence within the node
+         */
+        boolean addOccurrence(int ordinal, int offset) {
+            var first = ordinal != currentOrdinal;
+            if (first) {
+                currentOrdinal = ordinal;
+                offsetCount = 0;
+            }
+            if (offsetCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[offsetCount++] = offset;
+            return first;
+        }
+        
+        void flush() {
+            postings.add(currentOrdinal - lastFlushedOrdinal);
+            postings.add(offsetCount);
+            int previousOffset = 0;
+            for (int i = 0; i < offsetCount; i++) {
+                postings.add(offsets[i] - previousOffset);
+                previousOffset = offsets[i];
+            }
+            lastFlushedOrdinal = currentOrdinal;
+            documentFrequency++;
+            if (offsets.length > 64) offsets = new int[4];
+        }
+        
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * State of the main window that is restored on the next start: the open
+ * documents, their history with caret and scroll positions and the shown
+ * tab.
+ * <p>
+ * The shown node of the selected document is stored rendered, together
+ * with the size and modification time of the file it was rendered from.
+ * As long as the file did not change, the node can be shown right away
+ * while the document itself is still being parsed.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class Session {
+
+    // <editor-fold desc="Properties">
+    
+    private static final int MAGIC = 0x41475653;
+    
+    private static final int VERSION = 1;
+    
+    private final List<Tab> tabs;
+    
+    private final int selectedTab;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Accessors">
+    
+    /**
+     * Returns the open documents in the order of their tabs
+     * @return Unmodifiable list of tabs
+     */
+    public List<Tab> getTabs() {
+        return tabs;
+    }
+    
+    /**
+     * Returns the index of the shown tab
+     * @return Index of the tab; -1 if no document is open
+     */
+    public int getSelectedTab() {
+        return selectedTab;
+    }
+    
+    /**
+     * Returns the default location of the session file
+     * @return Path of the session file
+     */
+    public static Path getDefaultSessionFile() {
+        return Settings.getDataDirectory().resolve("session");
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a session
+     * @param tabs Open documents
+     * @param selectedTab Index of the shown tab; -1 if no document is open
+     */
+    public Session(List<Tab> tabs, int selectedTab) {
+        this.tabs = Collections.unmodifiableList(new ArrayList<>(tabs));
+        this.selectedTab = (selectedTab >= 0 && selectedTab < tabs.size())? selectedTab : (tabs.isEmpty()? -1 : 0);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Reads a session file
+     * @param sessionFile Path of the session file
+     * @return The session or null if the file does not exist
+     * @throws IOException If the file could not be read or has an invalid format
+     */
+    public static Session read(Path sessionFile) throws IOException {
+        if (!Files.exists(sessionFile)) return null;
+        // No count or length can be larger than the file itself
+        var fileSize = Files.size(sessionFile);
+        try (var input = new DataInputStream(Files.newInputStream(sessionFile))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Invalid session file: " + sessionFile);
+            }
+            var selectedTab = input.readInt();
+            var count = readCount(input, fileSize, sessionFile);
+            if (selectedTab < (count > 0? 0 : -1) || selectedTab >= count) {
+                throw new IOException("Invalid selected tab in session file: " + sessionFile);
+            }
+            var tabs = new ArrayList<Tab>(count);
+            for (int t = 0; t < count; t++) {
+                var file = readPath(input, sessionFile);
+                var size = input.readLong();
+                var lastModified = input.readLong();
+                var historyPosition = input.readInt();
+                var entryCount = readCount(input, fileSize, sessionFile);
+                if (historyPosition < -1 || historyPosition >= entryCount) {
+                    throw new IOException("Invalid history position in session file: " + sessionFile);
+                }
+                var history = new ArrayList<HistoryEntry>(entryCount);
+                for (int i = 0; i < entryCount; i++) {
+                    history.add(new HistoryEntry(input.readUTF(), input.readInt(), input.readInt(), input.readInt()));
+                }
+                var htmlLength = input.readInt();
+                String html = null;
+                if (htmlLength >= 0) {
+                    if (htmlLength > fileSize) throw new IOException("Invalid html length in session file: " + sessionFile);
+                    var bytes = new byte[htmlLength];
+                    input.readFully(bytes);
+                    html = new String(bytes, StandardCharsets.UTF_8);
+                }
+                tabs.add(new Tab(file, size, lastModified, history, historyPosition, html));
+            }
+            return new Session(tabs, selectedTab);
+        }
+    }
+    
+    /**
+     * Writes the session to the given file.
+     * The file is written to a temporary file first and then moved into place.
+     * @param sessionFile Path of the session file
+     * @throws IOException If the file could not be written
+     */
+    public void write(Path sessionFile) throws IOException {
+        if (sessionFile.getParent() != null) {
+            Files.createDirectories(sessionFile.getParent());
+        }
+        var temporaryFile = sessionFile.resolveSibling(sessionFile.getFileName() + ".tmp");
+        try (var output = new DataOutputStream(Files.newOutputStream(temporaryFile))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(selectedTab);
+            output.writeInt(tabs.size());
+            for (var tab : tabs) {
+                output.writeUTF(tab.file.toString());
+                output.writeLong(tab.fileSize);
+                output.writeLong(tab.lastModified);
+                output.writeInt(tab.historyPosition);
+                output.writeInt(tab.history.size());
+                for (var entry : tab.history) {
+                    output.writeUTF(entry.nodeIdentifier);
+                    output.writeInt(entry.caretPosition);
+                    output.writeInt(entry.viewX);
+                    output.writeInt(entry.viewY);
+                }
+                if (tab.html != null) {
+                    var bytes = tab.html.getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                } else {
+                    output.writeInt(-1);
+                }
+            }
+        }
+        Files.move(temporaryFile, sessionFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private static int readCount(DataInputStream input, long limit, Path sessionFile) throws IOException {
+        var count = input.readInt();
+        if (count < 0 || count > limit) throw new IOException("Invalid count in session file: " + sessionFile);
+        return count;
+    }
+    
+    private static Path readPath(DataInputStream input, Path sessionFile) throws IOException {
+        try {
+            return Path.of(input.readUTF());
+        } catch (InvalidPathException ex) {
+            throw new IOException("Invalid path in session file: " + sessionFile, ex);
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    /**
+     * An open document
+     */
+    public static final class Tab {
+        
+        private final Path file;
+        
+        private final long fileSize;
+        
+        private final long lastModified;
+        
+        private final List<HistoryEntry> history;
+        
+        private final int historyPosition;
+        
+        private final String html;
+
+        /**
+         * Creates a tab
+         * @param file Path of the guide (may be a path into an archive)
+         * @param fileSize Size of the file on disk when the html was rendered
+         * @param lastModified Modification time of the file on disk when the html was rendered
+         * @param history History entries, the oldest first
+         * @param historyPosition Index of the current history entry
+         * @param html Rendered current node; null if it is not stored
+         */
+        public Tab(Path file, long fileSize, long lastModified, List<HistoryEntry> history, int historyPosition, String html) {
+            this.file = file;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.history = Collections.unmodifiableList(new ArrayList<>(history));
+            this.historyPosition = historyPosition;
+            this.html = html;
+        }
+
+        /**
+         * Returns the path of the guide
+         * @return Path of the guide
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the history entries
+         * @return Entries, the oldest first
+         */
+        public List<HistoryEntry> getHistory() {
+            return history;
+        }
+
+        /**
+         * Returns the index of the current history entry
+         * @return Index; -1 if the history is empty
+         */
+        public int getHistoryPosition() {
+            return historyPosition;
+        }
+        
+        /**
+         * Returns the rendered current node if the file on disk did not
+         * change since it was rendered
+         * @param sourceFile File on disk that contains the guide
+         * @return Html or null if it is not stored or outdated
+         */
+        public String getHtml(Path sourceFile) {
+            if (html == null) return null;
+            try {
+                return (Files.size(sourceFile) == fileSize && Files.getLastModifiedTime(sourceFile).toMillis() == lastModified)? html : null;
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+        
+    }
+    
+    
+    /**
+     * A node of the history and the caret and scroll position of its view
+     */
+    public static final class HistoryEntry {
+        
+        private final String nodeIdentifier;
+        
+        private final int caretPosition;
+        
+        private final int viewX;
+        
+        private final int viewY;
+
+        /**
+         * Creates a history entry
+         * @param nodeIdentifier Identifier of the node
+         * @param caretPosition Caret position
+         * @param viewX Horizontal scroll position
+         * @param viewY Vertical scroll position
+         */
+        public HistoryEntry(String nodeIdentifier, int caretPosition, int viewX, int viewY) {
+            this.nodeIdentifier = nodeIdentifier;
+            this.caretPosition = caretPosition;
+            this.viewX = viewX;
+            this.viewY = viewY;
+        }
+
+        /**
+         * Returns the identifier of the node
+         * @return Node identifier
+         */
+        public String getNodeIdentifier() {
+            return nodeIdentifier;
+        }
+
+        /**
+         * Returns the caret position
+         * @return Caret position
+         */
+        public int getCaretPosition() {
+            return caretPosition;
+        }
+
+        /**
+         * Returns the horizontal scroll position
+         * @return X position
+         */
+        public int getViewX() {
+            return viewX;
+        }
+
+        /**
+         * Returns the vertical scroll position
+         * @return Y position
+         */
+        public int getViewY() {
+            return viewY;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.prefs.Preferences;
+
+/**
+ * Access to persistent user settings and the application's data directory
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class Settings {
+
+    // <editor-fold desc="Properties">
+    
+    private static final String KEY_LIBRARY_FOLDERS = "libraryFolders";
+    
+    private static final String KEY_COMPRESS_CONTENTS = "compressContents";
+    
+    private static final String KEY_SHOW_METRICS = "showMetrics";
+    
+    private static final Preferences PREFERENCES = Preferences.userNodeForPackage(Settings.class);
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private Settings() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Returns the directory for caches and other application data.
+     * The directory is not created by this method.
+     * @return Data directory (~/.amigaguideviewer)
+     */
+    public static Path getDataDirectory() {
+        return Path.of(System.getProperty("user.home"), ".amigaguideviewer");
+    }
+    
+    /**
+     * Returns the folders that are scanned for the library
+     * @return List of folders
+     */
+    public static List<Path> getLibraryFolders() {
+        var folders = new ArrayList<Path>();
+        var value = PREFERENCES.get(KEY_LIBRARY_FOLDERS, "");
+        for (var folder : value.split(File.pathSeparator)) {
+            if (!folder.isBlank()) folders.add(Path.of(folder));
+        }
+        return folders;
+    }
+    
+    /**
+     * Sets the folders that are scanned for the library
+     * @param folders List of folders
+     */
+    public static void setLibraryFolders(List<Path> folders) {
+        var sb = new StringBuilder();
+        for (var folder : folders) {
+            if (sb.length() > 0) sb.append(File.pathSeparator);
+            sb.append(folder.toString());
+        }
+        PREFERENCES.put(KEY_LIBRARY_FOLDERS, sb.toString());
+    }
+    
+    /**
+     * Checks if node contents should be kept compressed in memory
+     * @return true if compression is enabled
+     */
+    public static boolean isContentCompressionEnabled() {
+        return PREFERENCES.getBoolean(KEY_COMPRESS_CONTENTS, false);
+    }
+    
+    /**
+     * Enables or disables compressed node contents
+     * @param enabled true to keep node contents compressed
+     */
+    public static void setContentCompressionEnabled(boolean enabled) {
+        PREFERENCES.putBoolean(KEY_COMPRESS_CONTENTS, enabled);
+    }
+    
+    /**
+     * Checks if the metrics panel in the status bar should be shown
+     * @return true if the metrics are shown
+     */
+    public static boolean isMetricsPanelVisible() {
+        return PREFERENCES.getBoolean(KEY_SHOW_METRICS, false);
+    }
+    
+    /**
+     * Shows or hides the metrics panel in the status bar
+     * @param visible true to show the metrics
+     */
+    public static void setMetricsPanelVisible(boolean visible) {
+        PREFERENCES.putBoolean(KEY_SHOW_METRICS, visible);
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.time.Duration;
+import java.time.Instant;
+import javax.swing.SwingUtilities;
+
+/**
+ * Startup time measurement, enabled with the --startup-timing argument.
+ * <p>
+ * Prints the time of each startup phase since the start of the JVM and
+ * since main() has been entered. The most important one is the time to
+ * the first visible node, which is taken once the event queue has
+ * processed the pending paint events.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+final class StartupTiming {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Command line argument that enables the measurement
+     */
+    static final String ARGUMENT = "--startup-timing";
+    
+    private static volatile boolean enabled = false;
+    
+    private static boolean firstNodeReported = false;
+    
+    private static long mainNanos;
+    
+    private static long jvmStartOffsetNanos;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    private StartupTiming() {
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Starts the measurement; called at the beginning of main()
+     */
+    static void enable() {
+        mainNanos = System.nanoTime();
+        var now = Instant.now();
+        jvmStartOffsetNanos = ProcessHandle.current().info().startInstant()
+            .map(start -> Duration.between(start, now).toNanos())
+            .orElse(0L);
+        enabled = true;
+        mark("main");
+    }
+    
+    /**
+     * Prints the time of a startup phase
+     * @param phase Name of the phase
+     */
+    static void mark(String phase) {
+        if (!enabled) return;
+        var sinceMain = System.nanoTime() - mainNanos;
+        System.out.printf("Startup: %-20s %7.1f ms since JVM start, %7.1f ms since main%n",
+            phase, (jvmStartOffsetNanos + sinceMain) / 1e6, sinceMain / 1e6);
+    }
+    
+    /**
+     * Prints the time to the first visible node once it has been painted;
+     * later calls are ignored. Called on the event dispatch thread.
+     */
+    static void firstNodeShown() {
+        if (!enabled || firstNodeReported) return;
+        firstNodeReported = true;
+        SwingUtilities.invokeLater(() -> mark("first node visible"));
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Text mode front end for terminals without a graphical display.
+ * <p>
+ * With --cat a node is written to stdout while it is being rendered, with
+ * --pager the guide can be read page by page and links are followed by
+ * entering their numbers. Nodes are rendered with NodeTerminalConverter;
+ * --ansi and --plain choose between styled and plain text.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+final class TerminalPager {
+
+    // <editor-fold desc="Properties">
+    
+    /**
+     * Command line argument that writes a node to stdout
+     */
+    static final String CAT_ARGUMENT = "--cat";
+    
+    /**
+     * Command line argument that starts the interactive pager
+     */
+    static final String PAGER_ARGUMENT = "--pager";
+    
+    private static final String ANSI_ARGUMENT = "--ansi";
+    
+    private static final String PLAIN_ARGUMENT = "--plain";
+    
+    private static final int DEFAULT_PAGE_HEIGHT = 24;
+    
+    private static final int DEFAULT_PAGE_WIDTH = 80;
+    
+    private static final int TAB_WIDTH = 8;
+    
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+    
+    private static final String HELP =
+        "Enter  next page           <number>  follow link\n" +
+        "b / f  back / forward      p / n     previous / next node\n" +
+        "c / i  contents / index    t         top of the node\n" +
+        "g <node>  go to node       q         quit\n";
+    
+    private final DocumentManager documentManager;
+    
+    private final BufferedReader input;
+    
+    private final Writer output;
+    
+    private final int pageHeight;
+    
+    private final int pageWidth;
+    
+    private final NodeTerminalConverter converter;
+    
+    private final NavigationHistory history = new NavigationHistory();
+    
+    /**
+     * Rendered text that has not been written yet; it begins at
+     * pendingStart and never contains more than one token beyond the
+     * last complete line
+     */
+    private final StringBuilder pending = new StringBuilder();
+    
+    private int pendingStart = 0;
+    
+    private String outputStyle = "";
+    
+    private Node node;
+    
+    private boolean endOfNode;
+    
+    /**
+     * Set when the converter has rendered the whole node into pending
+     */
+    private boolean renderedToEnd;
+    
+    private int titleRows;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a pager
+     * @param documentManager Document manager used for links into other files
+     * @param input Terminal input
+     * @param output Terminal output
+     * @param ansiEnabled true to write styled text
+     * @param pageHeight Number of lines of the terminal
+     * @param pageWidth Number of columns of the terminal
+     */
+    TerminalPager(DocumentManager documentManager, BufferedReader input, Writer output, boolean ansiEnabled, int pageHeight, int pageWidth) {
+        this.documentManager = documentManager;
+        this.input = input;
+        this.output = output;
+        this.pageHeight = Math.max(3, pageHeight);
+        this.pageWidth = Math.max(1, pageWidth);
+        converter = new NodeTerminalConverter(null, ansiEnabled);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Checks if the first command line argument selects the text mode
+     * @param args Command line arguments
+     * @return true if the arguments are handled by run()
+     */
+    static boolean isTerminalMode(String[] args) {
+        return args.length > 0 && (args[0].equals(CAT_ARGUMENT) || args[0].equals(PAGER_ARGUMENT));
+    }
+    
+    /**
+     * Runs the text mode: [--cat|--pager] [--ansi|--plain] file [node]
+     * @param args Command line arguments
+     * @return Exit status
+     */
+    static int run(String[] args) {
+        // The node is written to FileDescriptor.out; diagnostics printed by
+        // the parser and the other components must not end up in between
+        System.setOut(System.err);
+        var interactive = args[0].equals(PAGER_ARGUMENT);
+        var term = System.getenv("TERM");
+        var ansiEnabled = interactive && System.console() != null && term != null && !term.equals("dumb");
+        Path file = null;
+        String nodeIdentifier = null;
+        for (var i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case ANSI_ARGUMENT -> ansiEnabled = true;
+                case PLAIN_ARGUMENT -> ansiEnabled = false;
+                default -> {
+                    if (file == null) {
+                        file = Path.of(args[i]);
+                    } else {
+                        nodeIdentifier = args[i];
+                    }
+                }
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: " + args[0] + " [--ansi|--plain] file [node]");
+            return 2;
+        }
+        
+        try (var documentManager = new DocumentManager(DocumentManager.DEFAULT_MEMORY_BUDGET)) {
+            var document = documentManager.load(file, LoadScheduler.Lane.FOREGROUND).get();
+            var node = (nodeIdentifier != null)? document.getNodeByIdentifier(nodeIdentifier) : document.getTitleNode();
+            if (node == null && nodeIdentifier == null && document.getNodeCount() > 0) node = document.getNodeByOrdinal(0);
+            if (node == null) {
+                System.err.println("Node not found: " + (nodeIdentifier != null? nodeIdentifier : "main"));
+                return 1;
+            }
+            
+            var output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()), OUTPUT_BUFFER_SIZE);
+            if (interactive) {
+                var input = new BufferedReader(new InputStreamReader(System.in, Charset.defaultCharset()));
+                var size = getTerminalSize();
+                new TerminalPager(documentManager, input, output, ansiEnabled, size[0], size[1]).page(node);
+            } else {
+                new NodeTerminalConverter(node, ansiEnabled).render(output);
+            }
+            output.flush();
+            return 0;
+        } catch (ExecutionException ex) {
+            System.err.println("Could not read " + file + ": " + ex.getCause().getMessage());
+            return 1;
+        } catch (InterruptedException | IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            return 1;
+        }
+    }
+    
+    /**
+     * Shows the given node and reads commands until the user quits or the
+     * input ends
+     * @param start First node
+     * @throws IOException if the terminal could not be read or written
+     */
+    void page(Node start) throws IOException {
+        showNode(start, true);
+        var more = true;
+        while (true) {
+            if (more) writePage();
+            writePrompt(endOfNode? "-- End --" : "-- More --");
+            var line = input.readLine();
+            if (line == null) break;
+            output.append(converter.isAnsiEnabled()? outputStyle : "");
+            
+            var command = line.trim();
+            if (command.equals("q")) break;
+            more = execute(command);
+        }
+        if (converter.isAnsiEnabled()) output.append("\u001b[0m");
+        output.flush();
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    /**
+     * Executes a command of the prompt
+     * @return true if a page should be shown, false if only a message has
+     * been written
+     */
+    private boolean execute(String command) throws IOException {
+        switch (command) {
+            case "" -> {
+                return true;
+            }
+            case "b" -> {
+                if (!history.canGoBack()) return writeMessage("No previous node in the history\n");
+                showNode(history.back().getNode(), false);
+            }
+            case "f" -> {
+                if (!history.canGoForward()) return writeMessage("No next node in the history\n");
+                showNode(history.forward().getNode(), false);
+            }
+            case "p" -> {
+                return showNode(node.getPreviousNodeIdentifier());
+            }
+            case "n" -> {
+                return showNode(node.getNextNodeIdentifier());
+            }
+            case "c" -> {
+                return showNode(node.getTocNodeIdentifier());
+            }
+            case "i" -> {
+                return showNode(node.getIndexNodeIdentifier());
+            }
+            case "t" -> showNode(node, false);
+            case "?", "h" -> {
+                return writeMessage(HELP);
+            }
+            default -> {
+                if (command.startsWith("g ")) {
+                    return showNode(command.substring(2).trim());
+                } else if (command.chars().allMatch(Character::isDigit)) {
+                    return followLink(command);
+                }
+                return writeMessage("Unknown command: " + command + " (? for help)\n");
+            }
+        }
+        return true;
+    }
+    
+    private boolean followLink(String number) throws IOException {
+        Link link;
+        try {
+            link = node.getDocument().getLink(node, Integer.parseInt(number) - 1);
+        } catch (NumberFormatException ex) {
+            link = null;
+        }
+        if (link == null) {
+            return writeMessage("No link " + number + "\n");
+        }
+        
+        if (link.isResolved()) {
+            showNode(node.getDocument().getNodeByOrdinal(link.getTargetNodeOrdinal()), true);
+            return true;
+        } else if (link.getStatus() == LinkStatus.EXTERNAL_DOCUMENT) {
+            return followExternalLink(link);
+        }
+        return writeMessage("Can not follow " + link.getType() + " link: " + link.getTarget() + "\n");
+    }
+    
+    private boolean followExternalLink(Link link) throws IOException {
+        var target = documentManager.resolveLink(node.getDocument().getFile(), link.getTarget());
+        if (target == null) {
+            return writeMessage("File not found: " + link.getTarget() + "\n");
+        }
+        if (!documentManager.isAmigaGuideFile(target.getFile())) {
+            return writeMessage("Not a guide: " + target.getFile() + "\n");
+        }
+        
+        Document document;
+        try {
+            document = documentManager.load(target.getFile(), LoadScheduler.Lane.FOREGROUND).get();
+        } catch (ExecutionException ex) {
+            return writeMessage("Could not read " + target.getFile() + ": " + ex.getCause().getMessage() + "\n");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        var targetNode = document.getNodeByIdentifier(target.getNodeIdentifier());
+        if (targetNode == null) targetNode = document.getTitleNode();
+        if (targetNode == null) {
+            return writeMessage("Node not found: " + target.getNodeIdentifier() + "\n");
+        }
+        showNode(targetNode, true);
+        return true;
+    }
+    
+    private boolean showNode(String nodeIdentifier) throws IOException {
+        if (nodeIdentifier == null) {
+            return writeMessage("No such node\n");
+        }
+        var target = node.getDocument().getNodeByIdentifier(nodeIdentifier);
+        if (target == null) {
+            return writeMessage("Node not found: " + nodeIdentifier + "\n");
+        }
+        showNode(target, true);
+        return true;
+    }
+    
+    /**
+     * Starts the output of a node with its title
+     * @param addToHistory true if the node is a new entry of the history
+     */
+    private void showNode(Node target, boolean addToHistory) throws IOException {
+        node = target;
+        if (addToHistory) history.push(target);
+        converter.setNode(target);
+        pending.setLength(0);
+        pendingStart = 0;
+        outputStyle = "";
+        endOfNode = false;
+        renderedToEnd = false;
+        
+        var title = (target.getTitle() != null)? target.getTitle() : target.getIdentifier();
+        if (converter.isAnsiEnabled()) {
+            output.append("\u001b[0;1;7m ").append(title).append(" \u001b[0m\n\n");
+        } else {
+            output.append(title).append("\n\n");
+        }
+        var titleWidth = converter.isAnsiEnabled()? title.length() + 2 : title.length();
+        titleRows = getRowCount(" ".repeat(titleWidth), 0, titleWidth, pageWidth) + 1;
+    }
+    
+    /**
+     * Writes the next lines of the current node; only as much of the node
+     * is rendered as fits onto the page. Lines that are wider than the
+     * terminal take several rows.
+     */
+    private void writePage() throws IOException {
+        var rows = titleRows;
+        titleRows = 0;
+        while (true) {
+            var end = pending.indexOf("\n", pendingStart);
+            if (end < 0 && !renderedToEnd) {
+                // Only the incomplete last line is kept
+                pending.delete(0, pendingStart);
+                pendingStart = 0;
+                renderedToEnd = !converter.renderNextToken(pending);
+                continue;
+            }
+            if (end < 0) {
+                if (pendingStart == pending.length()) {
+                    endOfNode = true;
+                    break;
+                }
+                // Last line without line break
+                end = pending.length();
+                pending.append('\n');
+            }
+            
+            // A line that is higher than the page is written on a page of its own
+            var lineRows = getRowCount(pending, pendingStart, end, pageWidth);
+            if (rows > 0 && rows + lineRows > pageHeight - 1) break;
+            writeOutput(pendingStart, end + 1);
+            pendingStart = end + 1;
+            rows += lineRows;
+        }
+    }
+    
+    /**
+     * Writes a part of the pending text and remembers the last text style
+     * that has been selected by it
+     */
+    private void writeOutput(int start, int end) throws IOException {
+        output.append(pending, start, end);
+        if (!converter.isAnsiEnabled()) return;
+        
+        for (var i = end - 1; i >= start; i--) {
+            if (pending.charAt(i) == '\u001b') {
+                var sequenceEnd = pending.indexOf("m", i);
+                if (sequenceEnd >= 0 && sequenceEnd < end) {
+                    outputStyle = pending.substring(i, sequenceEnd + 1);
+                }
+                break;
+            }
+        }
+    }
+    
+    private void writePrompt(String prompt) throws IOException {
+        if (converter.isAnsiEnabled()) {
+            output.append("\u001b[0;7m").append(prompt).append("\u001b[0m (? for help) ");
+        } else {
+            output.append(prompt).append(" (? for help) ");
+        }
+        output.flush();
+    }
+    
+    /**
+     * Writes a message between the pages
+     * @return false, the current page is not continued
+     */
+    private boolean writeMessage(String message) throws IOException {
+        if (converter.isAnsiEnabled()) output.append("\u001b[0m");
+        output.append(message);
+        if (converter.isAnsiEnabled()) output.append(outputStyle);
+        return false;
+    }
+    
+    /**
+     * Returns the number of terminal rows a line takes; escape sequences
+     * take no space and tabs advance to the next tab stop
+     * @param text Text containing the line
+     * @param start Start of the line
+     * @param end End of the line (exclusive, without the line break)
+     * @param columns Number of columns of the terminal
+     */
+    private static int getRowCount(CharSequence text, int start, int end, int columns) {
+        var column = 0;
+        for (var i = start; i < end; i++) {
+            var c = text.charAt(i);
+            if (c == '\u001b' && i + 1 < end && text.charAt(i + 1) == '[') {
+                // Skip the parameters up to the final byte of the sequence
+                i += 2;
+                while (i < end && (text.charAt(i) < '@' || text.charAt(i) > '~')) i++;
+            } else if (c == '\t') {
+                column = (column / TAB_WIDTH + 1) * TAB_WIDTH;
+            } else if (c >= ' ') {
+                column++;
+            }
+        }
+        return Math.max(1, (column + columns - 1) / columns);
+    }
+    
+    /**
+     * Determines the number of lines and columns of the terminal from the
+     * environment or from stty
+     * @return Lines and columns
+     */
+    private static int[] getTerminalSize() {
+        var size = new int[] { parseSize(System.getenv("LINES")), parseSize(System.getenv("COLUMNS")) };
+        if (size[0] > 0 && size[1] > 0) return size;
+        try {
+            var process = new ProcessBuilder("sh", "-c", "stty size < /dev/tty")
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            var stty = new String(process.getInputStream().readAllBytes()).trim().split("\\s+");
+            if (process.waitFor() == 0 && stty.length == 2) {
+                if (size[0] <= 0) size[0] = parseSize(stty[0]);
+                if (size[1] <= 0) size[1] = parseSize(stty[1]);
+            }
+        } catch (IOException ex) {
+            // No terminal
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (size[0] <= 0) size[0] = DEFAULT_PAGE_HEIGHT;
+        if (size[1] <= 0) size[1] = DEFAULT_PAGE_WIDTH;
+        return size;
+    }
+    
+    private static int parseSize(String value) {
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+    
+    // </editor-fold>
+    
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.util.Arrays;
+
+/**
+ * Case insensitive substring search using the Boyer-Moore-Horspool
+ * algorithm.
+ * The text is case folded once (character by character, so offsets are
+ * preserved); afterwards any number of patterns can be searched.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class TextFinder {
+
+    // <editor-fold desc="Properties">
+    
+    private final char[] foldedText;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Creates a finder for the given text
+     * @param text Text to be searched
+     */
+    public TextFinder(CharSequence text) {
+        foldedText = new char[text.length()];
+        for (int i = 0; i < foldedText.length; i++) {
+            foldedText[i] = fold(text.charAt(i));
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+    
+    /**
+     * Returns the offsets of all (non-overlapping) occurrences of the given
+     * pattern, ignoring case.
+     * @param pattern Search pattern
+     * @param maxMatches Maximum number of matches to be returned
+     * @return Sorted match offsets
+     */
+    public int[] findAll(String pattern, int maxMatches) {
+        var m = pattern.length();
+        var n = foldedText.length;
+        if (m == 0 || m > n) return new int[0];
+        
+        var foldedPattern = new char[m];
+        var hasWideChars = false;
+        for (int i = 0; i < m; i++) {
+            foldedPattern[i] = fold(pattern.charAt(i));
+            if (foldedPattern[i] >= 256) hasWideChars = true;
+        }
+        
+        // Shift table; characters outside of latin 1 share one conservative
+        // shift value if the pattern contains any of them
+        var shifts = new int[256];
+        Arrays.fill(shifts, m);
+        for (int i = 0; i < m - 1; i++) {
+            if (foldedPattern[i] < 256) shifts[foldedPattern[i]] = m - 1 - i;
+        }
+        var wideShift = hasWideChars? 1 : m;
+        
+        var matches = new int[16];
+        var matchCount = 0;
+        var last = foldedPattern[m - 1];
+        int position = 0;
+        
+        while (position <= n - m && matchCount < maxMatches) {
+            var c = foldedText[position + m - 1];
+            if (c == last && regionMatches(foldedPattern, position)) {
+                if (matchCount == matches.length) {
+                    matches = Arrays.copyOf(matches, matches.length * 2);
+                }
+                matches[matchCount++] = position;
+                position += m;
+            } else {
+                position += (c < 256)? shifts[c] : wideShift;
+            }
+        }
+        return Arrays.copyOf(matches, matchCount);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Internal methods">
+    
+    private boolean regionMatches(char[] foldedPattern, int position) {
+        for (int i = foldedPattern.length - 2; i >= 0; i--) {
+            if (foldedText[position + i] != foldedPattern[i]) return false;
+        }
+        return true;
+    }
+    
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+    
+    // </editor-fold>
+    
+}
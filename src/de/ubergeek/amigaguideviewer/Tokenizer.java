@@ -88,50 +88,40 @@ public class Tokenizer {
      * Return true if any token has been read successfully, otherwise false.
      * Normally this method should return false at the end of the content. It's
      * intended use is the determination of a while (reading) loop.
+     * Each character is examined once, so tokenizing takes linear time even
+     * for unterminated commands and giant lines.
      * @return true if another token could be read or false if there are no more tokens
      */
     public boolean parseNextToken() {
-        String tmpToken;
-        var currentChar = nextChar();
-        if (currentChar == Character.MIN_VALUE) return false;
+        var length = content.length();
+        if (cursor >= length) return false;
         
-        switch (currentChar) {
+        var start = cursor;
+        switch (content.charAt(cursor)) {
             
             // Escape character
             case '\\' -> {
-                tmpToken = String.valueOf(currentChar);
-                var nextChar = nextChar();
-                if (nextChar == '@' || nextChar == '\\') {
-                    token = tmpToken.concat(String.valueOf(nextChar));
-                    return true;
-                } else {
-                    token = tmpToken;
-                    setCursorBack();
-                    return true;
-                }
+                var escaped = (cursor + 1 < length)? content.charAt(cursor + 1) : 0;
+                cursor += (escaped == '@' || escaped == '\\')? 2 : 1;
             }
 
-            // Beginning of a command
+            // Beginning of a command (up to and including the closing brace)
             case '@' -> {
-                var nextChar = nextChar();
-                if (nextChar == '{') {
-                    setCursorBack(2);
-                    token = readUntilCharClass("\\}", true);
-                    return true;
+                if (cursor + 1 < length && content.charAt(cursor + 1) == '{') {
+                    var end = content.indexOf('}', cursor + 2);
+                    cursor = (end < 0)? length : end + 1;
                 } else {
-                    token = String.valueOf(currentChar);
-                    setCursorBack();
-                    return true;
+                    cursor++;
                 }
             }
 
             // Normal content
             default -> {
-                setCursorBack();
-                token = readUntilCharClass("[\\\\@]", false);
-                return true;
+                cursor = findSpecialChar(cursor + 1);
             }
         }
+        token = content.substring(start, cursor);
+        return true;
     }
     
     // </editor-fold>
@@ -139,40 +129,22 @@ public class Tokenizer {
     
     // <editor-fold desc="Internal methods">
     
-    private char nextChar() {
-        if (cursor < content.length() -1) {            
-            var c = content.charAt(cursor);
-            cursor++;
-            return c;
-        }
-        return Character.MIN_VALUE;
-    }
-    
-    private void setCursorBack(int distance) {
-        cursor -= distance;
-    }
-    
-    private void setCursorBack() {
-        setCursorBack(1);
+    /**
+     * White space as defined by \s in regular expressions
+     * @param c Character to be checked
+     * @return true if the character is white space
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0b || c == '\f' || c == '\r';
     }
     
-    private String readUntilCharClass(String charClass, boolean includeInCurrentToken) {
-        String readContent = "";
-        boolean continueToRead = true;
-
-        while (continueToRead) {
-            var nextChar = nextChar();
-            if (nextChar == Character.MIN_VALUE) return readContent;
-            
-            continueToRead = !String.valueOf(nextChar).matches(charClass);
-            
-            if (continueToRead || includeInCurrentToken) {
-                readContent = readContent.concat(String.valueOf(nextChar));
-            } else if (!includeInCurrentToken) {
-                setCursorBack();
-            }
+    private int findSpecialChar(int from) {
+        var length = content.length();
+        for (int i = from; i < length; i++) {
+            var c = content.charAt(i);
+            if (c == '\\' || c == '@') return i;
         }
-        return readContent;
+        return length;
     }
     
     // </editor-fold>
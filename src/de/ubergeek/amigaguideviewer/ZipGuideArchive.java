@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 André Gewert <agewert@ubergeek.de>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package de.ubergeek.amigaguideviewer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ZIP archive, read through the JDK zip file system. Listing uses the
+ * central directory only; entries are inflated when they are opened.
+ * @author André Gewert <agewert@ubergeek.de>
+ */
+public final class ZipGuideArchive implements GuideArchive {
+
+    // <editor-fold desc="Properties">
+    
+    private final Path file;
+    
+    private final FileSystem fileSystem;
+    
+    private final List<Entry> entries;
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Constructors">
+    
+    /**
+     * Opens a ZIP archive
+     * @param file Path of the archive
+     * @throws IOException If the file could not be read or is not a ZIP archive
+     */
+    public ZipGuideArchive(Path file) throws IOException {
+        this.file = file;
+        this.fileSystem = FileSystems.newFileSystem(file);
+        
+        var result = new ArrayList<Entry>();
+        try {
+            for (var root : fileSystem.getRootDirectories()) {
+                try (var stream = Files.walk(root)) {
+                    for (var path : (Iterable<Path>)stream::iterator) {
+                        if (!Files.isRegularFile(path)) continue;
+                        var name = root.relativize(path).toString();
+                        result.add(new Entry(name, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            fileSystem.close();
+            throw ex;
+        }
+        this.entries = Collections.unmodifiableList(result);
+    }
+    
+    // </editor-fold>
+    
+    
+    // <editor-fold desc="Public methods">
+
+    @Override
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public InputStream openEntry(Entry entry) throws IOException {
+        return Files.newInputStream(fileSystem.getPath(entry.getName()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileSystem.close();
+    }
+    
+    // </editor-fold>
+    
+}